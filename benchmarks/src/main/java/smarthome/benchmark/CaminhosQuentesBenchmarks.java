@@ -0,0 +1,221 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.log.LogAssincrono;
+import smarthome.metricas.Contador;
+import smarthome.metricas.Histograma;
+import smarthome.metricas.RegistroMetricas;
+import smarthome.pojos.Alerta;
+import smarthome.pojos.IdCompacto;
+import smarthome.pojos.Lampada;
+import smarthome.services.ArmazemAlertas;
+import smarthome.services.FiltroAlertas;
+import smarthome.services.MotorComandos;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo em nanossegundos dos caminhos executados em toda requisição ou
+ * evento: registro de métricas, log de acesso, filtro e armazém de alertas
+ * e compilação de comandos. A tempestade de alertas mede quanto custa
+ * absorver um segundo de chegadas a 10 mil alertas/s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CaminhosQuentesBenchmarks {
+
+    @State(Scope.Thread)
+    public static class Metricas {
+        Contador contador;
+        Histograma histograma;
+        long valor;
+
+        @Setup
+        public void preparar() {
+            contador = RegistroMetricas.contador("benchmark_contador", "Contador do benchmark");
+            histograma = RegistroMetricas.histogramaTempo("benchmark_histograma", "Histograma do benchmark");
+        }
+    }
+
+    @Benchmark
+    public void metricasContadorIncrementar(Metricas m) {
+        m.contador.incrementar();
+    }
+
+    @Benchmark
+    public void metricasHistogramaRegistrar(Metricas m) {
+        m.histograma.registrar((m.valor++ * 7919) & 0xFFFFF);
+    }
+
+    /**
+     * Log com o escritor descartando as linhas: mede só o custo de quem registra.
+     */
+    @State(Scope.Thread)
+    public static class Log {
+        LogAssincrono log;
+
+        @Setup
+        public void preparar() {
+            log = new LogAssincrono("benchmark", new Descartador(), 8192,
+                    LogAssincrono.PoliticaDescarte.DESCARTAR, LogAssincrono.Nivel.INFO, true);
+        }
+    }
+
+    @Benchmark
+    public void logAcesso(Log l) {
+        l.log.acesso("GET", "/api/dispositivos", 200, 123_456, 1024);
+    }
+
+    @State(Scope.Thread)
+    public static class Alertas {
+        FiltroAlertas filtro;
+        final Alerta[] recebidos = new Alerta[256];
+        ArmazemAlertas vazio;
+        ArmazemAlertas cheio;
+        final Alerta alerta = new Alerta("Alerta", "Mensagem", "Sala", "d1");
+        int proximo;
+
+        @Setup
+        public void preparar() {
+            filtro = new FiltroAlertas();
+            for (int i = 0; i < recebidos.length; i++) {
+                recebidos[i] = new Alerta("Alerta " + (i % 16), "Mensagem", "Comodo " + (i % 8), "d" + i);
+            }
+            vazio = new ArmazemAlertas(4096, 0);
+            cheio = new ArmazemAlertas(4096, 0);
+            for (int i = 0; i < 4096; i++) {
+                cheio.adicionar(new Alerta("Alerta " + i, "Mensagem", "Comodo " + (i % 16), "d" + i));
+            }
+        }
+    }
+
+    @Benchmark
+    public Alerta alertasFiltroProcessar(Alertas a) {
+        return a.filtro.processar(a.recebidos[a.proximo++ & 255], System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long alertasArmazemAdicionar(Alertas a) {
+        return a.vazio.adicionar(a.alerta);
+    }
+
+    @Benchmark
+    public List<Alerta> alertasArmazemListarPorComodo(Alertas a) {
+        return a.cheio.listarPorComodo("Comodo 3", null, null);
+    }
+
+    /**
+     * Tempestade de alertas pelo serviço: cada operação importa um segundo
+     * de chegadas (10 mil alertas com instantes espaçados igualmente,
+     * repetindo 4 títulos de 200 dispositivos em 20 cômodos), com relógio
+     * simulado: o agrupamento e o limite de taxa veem a taxa nominal
+     * qualquer que seja a velocidade da máquina.
+     */
+    @State(Scope.Thread)
+    public static class Tempestade {
+        static final int ALERTAS_POR_SEGUNDO = 10_000;
+        static final int ORIGENS = 200;
+        static final String[] TITULOS = {"Temperatura Alta", "Movimento Detectado", "Bateria Fraca", "Sem Comunicação"};
+
+        SmartHomeServiceImpl servico;
+        final String[] comodos = new String[ORIGENS];
+        final String[] origens = new String[ORIGENS];
+        final Alerta[] segundo = new Alerta[ALERTAS_POR_SEGUNDO];
+        final List<Alerta> lote = Arrays.asList(segundo);
+        long relogio;
+        int proximo;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            servico = new SmartHomeServiceImpl();
+            for (int i = 0; i < ORIGENS; i++) {
+                comodos[i] = "Comodo " + (i % 20);
+                origens[i] = new IdCompacto(i + 1, i + 1).toString();
+            }
+            // A partir de uma hora atrás (dentro da retenção)
+            relogio = System.currentTimeMillis() - 60 * 60 * 1000L;
+        }
+    }
+
+    /**
+     * Alertas que passaram pelo filtro e chegaram ao armazém, por iteração.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ResultadoTempestade {
+        public long armazenados;
+
+        @Setup(Level.Iteration)
+        public void zerar() {
+            armazenados = 0;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int alertasTempestade(Tempestade t, ResultadoTempestade resultado) {
+        long inicio = t.relogio;
+        for (int i = 0; i < t.segundo.length; i++) {
+            int n = t.proximo++;
+            int origem = (int) (((n * 0x9E3779B1L) >>> 8) % Tempestade.ORIGENS);
+            String titulo = Tempestade.TITULOS[n & 3];
+            Alerta alerta = new Alerta(titulo, titulo, t.comodos[origem], t.origens[origem]);
+            alerta.setTimestamp(Instant.ofEpochMilli(inicio + i * 1000L / t.segundo.length));
+            t.segundo[i] = alerta;
+        }
+        t.relogio = inicio + 1000;
+        int armazenados = t.servico.importarAlertas(t.lote);
+        resultado.armazenados += armazenados;
+        return armazenados;
+    }
+
+    @State(Scope.Thread)
+    public static class Comandos {
+        final MotorComandos motor = new MotorComandos();
+        final Map<String, Object> parametros = Collections.singletonMap("valor", (Object) 50);
+    }
+
+    @Benchmark
+    public Object comandosCompilar(Comandos c) {
+        return c.motor.compilar(Lampada.class, "definirIntensidade", c.parametros);
+    }
+
+    /**
+     * Destino de log que só conta os caracteres recebidos.
+     */
+    private static final class Descartador extends Writer {
+        long caracteres;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            caracteres += len;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
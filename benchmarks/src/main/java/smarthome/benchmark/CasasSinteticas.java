@@ -0,0 +1,140 @@
+package smarthome.benchmark;
+
+import smarthome.net.ServidorRemotoAPI;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.Lampada;
+import smarthome.pojos.Sensor;
+import smarthome.pojos.Termostato;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Casas, corpos de requisição e ids sintéticos usados pelos benchmarks.
+ * Tudo é reproduzível: as mesmas entradas geram os mesmos dados.
+ */
+final class CasasSinteticas {
+
+    static final int DISPOSITIVOS_POR_COMODO = 10;
+
+    private CasasSinteticas() {}
+
+    /**
+     * Serviço com {@code n} dispositivos extras (lâmpadas, termostatos e
+     * sensores alternados), {@value #DISPOSITIVOS_POR_COMODO} por cômodo.
+     */
+    static SmartHomeServiceImpl casa(int n) {
+        SmartHomeServiceImpl servico = new SmartHomeServiceImpl();
+        servico.registrarDispositivos(dispositivos(n));
+        return servico;
+    }
+
+    static List<DispositivoIoT> dispositivos(int n) {
+        List<DispositivoIoT> novos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            novos.add(dispositivo(i));
+        }
+        return novos;
+    }
+
+    /**
+     * O i-ésimo dispositivo de uma casa sintética: lâmpadas, termostatos e
+     * sensores alternados, {@value #DISPOSITIVOS_POR_COMODO} por cômodo.
+     */
+    static DispositivoIoT dispositivo(int i) {
+        String comodo = "Comodo " + (i / DISPOSITIVOS_POR_COMODO);
+        switch (i % 3) {
+            case 0:
+                return new Lampada("Lampada " + i, comodo, true, false, 50, 3000);
+            case 1:
+                return new Termostato("Termostato " + i, comodo, true, 22.0, 21.0);
+            default:
+                return new Sensor("Sensor " + i, comodo, true, "Movimento", false, 0.0);
+        }
+    }
+
+    static String[] ids(SmartHomeServiceImpl servico) {
+        List<DispositivoIoT> dispositivos = servico.listarDispositivos();
+        String[] ids = new String[dispositivos.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dispositivos.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Servidor em processo numa porta livre.
+     */
+    static ServidorRemotoAPI servidor(SmartHomeServiceImpl servico) throws IOException {
+        // Sem Nagle no servidor: requisições pequenas não esperam o ACK atrasado
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        ServidorRemotoAPI servidor = new ServidorRemotoAPI(servico, 0);
+        servidor.iniciar();
+        return servidor;
+    }
+
+    /**
+     * Rotina em JSON com {@code acoes} ações alternando ligar e desligar
+     * (um terço com parâmetros) sobre os dispositivos.
+     */
+    static byte[] rotinaJson(String[] ids, int acoes) {
+        StringBuilder json = new StringBuilder(acoes * 110);
+        json.append("{\"nome\":\"Rotina de carga\",\"horarioInicio\":\"2024-01-01T06:30:00\",\"acoes\":[");
+        for (int i = 0; i < acoes; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"dispositivoId\":\"").append(ids[i % ids.length]).append("\",\"comando\":");
+            switch (i % 3) {
+                case 0:
+                    json.append("\"ligar\",\"parametros\":{}}");
+                    break;
+                case 1:
+                    json.append("\"desligar\",\"parametros\":{}}");
+                    break;
+                default:
+                    json.append("\"ligar\",\"parametros\":{\"origem\":\"carga\",\"ordem\":").append(i).append("}}");
+                    break;
+            }
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pares (msb, lsb) de ids aleatórios reproduzíveis, com os bits de
+     * versão e variante de um UUID aleatório.
+     * @return {msbs, lsbs}
+     */
+    static long[][] chavesAleatorias(int n) {
+        Random aleatorio = new Random(42);
+        long[] msbs = new long[n];
+        long[] lsbs = new long[n];
+        for (int i = 0; i < n; i++) {
+            msbs[i] = (aleatorio.nextLong() & ~0xF000L) | 0x4000L;
+            lsbs[i] = (aleatorio.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        }
+        return new long[][] {msbs, lsbs};
+    }
+
+    /**
+     * Caracteres de {@code quantidade} ids espalhados pelo conjunto. As buscas
+     * criam uma String nova a cada vez (sem hash em cache), como o id
+     * extraído do caminho de uma requisição.
+     */
+    static char[][] amostraIds(long[][] chaves, int quantidade) {
+        char[][] ids = new char[quantidade][];
+        int passo = Math.max(1, chaves[0].length / quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            int j = (i * passo) % chaves[0].length;
+            ids[i] = new UUID(chaves[0][j], chaves[1][j]).toString().toCharArray();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,87 @@
+package smarthome.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Requisições HTTP dos benchmarks e do gerador de carga. O corpo da
+ * resposta é sempre lido até o fim, para a conexão voltar ao pool
+ * keep-alive do HttpURLConnection.
+ */
+final class ClienteHttp {
+
+    private ClienteHttp() {}
+
+    /**
+     * Resposta lida: status, ETag e, se pedido, o corpo.
+     */
+    static final class Resposta {
+        final int status;
+        final int bytes;
+        final byte[] corpo;
+        final String etag;
+
+        Resposta(int status, int bytes, byte[] corpo, String etag) {
+            this.status = status;
+            this.bytes = bytes;
+            this.corpo = corpo;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Faz a requisição descartando o corpo da resposta.
+     */
+    static Resposta enviar(URL url, String metodo, byte[] corpo) throws IOException {
+        return enviar(url, metodo, corpo, false);
+    }
+
+    /**
+     * @param guardarCorpo Se o corpo da resposta deve ser retornado
+     */
+    static Resposta enviar(URL url, String metodo, byte[] corpo, boolean guardarCorpo) throws IOException {
+        return enviar(url, metodo, corpo, guardarCorpo, null);
+    }
+
+    /**
+     * @param ifNoneMatch ETag enviada em If-None-Match (GET condicional); null não envia
+     */
+    static Resposta enviar(URL url, String metodo, byte[] corpo, boolean guardarCorpo, String ifNoneMatch)
+            throws IOException {
+        HttpURLConnection conexao = (HttpURLConnection) url.openConnection();
+        conexao.setRequestMethod(metodo);
+        if (ifNoneMatch != null) {
+            conexao.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        if (corpo != null) {
+            conexao.setDoOutput(true);
+            conexao.setRequestProperty("Content-Type", "application/json");
+            conexao.setFixedLengthStreamingMode(corpo.length);
+            try (OutputStream os = conexao.getOutputStream()) {
+                os.write(corpo);
+            }
+        }
+        int status = conexao.getResponseCode();
+        InputStream entrada = status >= 400 ? conexao.getErrorStream() : conexao.getInputStream();
+        ByteArrayOutputStream guardado = guardarCorpo ? new ByteArrayOutputStream() : null;
+        int total = 0;
+        if (entrada != null) {
+            byte[] buffer = new byte[8192];
+            try (InputStream is = entrada) {
+                int lidos;
+                while ((lidos = is.read(buffer)) != -1) {
+                    total += lidos;
+                    if (guardado != null) {
+                        guardado.write(buffer, 0, lidos);
+                    }
+                }
+            }
+        }
+        return new Resposta(status, total, guardado != null ? guardado.toByteArray() : null,
+                conexao.getHeaderField("ETag"));
+    }
+}
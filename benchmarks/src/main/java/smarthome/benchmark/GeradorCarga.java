@@ -0,0 +1,496 @@
+package smarthome.benchmark;
+
+import smarthome.metricas.Histograma;
+import smarthome.net.JsonConverter;
+import smarthome.net.JsonParser;
+import smarthome.net.ServidorRemotoAPI;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga HTTP: reproduz um mix de listagens, consultas, ações,
+ * cômodos, rotinas e alertas contra o servidor e relata vazão e percentis
+ * de latência por tipo de requisição.
+ *
+ * <ul>
+ *   <li>Laço fechado: N clientes, cada um envia a próxima requisição quando
+ *       recebe a resposta anterior (mais um tempo de espera opcional). A
+ *       vazão é consequência da latência.</li>
+ *   <li>Laço aberto: as requisições chegam a uma taxa fixa (intervalos
+ *       exponenciais, como um processo de Poisson), independente das
+ *       respostas. A latência é medida a partir do instante agendado, então
+ *       inclui a espera na fila quando o servidor não acompanha a taxa (sem
+ *       a omissão coordenada do laço fechado).</li>
+ * </ul>
+ *
+ * Sem {@code --url}, sobe em processo um servidor com uma casa sintética
+ * ({@link GeradorCasa}) em uma porta livre e usa loopback.
+ *
+ * Uso:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar smarthome.benchmark.GeradorCarga [--modo=fechado|aberto] [--clientes=8] [--taxa=500]
+ *      [--duracaoS=10] [--aquecimentoS=2] [--pensarMs=0] [--mix=listar:10,obter:40,...]
+ *      [--url=http://localhost:8080] [--comodos=10] [--lampadas=4] [--termostatos=1] [--sensores=3]
+ *      [--rotinas=20] [--acoesPorRotina=5] [--alertas=1000] [--semente=42] [--json=carga.json]
+ * </pre>
+ */
+public class GeradorCarga {
+
+    /**
+     * Tipos de requisição do mix de tráfego.
+     */
+    enum TipoRequisicao {
+        LISTAR("listar"),
+        OBTER("obter"),
+        ACAO("acao"),
+        COMODO("comodo"),
+        ROTINA("rotina"),
+        ALERTAS("alertas");
+
+        final String nome;
+
+        TipoRequisicao(String nome) {
+            this.nome = nome;
+        }
+
+        static TipoRequisicao porNome(String nome) {
+            for (TipoRequisicao tipo : values()) {
+                if (tipo.nome.equals(nome)) {
+                    return tipo;
+                }
+            }
+            throw new IllegalArgumentException("Tipo de requisição desconhecido no mix: " + nome);
+        }
+    }
+
+    private static final String MIX_PADRAO = "listar:10,obter:40,acao:25,comodo:10,rotina:5,alertas:10";
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private final String base;
+    private final TipoRequisicao[] tipos;
+    // Pesos acumulados do mix, paralelos a tipos
+    private final int[] pesosAcumulados;
+
+    // Alvos descobertos no servidor
+    private final String[] dispositivos;
+    private final String[] comodos;
+    private final String[] rotinas;
+
+    // Medição (apenas requisições iniciadas depois do aquecimento)
+    private final Map<TipoRequisicao, Histograma> latencias = new EnumMap<>(TipoRequisicao.class);
+    private final Map<TipoRequisicao, LongAdder> erros = new EnumMap<>(TipoRequisicao.class);
+    private final Histograma latenciaTotal = new Histograma();
+    private final LongAdder errosTotal = new LongAdder();
+
+    /**
+     * @param base URL do servidor, ex.: http://localhost:8080
+     * @param mix Pesos no formato {@code tipo:peso,...}
+     */
+    public GeradorCarga(String base, String mix) throws IOException {
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+
+        Map<TipoRequisicao, Integer> pesos = new LinkedHashMap<>();
+        for (String item : mix.split(",")) {
+            String[] partes = item.trim().split(":");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("Item do mix inválido (use tipo:peso): " + item);
+            }
+            int peso = Integer.parseInt(partes[1].trim());
+            if (peso < 0) {
+                throw new IllegalArgumentException("Peso negativo no mix: " + item);
+            }
+            if (peso > 0) {
+                pesos.put(TipoRequisicao.porNome(partes[0].trim()), peso);
+            }
+        }
+        if (pesos.isEmpty()) {
+            throw new IllegalArgumentException("Mix sem nenhum tipo de requisição: " + mix);
+        }
+        this.tipos = pesos.keySet().toArray(new TipoRequisicao[0]);
+        this.pesosAcumulados = new int[tipos.length];
+        int soma = 0;
+        for (int i = 0; i < tipos.length; i++) {
+            soma += pesos.get(tipos[i]);
+            pesosAcumulados[i] = soma;
+        }
+        for (TipoRequisicao tipo : tipos) {
+            latencias.put(tipo, new Histograma());
+            erros.put(tipo, new LongAdder());
+        }
+
+        // Descobre ids e cômodos pela própria API (funciona com servidor externo)
+        List<String> ids = new ArrayList<>();
+        Set<String> nomesComodos = new LinkedHashSet<>();
+        for (Map<String, Object> dispositivo : consultarLista("/api/dispositivos")) {
+            ids.add((String) dispositivo.get("id"));
+            if (dispositivo.get("comodo") != null) {
+                nomesComodos.add((String) dispositivo.get("comodo"));
+            }
+        }
+        List<String> idsRotinas = new ArrayList<>();
+        for (Map<String, Object> rotina : consultarLista("/api/rotinas")) {
+            idsRotinas.add((String) rotina.get("id"));
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("Servidor sem dispositivos: nada para consultar");
+        }
+        this.dispositivos = ids.toArray(new String[0]);
+        this.comodos = nomesComodos.toArray(new String[0]);
+        this.rotinas = idsRotinas.toArray(new String[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> consultarLista(String caminho) throws IOException {
+        ClienteHttp.Resposta resposta = ClienteHttp.enviar(new URL(base + caminho), "GET", null, true);
+        if (resposta.status != 200) {
+            throw new IOException("HTTP " + resposta.status + " em GET " + caminho);
+        }
+        return (List<Map<String, Object>>) JsonParser.parse(new String(resposta.corpo, StandardCharsets.UTF_8));
+    }
+
+    // ---------------------------------------------------------------
+    // Execução
+    // ---------------------------------------------------------------
+
+    /**
+     * Laço fechado com {@code clientes} threads.
+     * @param pensarMs Espera entre a resposta e a próxima requisição de cada cliente
+     */
+    public void executarFechado(int clientes, long aquecimentoMs, long duracaoMs, long pensarMs, long semente)
+            throws InterruptedException {
+        long inicio = System.nanoTime();
+        long inicioMedicao = inicio + aquecimentoMs * 1_000_000;
+        long fim = inicioMedicao + duracaoMs * 1_000_000;
+        Thread[] threads = new Thread[clientes];
+        for (int c = 0; c < clientes; c++) {
+            Random aleatorio = new Random(semente + c);
+            threads[c] = new Thread(() -> {
+                long t0;
+                while ((t0 = System.nanoTime()) < fim) {
+                    TipoRequisicao tipo = sortearTipo(aleatorio);
+                    boolean sucesso = executar(tipo, aleatorio.nextInt(Integer.MAX_VALUE));
+                    if (t0 >= inicioMedicao) {
+                        registrar(tipo, System.nanoTime() - t0, sucesso);
+                    }
+                    if (pensarMs > 0) {
+                        try {
+                            Thread.sleep(pensarMs);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }, "carga-cliente-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Laço aberto: requisições agendadas a {@code taxa} por segundo e
+     * atendidas por até {@code conexoes} threads.
+     * @return Requisições agendadas que não chegaram a ser enviadas
+     */
+    public int executarAberto(double taxa, int conexoes, long aquecimentoMs, long duracaoMs, long semente)
+            throws InterruptedException {
+        ExecutorService threads = Executors.newFixedThreadPool(conexoes, tarefa -> {
+            Thread thread = new Thread(tarefa, "carga-conexao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Random aleatorio = new Random(semente);
+        double intervaloMedio = 1e9 / taxa;
+        long inicio = System.nanoTime();
+        long inicioMedicao = inicio + aquecimentoMs * 1_000_000;
+        long fim = inicioMedicao + duracaoMs * 1_000_000;
+
+        long agendada = inicio;
+        while (agendada < fim) {
+            long espera;
+            while ((espera = agendada - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            TipoRequisicao tipo = sortearTipo(aleatorio);
+            int sorteio = aleatorio.nextInt(Integer.MAX_VALUE);
+            long instante = agendada;
+            threads.execute(() -> {
+                boolean sucesso = executar(tipo, sorteio);
+                if (instante >= inicioMedicao) {
+                    registrar(tipo, System.nanoTime() - instante, sucesso);
+                }
+            });
+            agendada += (long) (-Math.log(1 - aleatorio.nextDouble()) * intervaloMedio);
+        }
+        threads.shutdown();
+        if (!threads.awaitTermination(30, TimeUnit.SECONDS)) {
+            return threads.shutdownNow().size();
+        }
+        return 0;
+    }
+
+    private TipoRequisicao sortearTipo(Random aleatorio) {
+        int sorteio = aleatorio.nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        for (int i = 0; i < pesosAcumulados.length; i++) {
+            if (sorteio < pesosAcumulados[i]) {
+                return tipos[i];
+            }
+        }
+        return tipos[tipos.length - 1];
+    }
+
+    /**
+     * Envia uma requisição do tipo; o sorteio escolhe o alvo e o comando.
+     * @return true se a resposta foi 2xx/3xx
+     */
+    private boolean executar(TipoRequisicao tipo, int sorteio) {
+        try {
+            ClienteHttp.Resposta resposta;
+            switch (tipo) {
+                case LISTAR:
+                    resposta = ClienteHttp.enviar(new URL(base + "/api/dispositivos"), "GET", null);
+                    break;
+                case OBTER:
+                    resposta = ClienteHttp.enviar(new URL(base + "/api/dispositivos/"
+                            + segmento(dispositivos[sorteio % dispositivos.length])), "GET", null);
+                    break;
+                case ACAO:
+                    String corpo = "[\"" + dispositivos[sorteio % dispositivos.length] + "\",\""
+                            + ((sorteio / dispositivos.length) % 2 == 0 ? "ligar" : "desligar") + "\"]";
+                    resposta = ClienteHttp.enviar(new URL(base + "/api/dispositivos/acao"), "POST",
+                            corpo.getBytes(StandardCharsets.UTF_8));
+                    break;
+                case COMODO:
+                    if (comodos.length == 0) {
+                        return false;
+                    }
+                    resposta = ClienteHttp.enviar(new URL(base + "/api/comodos/"
+                            + segmento(comodos[sorteio % comodos.length])), "GET", null);
+                    break;
+                case ROTINA:
+                    if (rotinas.length == 0) {
+                        return false;
+                    }
+                    resposta = ClienteHttp.enviar(new URL(base + "/api/rotinas/executar"), "POST",
+                            textoJson(rotinas[sorteio % rotinas.length]));
+                    break;
+                default:
+                    // Metade das consultas de alertas filtra por cômodo
+                    String caminho = "/api/alertas";
+                    if (comodos.length > 0 && sorteio % 2 == 0) {
+                        caminho += "?comodo=" + URLEncoder.encode(comodos[(sorteio / 2) % comodos.length], "UTF-8");
+                    }
+                    resposta = ClienteHttp.enviar(new URL(base + caminho), "GET", null);
+                    break;
+            }
+            return resposta.status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Valor codificado como segmento de caminho (espaço vira %20, não '+').
+     */
+    private static String segmento(String valor) throws IOException {
+        return URLEncoder.encode(valor, "UTF-8").replace("+", "%20");
+    }
+
+    private static byte[] textoJson(String valor) {
+        return ("\"" + valor.replace("\\", "\\\\").replace("\"", "\\\"") + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void registrar(TipoRequisicao tipo, long latenciaNanos, boolean sucesso) {
+        if (sucesso) {
+            latencias.get(tipo).registrar(latenciaNanos);
+            latenciaTotal.registrar(latenciaNanos);
+        } else {
+            erros.get(tipo).increment();
+            errosTotal.increment();
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // Relatório
+    // ---------------------------------------------------------------
+
+    public String formatarRelatorio(long duracaoMs) {
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format(Locale.ROOT, "%-10s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+                "tipo", "respostas", "erros", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (TipoRequisicao tipo : tipos) {
+            linha(texto, tipo.nome, latencias.get(tipo), erros.get(tipo).sum(), duracaoMs);
+        }
+        linha(texto, "total", latenciaTotal, errosTotal.sum(), duracaoMs);
+        return texto.toString();
+    }
+
+    private static void linha(StringBuilder texto, String nome, Histograma h, long erros, long duracaoMs) {
+        long[] p = h.percentis(QUANTIS);
+        texto.append(String.format(Locale.ROOT, "%-10s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                nome, h.getContagem(), erros, h.getContagem() * 1000.0 / duracaoMs,
+                p[0] / 1e6, p[1] / 1e6, p[2] / 1e6, p[3] / 1e6, p[4] / 1e6));
+    }
+
+    /**
+     * Relatório em forma de mapa, para gravação em JSON.
+     */
+    public Map<String, Object> paraMapa(long duracaoMs, Map<String, Object> configuracao) {
+        Map<String, Object> porTipo = new LinkedHashMap<>();
+        for (TipoRequisicao tipo : tipos) {
+            porTipo.put(tipo.nome, resumo(latencias.get(tipo), erros.get(tipo).sum(), duracaoMs));
+        }
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("configuracao", configuracao);
+        mapa.put("total", resumo(latenciaTotal, errosTotal.sum(), duracaoMs));
+        mapa.put("porTipo", porTipo);
+        return mapa;
+    }
+
+    private static Map<String, Object> resumo(Histograma h, long erros, long duracaoMs) {
+        long[] p = h.percentis(QUANTIS);
+        Map<String, Object> resumo = new LinkedHashMap<>();
+        resumo.put("respostas", h.getContagem());
+        resumo.put("erros", erros);
+        resumo.put("requisicoesPorSegundo", Math.round(h.getContagem() * 10000.0 / duracaoMs) / 10.0);
+        resumo.put("p50Ms", emMs(p[0]));
+        resumo.put("p90Ms", emMs(p[1]));
+        resumo.put("p99Ms", emMs(p[2]));
+        resumo.put("p999Ms", emMs(p[3]));
+        resumo.put("maxMs", emMs(p[4]));
+        return resumo;
+    }
+
+    // Nanossegundos para milissegundos com três casas
+    private static double emMs(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    // ---------------------------------------------------------------
+    // Linha de comando
+    // ---------------------------------------------------------------
+
+    /**
+     * Lê opções no formato --nome=valor.
+     */
+    private static Map<String, String> lerOpcoes(String[] args) {
+        Map<String, String> opcoes = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Opção inválida (use --nome=valor): " + arg);
+            }
+            int igual = arg.indexOf('=');
+            opcoes.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+        return opcoes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = lerOpcoes(args);
+        String modo = opcoes.getOrDefault("modo", "fechado");
+        int clientes = Integer.parseInt(opcoes.getOrDefault("clientes", "8"));
+        double taxa = Double.parseDouble(opcoes.getOrDefault("taxa", "500"));
+        long aquecimentoMs = Long.parseLong(opcoes.getOrDefault("aquecimentoS", "2")) * 1000;
+        long duracaoMs = Long.parseLong(opcoes.getOrDefault("duracaoS", "10")) * 1000;
+        long pensarMs = Long.parseLong(opcoes.getOrDefault("pensarMs", "0"));
+        long semente = Long.parseLong(opcoes.getOrDefault("semente", "42"));
+        String mix = opcoes.getOrDefault("mix", MIX_PADRAO);
+        if (!"fechado".equals(modo) && !"aberto".equals(modo)) {
+            throw new IllegalArgumentException("Modo deve ser fechado ou aberto: " + modo);
+        }
+
+        ServidorRemotoAPI servidor = null;
+        String url = opcoes.get("url");
+        String descricaoCasa;
+        if (url == null) {
+            GeradorCasa casa = new GeradorCasa(semente,
+                    Integer.parseInt(opcoes.getOrDefault("comodos", "10")),
+                    Integer.parseInt(opcoes.getOrDefault("lampadas", "4")),
+                    Integer.parseInt(opcoes.getOrDefault("termostatos", "1")),
+                    Integer.parseInt(opcoes.getOrDefault("sensores", "3")),
+                    Integer.parseInt(opcoes.getOrDefault("rotinas", "20")),
+                    Integer.parseInt(opcoes.getOrDefault("acoesPorRotina", "5")),
+                    Integer.parseInt(opcoes.getOrDefault("alertas", "1000")));
+            // Sem Nagle no servidor: requisições pequenas não esperam o ACK atrasado
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            SmartHomeServiceImpl servico = casa.criarServico();
+            servidor = new ServidorRemotoAPI(servico, 0);
+            servidor.iniciar();
+            url = "http://localhost:" + servidor.getPorta();
+            descricaoCasa = casa.toString();
+        } else {
+            descricaoCasa = "servidor externo";
+        }
+
+        try {
+            GeradorCarga carga = new GeradorCarga(url, mix);
+            Map<String, Object> configuracao = new LinkedHashMap<>();
+            configuracao.put("modo", modo);
+            configuracao.put("url", url);
+            configuracao.put("casa", descricaoCasa);
+            configuracao.put("mix", mix);
+            configuracao.put("aquecimentoS", aquecimentoMs / 1000);
+            configuracao.put("duracaoS", duracaoMs / 1000);
+            configuracao.put("semente", semente);
+
+            System.out.println("Casa: " + descricaoCasa);
+            int pendentes = 0;
+            long inicio = System.nanoTime();
+            if ("fechado".equals(modo)) {
+                configuracao.put("clientes", clientes);
+                configuracao.put("pensarMs", pensarMs);
+                System.out.printf(Locale.ROOT, "Laço fechado: %d clientes, pensar %d ms, %d s (+%d s de aquecimento)%n",
+                        clientes, pensarMs, duracaoMs / 1000, aquecimentoMs / 1000);
+                carga.executarFechado(clientes, aquecimentoMs, duracaoMs, pensarMs, semente);
+            } else {
+                configuracao.put("taxa", taxa);
+                configuracao.put("conexoes", clientes);
+                System.out.printf(Locale.ROOT, "Laço aberto: %.0f req/s, até %d conexões, %d s (+%d s de aquecimento)%n",
+                        taxa, clientes, duracaoMs / 1000, aquecimentoMs / 1000);
+                pendentes = carga.executarAberto(taxa, clientes, aquecimentoMs, duracaoMs, semente);
+            }
+            // No laço aberto sobrecarregado a fila só esvazia depois da janela: a vazão usa o tempo real
+            long medidoMs = Math.max(duracaoMs, (System.nanoTime() - inicio) / 1_000_000 - aquecimentoMs);
+            System.out.println();
+            System.out.print(carga.formatarRelatorio(medidoMs));
+            if (pendentes > 0) {
+                System.out.println(pendentes + " requisições agendadas não chegaram a ser enviadas (servidor abaixo da taxa)");
+            }
+            if (opcoes.containsKey("json")) {
+                Map<String, Object> relatorio = carga.paraMapa(medidoMs, configuracao);
+                relatorio.put("medidoMs", medidoMs);
+                relatorio.put("naoEnviadas", pendentes);
+                Files.write(Paths.get(opcoes.get("json")),
+                        (JsonConverter.toJson(relatorio) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            if (servidor != null) {
+                servidor.parar();
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package smarthome.benchmark;
+
+import smarthome.pojos.Acao;
+import smarthome.pojos.Alerta;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.Lampada;
+import smarthome.pojos.Rotina;
+import smarthome.pojos.Sensor;
+import smarthome.pojos.Termostato;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Gera casas sintéticas para benchmarks e testes de carga: N cômodos, cada
+ * um com a quantidade configurada de lâmpadas, termostatos e sensores, além
+ * de rotinas e alertas sobre esses dispositivos.
+ *
+ * Tudo é sorteado a partir da semente: a mesma semente gera os mesmos
+ * cômodos, dispositivos (inclusive ids), estados, ações de rotinas e
+ * alertas. Ids de rotinas e alertas são gerados pelas próprias classes e
+ * mudam a cada execução.
+ */
+public class GeradorCasa {
+
+    private static final String[] NOMES_COMODOS = {
+        "Sala", "Cozinha", "Quarto", "Banheiro", "Escritório",
+        "Garagem", "Varanda", "Lavanderia", "Corredor", "Closet"
+    };
+    private static final String[] TIPOS_SENSOR = {"Movimento", "Temperatura", "Umidade", "Porta", "Fumaça"};
+    private static final String[] TITULOS_ALERTA = {
+        "Temperatura Alta", "Movimento Detectado", "Porta Aberta", "Umidade Alta", "Dispositivo Offline"
+    };
+    // Alertas distribuídos na última hora (dentro da retenção do armazém)
+    private static final long JANELA_ALERTAS_MS = 60 * 60 * 1000L;
+
+    private final long semente;
+    private final int comodos;
+    private final int lampadasPorComodo;
+    private final int termostatosPorComodo;
+    private final int sensoresPorComodo;
+    private final int rotinas;
+    private final int acoesPorRotina;
+    private final int alertas;
+
+    /**
+     * @param semente Semente do sorteio
+     * @param comodos Número de cômodos
+     * @param lampadasPorComodo Lâmpadas em cada cômodo
+     * @param termostatosPorComodo Termostatos em cada cômodo
+     * @param sensoresPorComodo Sensores em cada cômodo
+     * @param rotinas Número de rotinas
+     * @param acoesPorRotina Ações de cada rotina (dispositivos sorteados)
+     * @param alertas Número de alertas gerados (o armazém retém no máximo 4096;
+     *        repetições próximas são agrupadas pelo filtro do serviço)
+     */
+    public GeradorCasa(long semente, int comodos, int lampadasPorComodo, int termostatosPorComodo,
+                       int sensoresPorComodo, int rotinas, int acoesPorRotina, int alertas) {
+        if (comodos <= 0 || lampadasPorComodo < 0 || termostatosPorComodo < 0 || sensoresPorComodo < 0
+                || rotinas < 0 || acoesPorRotina <= 0 || alertas < 0) {
+            throw new IllegalArgumentException("Configuração inválida da casa sintética");
+        }
+        this.semente = semente;
+        this.comodos = comodos;
+        this.lampadasPorComodo = lampadasPorComodo;
+        this.termostatosPorComodo = termostatosPorComodo;
+        this.sensoresPorComodo = sensoresPorComodo;
+        this.rotinas = rotinas;
+        this.acoesPorRotina = acoesPorRotina;
+        this.alertas = alertas;
+    }
+
+    public int getTotalDispositivos() {
+        return comodos * (lampadasPorComodo + termostatosPorComodo + sensoresPorComodo);
+    }
+
+    /**
+     * Cria um serviço e o popula com a casa gerada (além dos dados iniciais do serviço).
+     */
+    public SmartHomeServiceImpl criarServico() {
+        SmartHomeServiceImpl servico = new SmartHomeServiceImpl();
+        popular(servico);
+        return servico;
+    }
+
+    /**
+     * Registra os dispositivos, cria as rotinas e importa os alertas no
+     * serviço (pelo filtro de alertas, no instante de cada um).
+     */
+    public void popular(SmartHomeServiceImpl servico) {
+        Random aleatorio = new Random(semente);
+        List<DispositivoIoT> dispositivos = gerarDispositivos(aleatorio);
+        servico.registrarDispositivos(dispositivos);
+        if (dispositivos.isEmpty()) {
+            return;
+        }
+        for (Rotina rotina : gerarRotinas(aleatorio, dispositivos)) {
+            servico.criarRotina(rotina);
+        }
+        servico.importarAlertas(gerarAlertas(aleatorio, dispositivos));
+    }
+
+    @Override
+    public String toString() {
+        return comodos + " cômodos, " + getTotalDispositivos() + " dispositivos ("
+                + lampadasPorComodo + "/" + termostatosPorComodo + "/" + sensoresPorComodo
+                + " lâmpadas/termostatos/sensores por cômodo), " + rotinas + " rotinas, "
+                + alertas + " alertas, semente " + semente;
+    }
+
+    // ---------------------------------------------------------------
+    // Geração
+    // ---------------------------------------------------------------
+
+    private List<DispositivoIoT> gerarDispositivos(Random aleatorio) {
+        List<DispositivoIoT> dispositivos = new ArrayList<>(getTotalDispositivos());
+        for (int c = 0; c < comodos; c++) {
+            String comodo = nomeComodo(c);
+            for (int i = 1; i <= lampadasPorComodo; i++) {
+                dispositivos.add(comId(aleatorio, new Lampada("Lâmpada " + i + " " + comodo, comodo,
+                        aleatorio.nextInt(20) != 0, aleatorio.nextBoolean(),
+                        aleatorio.nextInt(101), 2700 + 100 * aleatorio.nextInt(39))));
+            }
+            for (int i = 1; i <= termostatosPorComodo; i++) {
+                Termostato termostato = new Termostato("Termostato " + i + " " + comodo, comodo,
+                        aleatorio.nextBoolean(), 18 + aleatorio.nextInt(130) / 10.0, 20 + aleatorio.nextInt(6));
+                termostato.setOnline(aleatorio.nextInt(20) != 0);
+                dispositivos.add(comId(aleatorio, termostato));
+            }
+            for (int i = 1; i <= sensoresPorComodo; i++) {
+                String tipo = TIPOS_SENSOR[aleatorio.nextInt(TIPOS_SENSOR.length)];
+                dispositivos.add(comId(aleatorio, new Sensor("Sensor " + tipo + " " + i + " " + comodo, comodo,
+                        aleatorio.nextInt(20) != 0, tipo, aleatorio.nextBoolean(),
+                        Math.round(aleatorio.nextDouble() * 1000) / 10.0)));
+            }
+        }
+        return dispositivos;
+    }
+
+    private List<Rotina> gerarRotinas(Random aleatorio, List<DispositivoIoT> dispositivos) {
+        List<Rotina> geradas = new ArrayList<>(rotinas);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 6, 0);
+        for (int r = 0; r < rotinas; r++) {
+            List<Acao> acoes = new ArrayList<>(acoesPorRotina);
+            for (int a = 0; a < acoesPorRotina; a++) {
+                acoes.add(sortearAcao(aleatorio, dispositivos.get(aleatorio.nextInt(dispositivos.size()))));
+            }
+            geradas.add(new Rotina("Rotina " + (r + 1), acoes, base.plusMinutes(aleatorio.nextInt(24 * 60))));
+        }
+        return geradas;
+    }
+
+    private static Acao sortearAcao(Random aleatorio, DispositivoIoT dispositivo) {
+        String id = dispositivo.getId();
+        int sorteio = aleatorio.nextInt(3);
+        if (dispositivo instanceof Lampada) {
+            if (sorteio == 0) {
+                return new Acao(id, "definirIntensidade", parametro(aleatorio.nextInt(101)));
+            }
+            return new Acao(id, sorteio == 1 ? "ligar" : "desligar", new HashMap<>());
+        }
+        if (dispositivo instanceof Termostato && sorteio == 0) {
+            return new Acao(id, "definirTemperatura", parametro(18 + aleatorio.nextInt(9)));
+        }
+        return new Acao(id, sorteio == 2 ? "desligar" : "ligar", new HashMap<>());
+    }
+
+    private static Map<String, Object> parametro(Object valor) {
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("valor", valor);
+        return parametros;
+    }
+
+    private List<Alerta> gerarAlertas(Random aleatorio, List<DispositivoIoT> dispositivos) {
+        // Tempos sorteados e ordenados: o armazém indexa por ordem de chegada
+        long agora = System.currentTimeMillis();
+        long[] tempos = new long[alertas];
+        for (int i = 0; i < alertas; i++) {
+            tempos[i] = agora - (long) (aleatorio.nextDouble() * JANELA_ALERTAS_MS);
+        }
+        Arrays.sort(tempos);
+
+        List<Alerta> gerados = new ArrayList<>(alertas);
+        for (int i = 0; i < alertas; i++) {
+            DispositivoIoT dispositivo = dispositivos.get(aleatorio.nextInt(dispositivos.size()));
+            String titulo = TITULOS_ALERTA[aleatorio.nextInt(TITULOS_ALERTA.length)];
+            Alerta alerta = new Alerta(titulo, titulo + " em " + dispositivo.getNome(),
+                    dispositivo.getComodo(), dispositivo.getId());
+            alerta.setTimestamp(Instant.ofEpochMilli(tempos[i]));
+            gerados.add(alerta);
+        }
+        return Collections.unmodifiableList(gerados);
+    }
+
+    /**
+     * Atribui um id (UUID canônico) sorteado, para que a semente reproduza os ids.
+     */
+    private static DispositivoIoT comId(Random aleatorio, DispositivoIoT dispositivo) {
+        dispositivo.setId(new UUID(aleatorio.nextLong(), aleatorio.nextLong()).toString());
+        return dispositivo;
+    }
+
+    private static String nomeComodo(int indice) {
+        String nome = NOMES_COMODOS[indice % NOMES_COMODOS.length];
+        int volta = indice / NOMES_COMODOS.length;
+        return volta == 0 ? nome : nome + " " + (volta + 1);
+    }
+}
@@ -0,0 +1,234 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.net.ClienteRemotoAPI;
+import smarthome.net.ServidorRemotoAPI;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Laço de requisições contra um {@link ServidorRemotoAPI} em processo
+ * (porta livre, conexões keep-alive): listagem, busca por id (pelo caminho,
+ * pelo corpo e condicional), ação, mistura de leituras e escritas, criação
+ * de rotinas grandes e o cliente Java com cache local.
+ *
+ * Com {@code -prof gc}, {@code gc.alloc.rate.norm} soma a alocação do
+ * cliente e do servidor por requisição.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class HttpBenchmarks {
+
+    // Leituras por escrita na mistura (95% leituras, 5% escritas)
+    private static final int LEITURAS_POR_ESCRITA = 19;
+
+    @State(Scope.Benchmark)
+    public static class Servidor {
+        @Param({"10", "1000"})
+        int dispositivos;
+
+        ServidorRemotoAPI servidor;
+        URL listagem;
+        URL acao;
+        URL obter;
+        URL[] porId;
+        String[] etags;
+        byte[][] corposObter;
+        byte[][] corposAcao;
+
+        @Setup(Level.Trial)
+        public void iniciar() throws IOException {
+            SmartHomeServiceImpl servico = CasasSinteticas.casa(dispositivos);
+            String[] ids = CasasSinteticas.ids(servico);
+            servidor = CasasSinteticas.servidor(servico);
+            String base = "http://localhost:" + servidor.getPorta();
+            listagem = new URL(base + "/api/dispositivos");
+            acao = new URL(base + "/api/dispositivos/acao");
+            obter = new URL(base + "/api/dispositivos/obter");
+            porId = new URL[ids.length];
+            etags = new String[ids.length];
+            corposObter = new byte[ids.length][];
+            corposAcao = new byte[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                porId[i] = new URL(base + "/api/dispositivos/" + ids[i]);
+                corposObter[i] = ("\"" + ids[i] + "\"").getBytes(StandardCharsets.UTF_8);
+                corposAcao[i] = ("[\"" + ids[i] + "\",\"ligar\"]").getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            servidor.parar();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int proximo;
+    }
+
+    // Sem If-None-Match: mede a resposta completa (em cache no servidor)
+    @Benchmark
+    public int getDispositivos(Servidor s) throws IOException {
+        return requisitar(s.listagem, "GET", null);
+    }
+
+    @Benchmark
+    public int getDispositivo(Servidor s, Cursor c) throws IOException {
+        return requisitar(s.porId[c.proximo++ % s.porId.length], "GET", null);
+    }
+
+    @Benchmark
+    public int postDispositivosObter(Servidor s, Cursor c) throws IOException {
+        return requisitar(s.obter, "POST", s.corposObter[c.proximo++ % s.corposObter.length]);
+    }
+
+    @Benchmark
+    public int getDispositivoCondicional(Servidor s, Cursor c) throws IOException {
+        int i = c.proximo++ % s.porId.length;
+        String etag = s.etags[i];
+        if (etag == null) {
+            etag = ClienteHttp.enviar(s.porId[i], "GET", null).etag;
+            s.etags[i] = etag;
+        }
+        ClienteHttp.Resposta resposta = ClienteHttp.enviar(s.porId[i], "GET", null, false, etag);
+        if (resposta.status != 304) {
+            throw new IOException("HTTP " + resposta.status + " em GET condicional " + s.porId[i]);
+        }
+        return resposta.status;
+    }
+
+    @Benchmark
+    public int postAcao(Servidor s, Cursor c) throws IOException {
+        return requisitar(s.acao, "POST", s.corposAcao[c.proximo++ % s.corposAcao.length]);
+    }
+
+    /**
+     * Acertos e falhas do cache de respostas do servidor na mistura.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheServidor {
+        public long acertosCache;
+        public long falhasCache;
+        private long acertosInicio;
+        private long falhasInicio;
+
+        @Setup(Level.Iteration)
+        public void marcar(Servidor s) {
+            acertosInicio = s.servidor.getCacheRespostas().getAcertos();
+            falhasInicio = s.servidor.getCacheRespostas().getFalhas();
+        }
+
+        @TearDown(Level.Iteration)
+        public void contar(Servidor s) {
+            acertosCache = s.servidor.getCacheRespostas().getAcertos() - acertosInicio;
+            falhasCache = s.servidor.getCacheRespostas().getFalhas() - falhasInicio;
+        }
+    }
+
+    // 95% listagens e 5% ações: a listagem só é recodificada após uma escrita
+    @Benchmark
+    public int misto95Leituras(Servidor s, Cursor c, CacheServidor cache) throws IOException {
+        int i = c.proximo++;
+        if (i % (LEITURAS_POR_ESCRITA + 1) == LEITURAS_POR_ESCRITA) {
+            return requisitar(s.acao, "POST", s.corposAcao[(i / (LEITURAS_POR_ESCRITA + 1)) % s.corposAcao.length]);
+        }
+        return requisitar(s.listagem, "GET", null);
+    }
+
+    /**
+     * Criação de rotinas grandes: parse do corpo pelo fluxo da conexão e
+     * validação das ações.
+     */
+    @State(Scope.Benchmark)
+    public static class Rotinas {
+        @Param({"100", "2000"})
+        int acoes;
+
+        ServidorRemotoAPI servidor;
+        URL criar;
+        byte[] corpo;
+
+        @Setup(Level.Trial)
+        public void iniciar() throws IOException {
+            SmartHomeServiceImpl servico = CasasSinteticas.casa(100);
+            corpo = CasasSinteticas.rotinaJson(CasasSinteticas.ids(servico), acoes);
+            servidor = CasasSinteticas.servidor(servico);
+            criar = new URL("http://localhost:" + servidor.getPorta() + "/api/rotinas/criar");
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            servidor.parar();
+        }
+    }
+
+    @Benchmark
+    public int postRotinasCriar(Rotinas r) throws IOException {
+        return requisitar(r.criar, "POST", r.corpo);
+    }
+
+    /**
+     * Cliente Java com cache local: a leitura repetida é servida sem ir ao servidor.
+     */
+    @State(Scope.Thread)
+    public static class Cliente {
+        ServidorRemotoAPI servidor;
+        ClienteRemotoAPI cliente;
+        String id;
+
+        @Setup(Level.Trial)
+        public void iniciar() throws Exception {
+            SmartHomeServiceImpl servico = CasasSinteticas.casa(10);
+            servidor = CasasSinteticas.servidor(servico);
+            cliente = new ClienteRemotoAPI("localhost", servidor.getPorta());
+            id = CasasSinteticas.ids(servico)[0];
+            cliente.obterDispositivo(id);
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            servidor.parar();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public DispositivoIoT clienteCacheAcerto(Cliente c) throws Exception {
+        return c.cliente.obterDispositivo(c.id);
+    }
+
+    /**
+     * Faz uma requisição e lê a resposta inteira (a conexão volta ao pool keep-alive).
+     * @return Número de bytes da resposta
+     */
+    private static int requisitar(URL url, String metodo, byte[] corpo) throws IOException {
+        ClienteHttp.Resposta resposta = ClienteHttp.enviar(url, metodo, corpo);
+        if (resposta.status != 200) {
+            throw new IOException("HTTP " + resposta.status + " em " + metodo + " " + url);
+        }
+        return resposta.bytes;
+    }
+}
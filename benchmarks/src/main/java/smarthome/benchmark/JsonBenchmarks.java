@@ -0,0 +1,169 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.net.JsonConverter;
+import smarthome.net.JsonParser;
+import smarthome.net.codec.RegistroCodecs;
+import smarthome.net.codec.SaidaJson;
+import smarthome.pojos.Alerta;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse e serialização JSON: listagens de tamanhos variados, listagem
+ * recodificada com poucas alterações, despacho pelo registro de codecs e
+ * corpos de rotinas grandes (em memória e pelo fluxo).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Listagens {
+        @Param({"10", "1000", "10000"})
+        int dispositivos;
+
+        List<DispositivoIoT> lista;
+        String json;
+        List<Alerta> alertas;
+
+        @Setup
+        public void preparar() {
+            lista = CasasSinteticas.casa(dispositivos).listarDispositivos();
+            json = JsonConverter.toJson(lista);
+            alertas = new ArrayList<>(dispositivos);
+            for (int i = 0; i < dispositivos; i++) {
+                alertas.add(new Alerta("Alerta " + i, "Mensagem " + i, "Comodo " + (i % 20), "d" + i));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object parseDispositivos(Listagens estado) throws IOException {
+        return JsonParser.parse(estado.json);
+    }
+
+    // Fragmentos de dispositivos inalterados vêm do cache do codec
+    @Benchmark
+    public String toJsonDispositivos(Listagens estado) {
+        return JsonConverter.toJson(estado.lista);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytesAlertas(Listagens estado) {
+        return JsonConverter.toJsonBytes(estado.alertas);
+    }
+
+    /**
+     * Cada operação altera 0,1% de 20 mil dispositivos e recodifica a
+     * listagem: só os fragmentos dos alterados são refeitos.
+     */
+    @State(Scope.Thread)
+    public static class Churn {
+        static final int DISPOSITIVOS = 20_000;
+        static final int ALTERADOS = DISPOSITIVOS / 1000;
+
+        SmartHomeServiceImpl servico;
+        String[] ids;
+        int proximo;
+
+        @Setup
+        public void preparar() {
+            servico = CasasSinteticas.casa(DISPOSITIVOS);
+            ids = CasasSinteticas.ids(servico);
+        }
+    }
+
+    @Benchmark
+    public byte[] toJsonBytesListagemComChurn(Churn estado) {
+        for (int i = 0; i < Churn.ALTERADOS; i++) {
+            int indice = estado.proximo++;
+            estado.servico.executarAcao(estado.ids[indice % estado.ids.length],
+                    (indice / estado.ids.length) % 2 == 0 ? "desligar" : "ligar");
+        }
+        return JsonConverter.toJsonBytes(estado.servico.listarDispositivos());
+    }
+
+    /**
+     * Despacho pelo registro de codecs: valores pequenos, em que a busca do
+     * codec pesa, e dispositivos com fragmento em cache.
+     */
+    @State(Scope.Thread)
+    public static class Despacho {
+        final Object[] valores = {"texto", 42, 7L, 3.5, Boolean.TRUE, "outro", -1, 0.25};
+        List<DispositivoIoT> dispositivos;
+        int proximo;
+
+        @Setup
+        public void preparar() {
+            dispositivos = CasasSinteticas.casa(64).listarDispositivos();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int codecDespachoValoresSimples(Despacho estado) {
+        return escreverComCodec(estado.valores[estado.proximo++ & 7]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int codecDespachoDispositivos(Despacho estado) {
+        return escreverComCodec(estado.dispositivos.get(estado.proximo++ % estado.dispositivos.size()));
+    }
+
+    private static int escreverComCodec(Object valor) {
+        SaidaJson saida = SaidaJson.daThread();
+        try {
+            RegistroCodecs.escrever(valor, saida);
+            return saida.tamanho();
+        } finally {
+            saida.devolver();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rotinas {
+        @Param({"100", "2000"})
+        int acoes;
+
+        byte[] corpo;
+        String texto;
+
+        @Setup
+        public void preparar() {
+            corpo = CasasSinteticas.rotinaJson(CasasSinteticas.ids(CasasSinteticas.casa(100)), acoes);
+            texto = new String(corpo, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public Object parseRotina(Rotinas estado) throws IOException {
+        return JsonParser.parse(estado.texto);
+    }
+
+    @Benchmark
+    public Object parseRotinaFluxo(Rotinas estado) throws IOException {
+        return JsonParser.parse(new ByteArrayInputStream(estado.corpo));
+    }
+}
@@ -0,0 +1,278 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.pojos.IdCompacto;
+import smarthome.services.MapaIdCompacto;
+import smarthome.services.RegistroConcorrente;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registros de dispositivos com um milhão de ids: mapa de chaves de 128
+ * bits em arrays ({@link MapaIdCompacto}) e {@link RegistroConcorrente}
+ * contra HashMap e ConcurrentHashMap de String.
+ *
+ * <ul>
+ *   <li>Busca pelo id textual, criando uma String nova a cada vez.</li>
+ *   <li>Mistura concorrente de 90% leituras e 10% substituições.</li>
+ *   <li>Construção: com {@code -prof gc}, {@code gc.alloc.rate.norm} dá os
+ *       bytes alocados para montar cada estrutura.</li>
+ *   <li>Pausa de coleta completa com a estrutura viva: mais objetos
+ *       alcançáveis, mais trabalho de marcação a cada coleta.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RegistroBenchmarks {
+
+    private static final int IDS = 1_000_000;
+    private static final int CONSULTAS = 4096;
+    private static final Object VALOR = new Object();
+
+    /**
+     * Pares (msb, lsb) dos ids e as consultas espalhadas pelo conjunto.
+     */
+    @State(Scope.Benchmark)
+    public static class Chaves {
+        long[][] chaves;
+        char[][] consultas;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            chaves = CasasSinteticas.chavesAleatorias(IDS);
+            consultas = CasasSinteticas.amostraIds(chaves, CONSULTAS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int proximo;
+
+        String proximaConsulta(Chaves chaves) {
+            return new String(chaves.consultas[proximo++ & (CONSULTAS - 1)]);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MapaCompacto {
+        MapaIdCompacto<Object> mapa;
+
+        @Setup(Level.Trial)
+        public void preparar(Chaves chaves) {
+            mapa = construirMapaCompacto(chaves.chaves);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class HashMapString {
+        Map<String, Object> mapa;
+
+        @Setup(Level.Trial)
+        public void preparar(Chaves chaves) {
+            mapa = construirMapaString(chaves.chaves, new HashMap<String, Object>());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Concorrente {
+        RegistroConcorrente<Object> registro;
+
+        @Setup(Level.Trial)
+        public void preparar(Chaves chaves) {
+            registro = construirRegistro(chaves.chaves);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConcurrentHashMapString {
+        Map<String, Object> mapa;
+
+        @Setup(Level.Trial)
+        public void preparar(Chaves chaves) {
+            mapa = construirMapaString(chaves.chaves, new ConcurrentHashMap<String, Object>());
+        }
+    }
+
+    @Benchmark
+    public Object getMapaCompacto(MapaCompacto estrutura, Chaves chaves, Cursor cursor) {
+        return estrutura.mapa.get(cursor.proximaConsulta(chaves));
+    }
+
+    @Benchmark
+    public Object getHashMapString(HashMapString estrutura, Chaves chaves, Cursor cursor) {
+        return estrutura.mapa.get(cursor.proximaConsulta(chaves));
+    }
+
+    @Benchmark
+    public Object getRegistroConcorrente(Concorrente estrutura, Chaves chaves, Cursor cursor) {
+        return estrutura.registro.get(cursor.proximaConsulta(chaves));
+    }
+
+    @Benchmark
+    public Object getConcurrentHashMap(ConcurrentHashMapString estrutura, Chaves chaves, Cursor cursor) {
+        return estrutura.mapa.get(cursor.proximaConsulta(chaves));
+    }
+
+    // ---------------------------------------------------------------
+    // Mistura concorrente: 90% leituras, 10% substituições
+    // ---------------------------------------------------------------
+
+    @State(Scope.Benchmark)
+    public static class Misto {
+        static final int CHAVES = 100_000;
+
+        RegistroConcorrente<Long> registro;
+        IdCompacto[] ids;
+        Map<String, Long> mapa;
+        String[] textos;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            registro = new RegistroConcorrente<>(CHAVES);
+            ids = new IdCompacto[CHAVES];
+            mapa = new ConcurrentHashMap<>(CHAVES * 2);
+            textos = new String[CHAVES];
+            for (int i = 0; i < CHAVES; i++) {
+                ids[i] = IdCompacto.gerar();
+                registro.put(ids[i], (long) i);
+                textos[i] = ids[i].toString();
+                mapa.put(textos[i], (long) i);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object mistoRegistroConcorrente(Misto misto) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        IdCompacto id = misto.ids[aleatorio.nextInt(Misto.CHAVES)];
+        Long atual = misto.registro.get(id);
+        if (aleatorio.nextInt(10) == 0) {
+            return misto.registro.substituir(id, atual, atual + 1);
+        }
+        return atual;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object mistoConcurrentHashMap(Misto misto) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        String id = misto.textos[aleatorio.nextInt(Misto.CHAVES)];
+        Long atual = misto.mapa.get(id);
+        if (aleatorio.nextInt(10) == 0) {
+            return misto.mapa.replace(id, atual, atual + 1);
+        }
+        return atual;
+    }
+
+    // ---------------------------------------------------------------
+    // Memória: as chaves são criadas dentro da construção (só os longs já existem)
+    // ---------------------------------------------------------------
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object construirMapaCompacto(Chaves chaves) {
+        return construirMapaCompacto(chaves.chaves);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object construirHashMapString(Chaves chaves) {
+        return construirMapaString(chaves.chaves, new HashMap<String, Object>());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object construirRegistroConcorrente(Chaves chaves) {
+        return construirRegistro(chaves.chaves);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object construirConcurrentHashMap(Chaves chaves) {
+        return construirMapaString(chaves.chaves, new ConcurrentHashMap<String, Object>());
+    }
+
+    /**
+     * Uma das estruturas, cheia, mantida viva durante as coletas.
+     */
+    @State(Scope.Benchmark)
+    public static class Retido {
+        @Param({"mapaCompacto", "hashMapString", "registroConcorrente", "concurrentHashMap"})
+        String estrutura;
+
+        Object retido;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            long[][] chaves = CasasSinteticas.chavesAleatorias(IDS);
+            switch (estrutura) {
+                case "mapaCompacto":
+                    retido = construirMapaCompacto(chaves);
+                    break;
+                case "hashMapString":
+                    retido = construirMapaString(chaves, new HashMap<String, Object>());
+                    break;
+                case "registroConcorrente":
+                    retido = construirRegistro(chaves);
+                    break;
+                case "concurrentHashMap":
+                    retido = construirMapaString(chaves, new ConcurrentHashMap<String, Object>());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Estrutura desconhecida: " + estrutura);
+            }
+        }
+    }
+
+    // Cada operação é uma coleta completa: o tempo é a pausa com a estrutura viva
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object pausaGcCompleta(Retido retido) {
+        System.gc();
+        return retido.retido;
+    }
+
+    private static MapaIdCompacto<Object> construirMapaCompacto(long[][] chaves) {
+        MapaIdCompacto<Object> mapa = new MapaIdCompacto<>();
+        for (int i = 0; i < chaves[0].length; i++) {
+            mapa.put(chaves[0][i], chaves[1][i], VALOR);
+        }
+        return mapa;
+    }
+
+    private static RegistroConcorrente<Object> construirRegistro(long[][] chaves) {
+        RegistroConcorrente<Object> registro = new RegistroConcorrente<>();
+        for (int i = 0; i < chaves[0].length; i++) {
+            registro.put(new IdCompacto(chaves[0][i], chaves[1][i]), VALOR);
+        }
+        return registro;
+    }
+
+    private static Map<String, Object> construirMapaString(long[][] chaves, Map<String, Object> mapa) {
+        for (int i = 0; i < chaves[0].length; i++) {
+            mapa.put(new UUID(chaves[0][i], chaves[1][i]).toString(), VALOR);
+        }
+        return mapa;
+    }
+}
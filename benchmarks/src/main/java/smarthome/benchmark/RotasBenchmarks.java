@@ -0,0 +1,119 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.net.TabelaRotas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Roteamento de uma requisição pela tabela de rotas contra a busca linear
+ * pelo prefixo mais longo (o roteamento por contextos do HttpServer), com
+ * 24 rotas (o tamanho atual da API) e 128 rotas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RotasBenchmarks {
+
+    private static final int ROTAS_POR_RECURSO = 8;
+
+    // 3 recursos = 24 rotas; 16 recursos = 128 rotas
+    @Param({"3", "16"})
+    int recursos;
+
+    TabelaRotas<String> tabela;
+    final TabelaRotas.Correspondencia<String> resultado = new TabelaRotas.Correspondencia<>();
+    List<String[]> contextos;
+    String[][] requisicoes;
+    int proximo;
+
+    @Setup
+    public void preparar() {
+        List<String[]> rotas = rotasSinteticas(recursos);
+        tabela = new TabelaRotas<>();
+        contextos = new ArrayList<>(rotas.size());
+        for (String[] rota : rotas) {
+            tabela.adicionar(rota[0], rota[1], rota[1]);
+            int chave = rota[1].indexOf("/{");
+            contextos.add(new String[] {rota[0], chave >= 0 ? rota[1].substring(0, chave) : rota[1]});
+        }
+        requisicoes = requisicoesSinteticas(rotas);
+    }
+
+    @Benchmark
+    public String tabela() {
+        String[] requisicao = requisicoes[proximo++ % requisicoes.length];
+        if (!tabela.encontrar(requisicao[0], requisicao[1], resultado)) {
+            throw new IllegalStateException("Rota não encontrada: " + requisicao[1]);
+        }
+        return resultado.getDestino();
+    }
+
+    @Benchmark
+    public String[] prefixoLinear() {
+        String[] requisicao = requisicoes[proximo++ % requisicoes.length];
+        String[] melhor = null;
+        for (String[] contexto : contextos) {
+            if (requisicao[1].startsWith(contexto[1]) && requisicao[0].equals(contexto[0])
+                    && (melhor == null || contexto[1].length() > melhor[1].length())) {
+                melhor = contexto;
+            }
+        }
+        if (melhor == null) {
+            throw new IllegalStateException("Rota não encontrada: " + requisicao[1]);
+        }
+        return melhor;
+    }
+
+    /**
+     * Oito rotas por recurso, no formato da API: listagem, criação, busca,
+     * atualização e remoção por id e sub-recursos com parâmetros.
+     * @return Pares {método, padrão}
+     */
+    private static List<String[]> rotasSinteticas(int recursos) {
+        List<String[]> rotas = new ArrayList<>(recursos * ROTAS_POR_RECURSO);
+        for (int r = 0; r < recursos; r++) {
+            String base = "/api/recurso" + r;
+            rotas.add(new String[] {"GET", base});
+            rotas.add(new String[] {"POST", base + "/criar"});
+            rotas.add(new String[] {"GET", base + "/{id}"});
+            rotas.add(new String[] {"PATCH", base + "/{id}"});
+            rotas.add(new String[] {"DELETE", base + "/{id}"});
+            rotas.add(new String[] {"POST", base + "/{id}/acao"});
+            rotas.add(new String[] {"GET", base + "/{id}/historico"});
+            rotas.add(new String[] {"GET", base + "/{id}/itens/{item}"});
+        }
+        return rotas;
+    }
+
+    /**
+     * Uma requisição concreta para cada rota sintética (ids no formato UUID).
+     * @return Pares {método, caminho}
+     */
+    private static String[][] requisicoesSinteticas(List<String[]> rotas) {
+        String[][] requisicoes = new String[rotas.size()][];
+        for (int i = 0; i < requisicoes.length; i++) {
+            String caminho = rotas.get(i)[1]
+                    .replace("{id}", new UUID(i, 31L * i).toString())
+                    .replace("{item}", Integer.toString(i));
+            requisicoes[i] = new String[] {rotas.get(i)[0], caminho};
+        }
+        return requisicoes;
+    }
+}
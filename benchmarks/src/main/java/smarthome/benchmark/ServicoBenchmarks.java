@@ -0,0 +1,213 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.interfaces.ConflitoVersaoException;
+import smarthome.interfaces.ISmartHomeService;
+import smarthome.pojos.Comodo;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.ResultadoLote;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leituras e escritas do serviço em casas de tamanhos variados, o comando
+ * em lote para o prédio inteiro e os cenários concorrentes: listagens com
+ * um escritor alterando dispositivos e contenção de If-Match em um único
+ * dispositivo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ServicoBenchmarks {
+
+    @State(Scope.Thread)
+    public static class Casa {
+        @Param({"10", "1000", "10000"})
+        int dispositivos;
+
+        SmartHomeServiceImpl servico;
+        String[] ids;
+        final Map<String, Object> campos = Collections.singletonMap("online", (Object) Boolean.TRUE);
+        int proximo;
+
+        @Setup
+        public void preparar() {
+            servico = CasasSinteticas.casa(dispositivos);
+            ids = CasasSinteticas.ids(servico);
+        }
+
+        String proximoId() {
+            return ids[proximo++ % ids.length];
+        }
+    }
+
+    @Benchmark
+    public List<DispositivoIoT> listarDispositivos(Casa casa) {
+        return casa.servico.listarDispositivos();
+    }
+
+    @Benchmark
+    public DispositivoIoT obterDispositivo(Casa casa) {
+        return casa.servico.obterDispositivo(casa.proximoId());
+    }
+
+    @Benchmark
+    public Comodo obterComodo(Casa casa) {
+        return casa.servico.obterComodo("Comodo 0");
+    }
+
+    // Cada escrita deriva o retrato seguinte copiando só o bloco e o cômodo alterados
+    @Benchmark
+    public DispositivoIoT executarAcao(Casa casa) {
+        return casa.servico.executarAcao(casa.proximoId(), "ligar");
+    }
+
+    @Benchmark
+    public DispositivoIoT atualizarCampos(Casa casa) {
+        return casa.servico.atualizarCampos(casa.proximoId(), casa.campos);
+    }
+
+    @Benchmark
+    public ResultadoLote executarAcaoComodo(Casa casa) {
+        return casa.servico.executarAcaoComodo("Comodo 0", null, casa.proximo++ % 2 == 0 ? "ligar" : "desligar", null);
+    }
+
+    /**
+     * Prédio com 5 mil dispositivos: desligar todos alterna com religar,
+     * para que cada operação altere todos os que aceitam o comando.
+     */
+    @State(Scope.Thread)
+    public static class Predio {
+        static final int DISPOSITIVOS = 5_000;
+
+        SmartHomeServiceImpl servico;
+        int vez;
+
+        @Setup
+        public void preparar() {
+            servico = CasasSinteticas.casa(DISPOSITIVOS);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ResultadoLote loteDesligarTodos(Predio predio) {
+        ResultadoLote resultado = predio.servico.executarAcaoGrupo(ISmartHomeService.GRUPO_TODOS, null,
+                predio.vez++ % 2 == 0 ? "desligar" : "ligar", null);
+        if (!resultado.getFalhas().isEmpty()) {
+            throw new IllegalStateException("Falhas no lote: " + resultado.getFalhas().size());
+        }
+        return resultado;
+    }
+
+    // ---------------------------------------------------------------
+    // Concorrência
+    // ---------------------------------------------------------------
+
+    /**
+     * Casa compartilhada pelas threads de um grupo: três leitores listam
+     * enquanto um escritor alterna dispositivos. O JMH informa o tempo de
+     * cada papel separadamente.
+     */
+    @State(Scope.Group)
+    public static class CasaCompartilhada {
+        @Param({"10", "1000", "10000"})
+        int dispositivos;
+
+        SmartHomeServiceImpl servico;
+        String[] ids;
+        int proximo;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            servico = CasasSinteticas.casa(dispositivos);
+            ids = CasasSinteticas.ids(servico);
+        }
+    }
+
+    @Benchmark
+    @Group("retratos")
+    @GroupThreads(3)
+    public DispositivoIoT retratosLeitor(CasaCompartilhada casa) {
+        List<DispositivoIoT> lista = casa.servico.listarDispositivos();
+        return lista.get(lista.size() - 1);
+    }
+
+    // Só o escritor avança o cursor
+    @Benchmark
+    @Group("retratos")
+    @GroupThreads(1)
+    public DispositivoIoT retratosEscritor(CasaCompartilhada casa) {
+        int i = casa.proximo++;
+        return casa.servico.executarAcao(casa.ids[i % casa.ids.length], i % 2 == 0 ? "desligar" : "ligar");
+    }
+
+    @State(Scope.Benchmark)
+    public static class Disputado {
+        SmartHomeServiceImpl servico;
+        String id;
+        final Map<String, Object> campos = Collections.singletonMap("online", (Object) Boolean.TRUE);
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            servico = CasasSinteticas.casa(10);
+            id = CasasSinteticas.ids(servico)[0];
+        }
+    }
+
+    /**
+     * Resultado das atualizações com If-Match de cada thread, somado pelo
+     * JMH como métricas secundárias.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ResultadoIfMatch {
+        public long atualizacoes;
+        public long conflitos;
+
+        @Setup(Level.Iteration)
+        public void zerar() {
+            atualizacoes = 0;
+            conflitos = 0;
+        }
+    }
+
+    /**
+     * Todas as threads atualizam o mesmo dispositivo com a versão lida; a
+     * taxa de conflitos sai de {@code conflitos / (conflitos + atualizacoes)}.
+     */
+    @Benchmark
+    @Threads(4)
+    public Object ifMatchContencao(Disputado disputado, ResultadoIfMatch resultado) {
+        long versao = disputado.servico.obterDispositivo(disputado.id).getVersao();
+        try {
+            DispositivoIoT atualizado = disputado.servico.atualizarCampos(disputado.id, disputado.campos, versao);
+            resultado.atualizacoes++;
+            return atualizado;
+        } catch (ConflitoVersaoException e) {
+            resultado.conflitos++;
+            return e;
+        }
+    }
+}
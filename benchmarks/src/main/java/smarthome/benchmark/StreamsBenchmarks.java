@@ -0,0 +1,50 @@
+package smarthome.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.streams.DispositivoIoTInputStream;
+import smarthome.streams.DispositivoIoTOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ida e volta de dispositivos pelo formato binário dos streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StreamsBenchmarks {
+
+    @Param({"10", "1000", "10000"})
+    int dispositivos;
+
+    DispositivoIoT[] lista;
+
+    @Setup
+    public void preparar() {
+        lista = CasasSinteticas.casa(dispositivos).listarDispositivos().toArray(new DispositivoIoT[0]);
+    }
+
+    @Benchmark
+    public Object idaVolta() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * lista.length);
+        new DispositivoIoTOutputStream(lista, lista.length, buffer).writeObjects();
+        return new DispositivoIoTInputStream(new ByteArrayInputStream(buffer.toByteArray())).readObjects();
+    }
+}
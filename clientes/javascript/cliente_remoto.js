@@ -5,6 +5,9 @@
 
 const http = require('http');
 
+// Endpoints com ETag guardados (os menos usados recentemente saem primeiro)
+const CAPACIDADE_ETAGS = 256;
+
 class ClienteRemotoAPI {
     /**
      * Inicializa o cliente.
@@ -13,6 +16,21 @@ class ClienteRemotoAPI {
      */
     constructor(host = 'localhost', porta = 8080) {
         this.baseUrl = `http://${host}:${porta}`;
+        // Cache de respostas GET por endpoint: endpoint -> { etag, corpo }
+        // (o Map mantém a ordem de inserção: a primeira chave é a menos usada)
+        this._etags = new Map();
+    }
+
+    /**
+     * Guarda a resposta do endpoint como a mais recente, descartando a
+     * menos usada recentemente acima de CAPACIDADE_ETAGS.
+     */
+    _guardarEtag(endpoint, entrada) {
+        this._etags.delete(endpoint);
+        this._etags.set(endpoint, entrada);
+        if (this._etags.size > CAPACIDADE_ETAGS) {
+            this._etags.delete(this._etags.keys().next().value);
+        }
     }
 
     /**
@@ -20,9 +38,10 @@ class ClienteRemotoAPI {
      * @param {string} endpoint - Endpoint da API
      * @param {string} method - Método HTTP (GET, POST)
      * @param {any} dados - Dados para enviar no corpo da requisição
+     * @param {Object} cabecalhos - Cabeçalhos HTTP adicionais (ex.: If-Match)
      * @returns {Promise<any>} Resposta deserializada
      */
-    async _fazerRequisicao(endpoint, method = 'GET', dados = null) {
+    async _fazerRequisicao(endpoint, method = 'GET', dados = null, cabecalhos = {}) {
         return new Promise((resolve, reject) => {
             const url = new URL(this.baseUrl + endpoint);
             
@@ -36,6 +55,13 @@ class ClienteRemotoAPI {
 
             // Sempre solicita JSON
             options.headers['Accept'] = 'application/json';
+            Object.assign(options.headers, cabecalhos);
+
+            // GET condicional: envia a ETag da última resposta deste endpoint
+            const emCache = method === 'GET' ? this._etags.get(endpoint) : undefined;
+            if (emCache) {
+                options.headers['If-None-Match'] = emCache.etag;
+            }
             
             if (dados !== null) {
                 const jsonData = JSON.stringify(dados);
@@ -46,6 +72,14 @@ class ClienteRemotoAPI {
             console.log(`[CLIENTE] ${method} ${endpoint}`);
 
             const req = http.request(options, (res) => {
+                // 304 Not Modified: o corpo em cache continua válido
+                if (res.statusCode === 304 && emCache) {
+                    res.resume();
+                    this._guardarEtag(endpoint, emCache);
+                    resolve(emCache.corpo);
+                    return;
+                }
+
                 let responseData = '';
 
                 res.on('data', (chunk) => {
@@ -56,6 +90,10 @@ class ClienteRemotoAPI {
                     try {
                         // Tenta deserializar como JSON
                         const parsed = JSON.parse(responseData);
+                        const etag = res.headers['etag'];
+                        if (method === 'GET' && etag && res.statusCode === 200) {
+                            this._guardarEtag(endpoint, { etag, corpo: parsed });
+                        }
                         resolve(parsed);
                     } catch (e) {
                         // Se não for JSON, retorna como string
@@ -85,33 +123,54 @@ class ClienteRemotoAPI {
     }
 
     /**
-     * Obtém um dispositivo por ID.
+     * Obtém um dispositivo por ID (GET condicional: 304 reaproveita o corpo em cache).
      * @param {string} dispositivoId - ID do dispositivo
      * @returns {Promise<Object>} Dispositivo encontrado
      */
     async obterDispositivo(dispositivoId) {
-        return this._fazerRequisicao('/api/dispositivos/obter', 'POST', dispositivoId);
+        return this._fazerRequisicao(`/api/dispositivos/${encodeURIComponent(dispositivoId)}`, 'GET');
     }
 
     /**
      * Atualiza um dispositivo.
+     * Com versao (campo "versao" lido do servidor), a atualização só é aplicada
+     * se ninguém alterou o dispositivo antes; caso contrário o servidor
+     * responde 409 com um objeto de erro.
      * @param {string} dispositivoId - ID do dispositivo
      * @param {Object} dispositivo - Dados do dispositivo
+     * @param {number} [versao] - Versão esperada do dispositivo
      * @returns {Promise<Object>} Dispositivo atualizado
      */
-    async atualizarDispositivo(dispositivoId, dispositivo) {
+    async atualizarDispositivo(dispositivoId, dispositivo, versao = undefined) {
         const dados = [dispositivoId, dispositivo];
-        return this._fazerRequisicao('/api/dispositivos/atualizar', 'POST', dados);
+        const cabecalhos = versao !== undefined ? { 'If-Match': `"${versao}"` } : {};
+        return this._fazerRequisicao('/api/dispositivos/atualizar', 'POST', dados, cabecalhos);
+    }
+
+    /**
+     * Atualização parcial: altera apenas os campos informados
+     * (ex.: { intensidade: 50 }). Com versao, é condicional como em
+     * atualizarDispositivo.
+     * @param {string} dispositivoId - ID do dispositivo
+     * @param {Object} campos - Campos a alterar
+     * @param {number} [versao] - Versão esperada do dispositivo
+     * @returns {Promise<Object>} Dispositivo atualizado
+     */
+    async atualizarCampos(dispositivoId, campos, versao = undefined) {
+        const dados = [dispositivoId, campos];
+        const cabecalhos = versao !== undefined ? { 'If-Match': `"${versao}"` } : {};
+        return this._fazerRequisicao('/api/dispositivos/campos', 'PATCH', dados, cabecalhos);
     }
 
     /**
      * Executa uma ação em um dispositivo.
      * @param {string} dispositivoId - ID do dispositivo
      * @param {string} comando - Comando a executar
+     * @param {Object} [parametros] - Parâmetros do comando (ex.: {valor: 50})
      * @returns {Promise<Object>} Dispositivo após execução
      */
-    async executarAcao(dispositivoId, comando) {
-        const dados = [dispositivoId, comando];
+    async executarAcao(dispositivoId, comando, parametros) {
+        const dados = parametros ? [dispositivoId, comando, parametros] : [dispositivoId, comando];
         return this._fazerRequisicao('/api/dispositivos/acao', 'POST', dados);
     }
 
@@ -132,6 +191,15 @@ class ClienteRemotoAPI {
         return this._fazerRequisicao('/api/rotinas/criar', 'POST', rotina);
     }
 
+    /**
+     * Executa as ações de uma rotina.
+     * @param {string} rotinaId - ID da rotina
+     * @returns {Promise<Array>} Dispositivos após execução
+     */
+    async executarRotina(rotinaId) {
+        return this._fazerRequisicao('/api/rotinas/executar', 'POST', rotinaId);
+    }
+
     /**
      * Lista todos os alertas.
      * @returns {Promise<Array>} Lista de alertas
@@ -141,12 +209,54 @@ class ClienteRemotoAPI {
     }
 
     /**
-     * Obtém um cômodo por nome.
+     * Obtém um cômodo por nome (GET condicional: 304 reaproveita o corpo em cache).
      * @param {string} nomeComodo - Nome do cômodo
      * @returns {Promise<Object>} Cômodo encontrado
      */
     async obterComodo(nomeComodo) {
-        return this._fazerRequisicao('/api/comodos/obter', 'POST', nomeComodo);
+        return this._fazerRequisicao(`/api/comodos/${encodeURIComponent(nomeComodo)}`, 'GET');
+    }
+
+    /**
+     * Executa um comando em todos os dispositivos de um cômodo.
+     * @param {string} nomeComodo - Nome do cômodo
+     * @param {string} comando - Comando a executar
+     * @param {Object} [parametros] - Parâmetros do comando
+     * @param {string} [tipo] - Tipo dos dispositivos afetados (ex.: 'Lampada')
+     * @returns {Promise<Object>} Resultado agregado
+     */
+    async executarAcaoComodo(nomeComodo, comando, parametros = null, tipo = null) {
+        return this._fazerRequisicao('/api/comodos/acao', 'POST', [nomeComodo, comando, parametros, tipo]);
+    }
+
+    /**
+     * Lista os grupos de dispositivos.
+     * @returns {Promise<Object>} Nome do grupo -> ids dos dispositivos
+     */
+    async listarGrupos() {
+        return this._fazerRequisicao('/api/grupos', 'GET');
+    }
+
+    /**
+     * Define um grupo de dispositivos (lista vazia remove o grupo).
+     * @param {string} nomeGrupo - Nome do grupo
+     * @param {Array<string>} dispositivoIds - IDs dos dispositivos
+     * @returns {Promise<Array>} IDs dos membros
+     */
+    async definirGrupo(nomeGrupo, dispositivoIds) {
+        return this._fazerRequisicao('/api/grupos/definir', 'POST', [nomeGrupo, dispositivoIds]);
+    }
+
+    /**
+     * Executa um comando em todos os dispositivos de um grupo ('todos' = todos).
+     * @param {string} nomeGrupo - Nome do grupo
+     * @param {string} comando - Comando a executar
+     * @param {Object} [parametros] - Parâmetros do comando
+     * @param {string} [tipo] - Tipo dos dispositivos afetados
+     * @returns {Promise<Object>} Resultado agregado
+     */
+    async executarAcaoGrupo(nomeGrupo, comando, parametros = null, tipo = null) {
+        return this._fazerRequisicao('/api/grupos/acao', 'POST', [nomeGrupo, comando, parametros, tipo]);
     }
 }
 
@@ -8,9 +8,14 @@ Comunica-se com o servidor Java via API REST HTTP usando JSON.
 import json
 import urllib.request
 import urllib.parse
+from collections import OrderedDict
 from typing import List, Dict, Optional, Any
 
 
+# Endpoints com ETag guardados (os menos usados recentemente saem primeiro)
+CAPACIDADE_ETAGS = 256
+
+
 class ClienteRemotoAPI:
     """Cliente remoto que se comunica com o servidor usando API REST HTTP."""
     
@@ -23,9 +28,20 @@ class ClienteRemotoAPI:
             porta: Porta do servidor
         """
         self.base_url = f"http://{host}:{porta}"
+        # Cache de respostas GET por endpoint: {endpoint: (etag, corpo)}
+        self._etags: "OrderedDict[str, Any]" = OrderedDict()
+    
+    def _guardar_etag(self, endpoint: str, entrada: Any) -> None:
+        """Guarda a resposta do endpoint como a mais recente, descartando a
+        menos usada recentemente acima de CAPACIDADE_ETAGS."""
+        self._etags[endpoint] = entrada
+        self._etags.move_to_end(endpoint)
+        if len(self._etags) > CAPACIDADE_ETAGS:
+            self._etags.popitem(last=False)
     
     def _fazer_requisicao(self, endpoint: str, method: str = "GET", 
-                         dados: Optional[Any] = None) -> Any:
+                         dados: Optional[Any] = None,
+                         cabecalhos: Optional[Dict[str, str]] = None) -> Any:
         """
         Executa uma requisição HTTP e retorna a resposta.
         
@@ -33,6 +49,7 @@ class ClienteRemotoAPI:
             endpoint: Endpoint da API
             method: Método HTTP (GET, POST)
             dados: Dados para enviar no corpo da requisição
+            cabecalhos: Cabeçalhos HTTP adicionais (ex.: If-Match)
             
         Returns:
             Resposta deserializada
@@ -50,6 +67,14 @@ class ClienteRemotoAPI:
             req = urllib.request.Request(url, method=method)
             req.add_header('Accept', 'application/json')
         
+        for nome, valor in (cabecalhos or {}).items():
+            req.add_header(nome, valor)
+        
+        # GET condicional: envia a ETag da última resposta deste endpoint
+        em_cache = self._etags.get(endpoint) if method == "GET" else None
+        if em_cache is not None:
+            req.add_header('If-None-Match', em_cache[0])
+        
         try:
             print(f"[CLIENTE] {method} {endpoint}")
             with urllib.request.urlopen(req) as response:
@@ -62,9 +87,13 @@ class ClienteRemotoAPI:
                 # Se for JSON, deserializa
                 if 'application/json' in content_type:
                     try:
-                        return json.loads(response_data.decode('utf-8'))
+                        corpo = json.loads(response_data.decode('utf-8'))
                     except json.JSONDecodeError as e:
                         raise Exception(f"Erro ao decodificar JSON: {e}")
+                    etag = response.headers.get('ETag')
+                    if method == "GET" and etag:
+                        self._guardar_etag(endpoint, (etag, corpo))
+                    return corpo
                 else:
                     # Se não for JSON, pode ser erro ou dados binários
                     # Tenta decodificar como UTF-8 (pode ser texto de erro)
@@ -78,6 +107,10 @@ class ClienteRemotoAPI:
                                       "Certifique-se de que o servidor esta configurado para retornar JSON quando " +
                                       "o header Accept: application/json e enviado.")
         except urllib.error.HTTPError as e:
+            # 304 Not Modified: o corpo em cache continua válido
+            if e.code == 304 and em_cache is not None:
+                self._guardar_etag(endpoint, em_cache)
+                return em_cache[1]
             try:
                 error_msg = e.read().decode('utf-8')
             except:
@@ -89,17 +122,39 @@ class ClienteRemotoAPI:
         return self._fazer_requisicao("/api/dispositivos", "GET")
     
     def obter_dispositivo(self, dispositivo_id: str) -> Optional[Dict]:
-        """Obtém um dispositivo por ID."""
-        return self._fazer_requisicao("/api/dispositivos/obter", "POST", dispositivo_id)
+        """Obtém um dispositivo por ID (GET condicional: 304 reaproveita o corpo em cache)."""
+        return self._fazer_requisicao(
+            f"/api/dispositivos/{urllib.parse.quote(dispositivo_id, safe='')}", "GET")
     
-    def atualizar_dispositivo(self, dispositivo_id: str, dispositivo: Dict) -> Optional[Dict]:
-        """Atualiza um dispositivo."""
+    def atualizar_dispositivo(self, dispositivo_id: str, dispositivo: Dict,
+                              versao: Optional[int] = None) -> Optional[Dict]:
+        """
+        Atualiza um dispositivo.
+        Com versao (campo "versao" lido do servidor), a atualização só é aplicada
+        se ninguém alterou o dispositivo antes; caso contrário o servidor
+        responde 409 e uma exceção é lançada.
+        """
         dados = [dispositivo_id, dispositivo]
-        return self._fazer_requisicao("/api/dispositivos/atualizar", "POST", dados)
+        cabecalhos = {'If-Match': f'"{versao}"'} if versao is not None else None
+        return self._fazer_requisicao("/api/dispositivos/atualizar", "POST", dados, cabecalhos)
     
-    def executar_acao(self, dispositivo_id: str, comando: str) -> Optional[Dict]:
-        """Executa uma ação em um dispositivo."""
+    def atualizar_campos(self, dispositivo_id: str, campos: Dict,
+                         versao: Optional[int] = None) -> Optional[Dict]:
+        """
+        Atualização parcial: altera apenas os campos informados
+        (ex.: {"intensidade": 50}). Com versao, é condicional como em
+        atualizar_dispositivo.
+        """
+        dados = [dispositivo_id, campos]
+        cabecalhos = {'If-Match': f'"{versao}"'} if versao is not None else None
+        return self._fazer_requisicao("/api/dispositivos/campos", "PATCH", dados, cabecalhos)
+    
+    def executar_acao(self, dispositivo_id: str, comando: str,
+                      parametros: Optional[Dict] = None) -> Optional[Dict]:
+        """Executa uma ação em um dispositivo (parâmetros opcionais, ex.: {"valor": 50})."""
         dados = [dispositivo_id, comando]
+        if parametros:
+            dados.append(parametros)
         return self._fazer_requisicao("/api/dispositivos/acao", "POST", dados)
     
     def listar_rotinas(self) -> List[Dict]:
@@ -110,13 +165,36 @@ class ClienteRemotoAPI:
         """Cria uma nova rotina."""
         return self._fazer_requisicao("/api/rotinas/criar", "POST", rotina)
     
+    def executar_rotina(self, rotina_id: str) -> Optional[List[Dict]]:
+        """Executa as ações de uma rotina."""
+        return self._fazer_requisicao("/api/rotinas/executar", "POST", rotina_id)
+    
     def listar_alertas(self) -> List[Dict]:
         """Lista todos os alertas."""
         return self._fazer_requisicao("/api/alertas", "GET")
     
     def obter_comodo(self, nome_comodo: str) -> Optional[Dict]:
-        """Obtém um cômodo por nome."""
-        return self._fazer_requisicao("/api/comodos/obter", "POST", nome_comodo)
+        """Obtém um cômodo por nome (GET condicional: 304 reaproveita o corpo em cache)."""
+        return self._fazer_requisicao(
+            f"/api/comodos/{urllib.parse.quote(nome_comodo, safe='')}", "GET")
+    
+    def executar_acao_comodo(self, nome_comodo: str, comando: str,
+                             parametros: Optional[Dict] = None, tipo: Optional[str] = None) -> Optional[Dict]:
+        """Executa um comando em todos os dispositivos de um cômodo (resultado agregado)."""
+        return self._fazer_requisicao("/api/comodos/acao", "POST", [nome_comodo, comando, parametros, tipo])
+    
+    def listar_grupos(self) -> Dict[str, List[str]]:
+        """Lista os grupos de dispositivos."""
+        return self._fazer_requisicao("/api/grupos", "GET")
+    
+    def definir_grupo(self, nome_grupo: str, dispositivo_ids: List[str]) -> Optional[List[str]]:
+        """Define um grupo de dispositivos (lista vazia remove o grupo)."""
+        return self._fazer_requisicao("/api/grupos/definir", "POST", [nome_grupo, dispositivo_ids])
+    
+    def executar_acao_grupo(self, nome_grupo: str, comando: str,
+                            parametros: Optional[Dict] = None, tipo: Optional[str] = None) -> Optional[Dict]:
+        """Executa um comando em todos os dispositivos de um grupo ("todos" = todos)."""
+        return self._fazer_requisicao("/api/grupos/acao", "POST", [nome_grupo, comando, parametros, tipo])
 
 
 def exibir_menu():
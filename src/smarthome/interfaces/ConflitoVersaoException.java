@@ -0,0 +1,20 @@
+package smarthome.interfaces;
+
+/**
+ * Lançada quando uma atualização condicional encontra o recurso em uma
+ * versão diferente da esperada (outro cliente o alterou antes).
+ */
+public class ConflitoVersaoException extends RuntimeException {
+
+    private final long versaoEsperada;
+    private final long versaoAtual;
+
+    public ConflitoVersaoException(String recurso, long versaoEsperada, long versaoAtual) {
+        super("Conflito de versão em " + recurso + ": esperada " + versaoEsperada + ", atual " + versaoAtual);
+        this.versaoEsperada = versaoEsperada;
+        this.versaoAtual = versaoAtual;
+    }
+
+    public long getVersaoEsperada() { return versaoEsperada; }
+    public long getVersaoAtual() { return versaoAtual; }
+}
@@ -1,12 +1,15 @@
 package smarthome.interfaces;
 
 import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.ResultadoLote;
 import smarthome.pojos.Rotina;
 import smarthome.pojos.Alerta;
 import smarthome.pojos.Comodo;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface remota para o serviço Smart Home.
@@ -45,6 +48,53 @@ public interface ISmartHomeService extends Serializable {
      */
     DispositivoIoT atualizarDispositivo(String dispositivoId, DispositivoIoT dispositivo);
     
+    /**
+     * Atualiza um dispositivo somente se ele ainda estiver na versão esperada
+     * (controle de concorrência otimista, sem lock).
+     * @param dispositivoId ID do dispositivo
+     * @param dispositivo Novos dados do dispositivo
+     * @param versaoEsperada Versão lida pelo cliente (campo "versao")
+     * @return Dispositivo atualizado ou null se não encontrado
+     * @throws ConflitoVersaoException se o dispositivo foi alterado por outro cliente
+     */
+    DispositivoIoT atualizarDispositivo(String dispositivoId, DispositivoIoT dispositivo, long versaoEsperada);
+    
+    /**
+     * Atualização parcial: altera apenas os campos informados, todos de uma
+     * vez (ou nenhum, se algum campo for inválido).
+     * @param dispositivoId ID do dispositivo
+     * @param campos Nome do campo -> novo valor (ex.: {"intensidade": 50})
+     * @return Dispositivo atualizado ou null se não encontrado
+     * @throws IllegalArgumentException se um campo não existe ou tem tipo inválido
+     */
+    DispositivoIoT atualizarCampos(String dispositivoId, Map<String, Object> campos);
+    
+    /**
+     * Atualização parcial condicional à versão esperada do dispositivo.
+     * @throws ConflitoVersaoException se o dispositivo foi alterado por outro cliente
+     * @see #atualizarCampos(String, Map)
+     */
+    DispositivoIoT atualizarCampos(String dispositivoId, Map<String, Object> campos, long versaoEsperada);
+    
+    /**
+     * Aplica um JSON merge patch (RFC 7396) ao dispositivo, atomicamente:
+     * membros com valor alteram o campo e membros null removem campos
+     * opcionais (descricao, comodo).
+     * @param dispositivoId ID do dispositivo
+     * @param patch Objeto do merge patch
+     * @return Dispositivo atualizado ou null se não encontrado
+     * @throws IllegalArgumentException se um campo não existe, tem tipo
+     *         inválido ou é obrigatório e o patch o remove
+     */
+    DispositivoIoT aplicarMergePatch(String dispositivoId, Map<String, Object> patch);
+    
+    /**
+     * Merge patch condicional à versão esperada do dispositivo.
+     * @throws ConflitoVersaoException se o dispositivo foi alterado por outro cliente
+     * @see #aplicarMergePatch(String, Map)
+     */
+    DispositivoIoT aplicarMergePatch(String dispositivoId, Map<String, Object> patch, long versaoEsperada);
+    
     /**
      * Executa uma ação em um dispositivo.
      * @param dispositivoId ID do dispositivo
@@ -53,6 +103,16 @@ public interface ISmartHomeService extends Serializable {
      */
     DispositivoIoT executarAcao(String dispositivoId, String comando);
     
+    /**
+     * Executa uma ação parametrizada em um dispositivo (ex.: definirIntensidade
+     * com {"valor": 50}).
+     * @param parametros Parâmetros do comando; pode ser null
+     * @return Dispositivo após execução, ou null se não encontrado
+     * @throws IllegalArgumentException se o comando não é suportado pelo
+     *         dispositivo ou os parâmetros são inválidos
+     */
+    DispositivoIoT executarAcao(String dispositivoId, String comando, Map<String, Object> parametros);
+    
     /**
      * Lista todas as rotinas.
      * @return Lista de rotinas
@@ -66,6 +126,53 @@ public interface ISmartHomeService extends Serializable {
      */
     Rotina criarRotina(Rotina rotina);
     
+    /**
+     * Executa as ações de uma rotina, na ordem.
+     * @param rotinaId ID da rotina
+     * @return Dispositivos após execução, ou null se a rotina não existe
+     */
+    List<DispositivoIoT> executarRotina(String rotinaId);
+    
+    /**
+     * Nome do grupo implícito que contém todos os dispositivos.
+     */
+    String GRUPO_TODOS = "todos";
+    
+    /**
+     * Executa um comando em todos os dispositivos de um cômodo, em paralelo.
+     * Dispositivos que não suportam o comando são ignorados.
+     * @param nomeComodo Nome do cômodo
+     * @param tipo Tipo dos dispositivos afetados (ex.: "Lampada"); null = todos
+     * @param comando Comando a ser executado
+     * @param parametros Parâmetros do comando; pode ser null
+     * @return Resultado agregado, ou null se o cômodo não existe
+     * @throws IllegalArgumentException se os parâmetros são inválidos
+     */
+    ResultadoLote executarAcaoComodo(String nomeComodo, String tipo, String comando, Map<String, Object> parametros);
+    
+    /**
+     * Executa um comando em todos os dispositivos de um grupo, em paralelo.
+     * O grupo {@link #GRUPO_TODOS} contém todos os dispositivos.
+     * @return Resultado agregado, ou null se o grupo não existe
+     * @throws IllegalArgumentException se os parâmetros são inválidos
+     * @see #executarAcaoComodo(String, String, String, Map)
+     */
+    ResultadoLote executarAcaoGrupo(String nomeGrupo, String tipo, String comando, Map<String, Object> parametros);
+    
+    /**
+     * Define (ou substitui) um grupo nomeado de dispositivos.
+     * Uma lista vazia remove o grupo.
+     * @return Ids dos membros do grupo
+     * @throws IllegalArgumentException se algum dispositivo não existe
+     */
+    List<String> definirGrupo(String nomeGrupo, List<String> dispositivoIds);
+    
+    /**
+     * Lista os grupos definidos.
+     * @return Nome do grupo -> ids dos dispositivos
+     */
+    Map<String, List<String>> listarGrupos();
+    
     /**
      * Lista todos os alertas.
      * @return Lista de alertas
@@ -73,10 +180,59 @@ public interface ISmartHomeService extends Serializable {
     List<Alerta> listarAlertas();
     
     /**
-     * Obtém um cômodo por nome.
+     * Lista os alertas com timestamp no intervalo [inicio, fim].
+     * @param inicio Limite inferior (null = sem limite)
+     * @param fim Limite superior (null = sem limite)
+     * @return Alertas do mais antigo para o mais recente
+     */
+    List<Alerta> listarAlertasPorPeriodo(Instant inicio, Instant fim);
+    
+    /**
+     * Lista os alertas de um cômodo com timestamp no intervalo [inicio, fim].
+     * @param nomeComodo Nome do cômodo
+     * @param inicio Limite inferior (null = sem limite)
+     * @param fim Limite superior (null = sem limite)
+     * @return Alertas do mais antigo para o mais recente
+     */
+    List<Alerta> listarAlertasPorComodo(String nomeComodo, Instant inicio, Instant fim);
+    
+    /**
+     * Registra um novo alerta. Repetições recentes (mesmo título, cômodo e
+     * dispositivo) são agrupadas no alerta existente, e alertas acima do
+     * limite de taxa do cômodo/dispositivo são descartados. Os alertas mais
+     * antigos saem quando a capacidade ou a janela de retenção é excedida.
+     * @param alerta Alerta a ser registrado
+     * @return Alerta registrado, alerta existente ao qual foi agrupado,
+     *         ou null se descartado pelo limite de taxa
+     */
+    Alerta registrarAlerta(Alerta alerta);
+    
+    /**
+     * Obtém um cômodo por nome. O cômodo devolvido não muda depois de
+     * publicado: sua versão e seu instante de alteração (para ETag e
+     * Last-Modified) descrevem exatamente os dispositivos que ele contém.
      * @param nomeComodo Nome do cômodo
      * @return Cômodo encontrado ou null
      */
     Comodo obterComodo(String nomeComodo);
+    
+    /**
+     * Versão atual da coleção de dispositivos.
+     * Incrementada a cada publicação da listagem (uma alteração ou um lote
+     * inteiro), nunca antes de a listagem nova estar visível.
+     * @return Versão monotonicamente crescente
+     */
+    long obterVersaoDispositivos();
+    
+    /**
+     * Versão atual da coleção de rotinas.
+     * @return Versão monotonicamente crescente
+     */
+    long obterVersaoRotinas();
+    
+    /**
+     * Versão atual da coleção de alertas.
+     * @return Versão monotonicamente crescente
+     */
+    long obterVersaoAlertas();
 }
-
@@ -0,0 +1,393 @@
+package smarthome.log;
+
+import smarthome.metricas.Contador;
+import smarthome.metricas.RegistroMetricas;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log estruturado assíncrono: quem registra só copia os campos para uma
+ * posição de um buffer circular pré-alocado; uma thread escritora formata
+ * os eventos como JSON (uma linha por evento) e os grava em lotes, com uma
+ * única escrita por lote.
+ *
+ * <ul>
+ *   <li>Vários produtores sem lock: a posição é reservada com
+ *       compare-and-set na sequência e publicada ao final da escrita dos
+ *       campos; o escritor só lê posições publicadas.</li>
+ *   <li>Buffer cheio: aplica a {@link PoliticaDescarte} configurada. Eventos
+ *       descartados são contados (métrica smarthome_log_descartados_total).</li>
+ * </ul>
+ *
+ * Configuração por propriedades de sistema (prefixo {@code smarthome.log.}):
+ * {@code arquivo} (padrão smarthome-&lt;origem&gt;.log; "stdout" grava no
+ * console), {@code capacidade} (8192), {@code politica} (DESCARTAR),
+ * {@code nivel} (INFO) e {@code acessos} (true; false desliga o log por
+ * requisição).
+ */
+public final class LogAssincrono implements AutoCloseable {
+
+    public enum Nivel { DEBUG, INFO, AVISO, ERRO }
+
+    /**
+     * O que fazer quando o buffer está cheio.
+     */
+    public enum PoliticaDescarte {
+        /** Descarta o evento novo; quem registra nunca espera. */
+        DESCARTAR,
+        /** Espera o escritor liberar espaço; nenhum evento é perdido. */
+        BLOQUEAR,
+        /** Descarta DEBUG e INFO; AVISO e ERRO esperam. */
+        DESCARTAR_ATE_INFO
+    }
+
+    private static final int LOTE_MAXIMO = 4096;
+    // Sem eventos, o escritor dorme: lotes maiores e menos trocas de contexto
+    private static final long ESPERA_ESCRITOR_NANOS = 10_000_000;
+    private static final long ESPERA_PRODUTOR_NANOS = 50_000;
+
+    /**
+     * Posição do buffer. Os campos são escritos pelo produtor que reservou a
+     * sequência e lidos pelo escritor depois da publicação.
+     */
+    private static final class Evento {
+        long tempoMs;
+        Nivel nivel;
+        String mensagem;
+        String metodo;
+        String caminho;
+        int status;
+        long latenciaNanos;
+        long bytes;
+        Throwable erro;
+    }
+
+    private final String origem;
+    private final Nivel nivelMinimo;
+    private final PoliticaDescarte politica;
+    private final boolean acessos;
+
+    private final int mascara;
+    private final Evento[] eventos;
+    // Sequência publicada em cada posição (-1 = vazia)
+    private final AtomicLongArray publicadas;
+    // Próxima sequência a reservar
+    private final AtomicLong proxima = new AtomicLong();
+    // Primeira sequência ainda não lida pelo escritor
+    private volatile long consumida;
+
+    private final Writer destino;
+    private final Thread escritor;
+    private volatile boolean fechado;
+
+    private final Contador descartados;
+    private final Contador escritos;
+    
+    // Prefixo "aaaa-mm-ddThh:mm:ss." do último segundo formatado (só o escritor usa)
+    private long segundoFormatado = Long.MIN_VALUE;
+    private String prefixoSegundo;
+
+    /**
+     * @param origem Nome do componente (ex.: "servidor"), gravado em cada evento
+     * @param destino Onde gravar as linhas; fechado junto com o log
+     * @param capacidade Número de eventos no buffer (arredondado para potência de 2)
+     */
+    public LogAssincrono(String origem, Writer destino, int capacidade, PoliticaDescarte politica,
+                         Nivel nivelMinimo, boolean acessos) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade deve ser positiva: " + capacidade);
+        }
+        int potencia = Integer.highestOneBit(capacidade);
+        int tamanho = potencia == capacidade ? capacidade : potencia << 1;
+        this.origem = origem;
+        this.destino = destino;
+        this.politica = politica;
+        this.nivelMinimo = nivelMinimo;
+        this.acessos = acessos;
+        this.mascara = tamanho - 1;
+        this.eventos = new Evento[tamanho];
+        this.publicadas = new AtomicLongArray(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            eventos[i] = new Evento();
+            publicadas.set(i, -1);
+        }
+        this.descartados = RegistroMetricas.contador("smarthome_log_descartados_total",
+                "Eventos de log descartados com o buffer cheio", "origem", origem);
+        this.escritos = RegistroMetricas.contador("smarthome_log_eventos_total",
+                "Eventos de log gravados", "origem", origem);
+
+        this.escritor = new Thread(this::escrever, "log-" + origem);
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Log configurado pelas propriedades de sistema, fechado (com os eventos
+     * pendentes gravados) no encerramento da JVM.
+     */
+    public static LogAssincrono configurado(String origem) {
+        String arquivo = System.getProperty("smarthome.log.arquivo", "smarthome-" + origem + ".log");
+        int capacidade = Integer.getInteger("smarthome.log.capacidade", 8192);
+        PoliticaDescarte politica = PoliticaDescarte.valueOf(
+                System.getProperty("smarthome.log.politica", PoliticaDescarte.DESCARTAR.name()));
+        Nivel nivel = Nivel.valueOf(System.getProperty("smarthome.log.nivel", Nivel.INFO.name()));
+        boolean acessos = Boolean.parseBoolean(System.getProperty("smarthome.log.acessos", "true"));
+
+        Writer destino;
+        if ("stdout".equals(arquivo)) {
+            destino = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        } else {
+            try {
+                destino = new OutputStreamWriter(new FileOutputStream(arquivo, true), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("[LOG] Não foi possível abrir " + arquivo + " (" + e.getMessage() + "); usando o console");
+                destino = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+            }
+        }
+        LogAssincrono log = new LogAssincrono(origem, new BufferedWriter(destino, 64 * 1024),
+                capacidade, politica, nivel, acessos);
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "log-" + origem + "-fechamento"));
+        return log;
+    }
+
+    // ---------------------------------------------------------------
+    // Registro (chamado pelas threads da aplicação)
+    // ---------------------------------------------------------------
+
+    /**
+     * Registra uma requisição atendida (ou feita, no cliente).
+     * @param status Código HTTP; -1 se não houve resposta
+     */
+    public void acesso(String metodo, String caminho, int status, long latenciaNanos, long bytes) {
+        if (!acessos || Nivel.INFO.compareTo(nivelMinimo) < 0) {
+            return;
+        }
+        long seq = reservar(Nivel.INFO);
+        if (seq < 0) {
+            return;
+        }
+        Evento e = eventos[(int) (seq & mascara)];
+        e.tempoMs = System.currentTimeMillis();
+        e.nivel = Nivel.INFO;
+        e.mensagem = null;
+        e.metodo = metodo;
+        e.caminho = caminho;
+        e.status = status;
+        e.latenciaNanos = latenciaNanos;
+        e.bytes = bytes;
+        e.erro = null;
+        publicadas.lazySet((int) (seq & mascara), seq);
+    }
+
+    public void debug(String mensagem) {
+        registrar(Nivel.DEBUG, mensagem, null);
+    }
+
+    public void info(String mensagem) {
+        registrar(Nivel.INFO, mensagem, null);
+    }
+
+    public void aviso(String mensagem) {
+        registrar(Nivel.AVISO, mensagem, null);
+    }
+
+    public void erro(String mensagem, Throwable erro) {
+        registrar(Nivel.ERRO, mensagem, erro);
+    }
+
+    private void registrar(Nivel nivel, String mensagem, Throwable erro) {
+        if (nivel.compareTo(nivelMinimo) < 0) {
+            return;
+        }
+        long seq = reservar(nivel);
+        if (seq < 0) {
+            return;
+        }
+        Evento e = eventos[(int) (seq & mascara)];
+        e.tempoMs = System.currentTimeMillis();
+        e.nivel = nivel;
+        e.mensagem = mensagem;
+        e.metodo = null;
+        e.caminho = null;
+        e.status = 0;
+        e.latenciaNanos = 0;
+        e.bytes = 0;
+        e.erro = erro;
+        publicadas.lazySet((int) (seq & mascara), seq);
+    }
+
+    /**
+     * Reserva a próxima posição livre do buffer.
+     * @return Sequência reservada, ou -1 se o evento foi descartado
+     */
+    private long reservar(Nivel nivel) {
+        if (fechado) {
+            descartados.incrementar();
+            return -1;
+        }
+        while (true) {
+            long seq = proxima.get();
+            if (seq - consumida > mascara) {
+                // Buffer cheio
+                boolean esperar = !fechado && (politica == PoliticaDescarte.BLOQUEAR
+                        || (politica == PoliticaDescarte.DESCARTAR_ATE_INFO && nivel.compareTo(Nivel.AVISO) >= 0));
+                if (!esperar) {
+                    descartados.incrementar();
+                    return -1;
+                }
+                LockSupport.parkNanos(ESPERA_PRODUTOR_NANOS);
+                continue;
+            }
+            if (proxima.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    public long getDescartados() {
+        return descartados.valor();
+    }
+
+    // ---------------------------------------------------------------
+    // Escritor
+    // ---------------------------------------------------------------
+
+    private void escrever() {
+        StringBuilder lote = new StringBuilder(64 * 1024);
+        while (true) {
+            long seq = consumida;
+            int n = 0;
+            while (n < LOTE_MAXIMO) {
+                int i = (int) (seq & mascara);
+                if (publicadas.get(i) != seq) {
+                    break;
+                }
+                formatar(eventos[i], lote);
+                // Solta as referências antes de liberar a posição
+                eventos[i].mensagem = null;
+                eventos[i].erro = null;
+                seq++;
+                n++;
+                consumida = seq;
+            }
+            if (n > 0) {
+                try {
+                    destino.append(lote);
+                    destino.flush();
+                } catch (IOException e) {
+                    System.err.println("[LOG] Falha ao gravar log: " + e.getMessage());
+                }
+                escritos.adicionar(n);
+                lote.setLength(0);
+            } else if (fechado && proxima.get() == consumida) {
+                return;
+            } else {
+                LockSupport.parkNanos(ESPERA_ESCRITOR_NANOS);
+            }
+        }
+    }
+
+    private void formatar(Evento e, StringBuilder saida) {
+        saida.append("{\"ts\":\"");
+        carimbo(e.tempoMs, saida);
+        saida.append('"');
+        saida.append(",\"nivel\":\"").append(e.nivel.name()).append('"');
+        saida.append(",\"origem\":");
+        texto(origem, saida);
+        if (e.metodo != null) {
+            saida.append(",\"metodo\":");
+            texto(e.metodo, saida);
+            saida.append(",\"caminho\":");
+            texto(e.caminho, saida);
+            saida.append(",\"status\":").append(e.status);
+            saida.append(",\"latenciaMs\":").append(e.latenciaNanos / 1000 / 1000.0);
+            saida.append(",\"bytes\":").append(e.bytes);
+        }
+        if (e.mensagem != null) {
+            saida.append(",\"mensagem\":");
+            texto(e.mensagem, saida);
+        }
+        if (e.erro != null) {
+            StringWriter pilha = new StringWriter();
+            e.erro.printStackTrace(new PrintWriter(pilha));
+            saida.append(",\"erro\":");
+            texto(pilha.toString(), saida);
+        }
+        saida.append("}\n");
+    }
+
+    /**
+     * Escreve o instante em ISO-8601 (UTC, milissegundos), reaproveitando a
+     * parte até os segundos entre eventos do mesmo segundo.
+     */
+    private void carimbo(long tempoMs, StringBuilder saida) {
+        long segundo = Math.floorDiv(tempoMs, 1000);
+        if (segundo != segundoFormatado) {
+            String iso = Instant.ofEpochSecond(segundo).toString();
+            // "...T05:50:55Z" -> "...T05:50:55."
+            prefixoSegundo = iso.substring(0, iso.length() - 1) + '.';
+            segundoFormatado = segundo;
+        }
+        int ms = (int) Math.floorMod(tempoMs, 1000L);
+        saida.append(prefixoSegundo);
+        if (ms < 100) {
+            saida.append('0');
+        }
+        if (ms < 10) {
+            saida.append('0');
+        }
+        saida.append(ms).append('Z');
+    }
+
+    private static void texto(String s, StringBuilder saida) {
+        saida.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': saida.append("\\\""); break;
+                case '\\': saida.append("\\\\"); break;
+                case '\n': saida.append("\\n"); break;
+                case '\r': saida.append("\\r"); break;
+                case '\t': saida.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        saida.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        saida.append(c);
+                    }
+            }
+        }
+        saida.append('"');
+    }
+
+    /**
+     * Grava os eventos pendentes e fecha o destino. Eventos registrados
+     * depois disso são descartados.
+     */
+    @Override
+    public void close() {
+        if (fechado) {
+            return;
+        }
+        fechado = true;
+        try {
+            escritor.join(5000);
+            destino.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("[LOG] Falha ao fechar log: " + e.getMessage());
+        }
+    }
+}
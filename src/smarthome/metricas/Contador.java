@@ -0,0 +1,26 @@
+package smarthome.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monotônico. Incrementos sem lock e sem disputa entre threads
+ * (LongAdder); a soma só é calculada na exportação.
+ */
+public final class Contador {
+
+    private final LongAdder valor = new LongAdder();
+
+    Contador() {}
+
+    public void incrementar() {
+        valor.increment();
+    }
+
+    public void adicionar(long quantidade) {
+        valor.add(quantidade);
+    }
+
+    public long valor() {
+        return valor.sum();
+    }
+}
@@ -0,0 +1,113 @@
+package smarthome.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma log-linear de valores não negativos (no estilo HdrHistogram).
+ *
+ * Valores até 15 têm um balde cada; acima disso, cada potência de 2 é
+ * dividida em 16 baldes de mesma largura, o que limita o erro relativo de
+ * qualquer percentil a 1/16 (~6%) em toda a faixa de long com 960 baldes
+ * fixos. Registrar um valor é um cálculo de índice com
+ * numberOfLeadingZeros e um incremento atômico: sem lock e sem alocação.
+ *
+ * Os percentis são calculados sobre uma leitura não atômica dos baldes;
+ * registros concorrentes com a leitura podem ou não ser contados.
+ */
+public final class Histograma {
+
+    private static final int BITS_SUBBALDE = 4;
+    private static final int SUBBALDES = 1 << BITS_SUBBALDE;
+    private static final int BALDES = (64 - BITS_SUBBALDE) * SUBBALDES;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(BALDES);
+    private final LongAdder soma = new LongAdder();
+    private final LongAdder contagem = new LongAdder();
+
+    /**
+     * Histograma avulso, fora do registro (não é exportado em /api/metricas).
+     * Para exportar, use {@link RegistroMetricas#histogramaTempo}.
+     */
+    public Histograma() {}
+
+    /**
+     * Registra um valor (valores negativos contam como 0).
+     */
+    public void registrar(long valor) {
+        if (valor < 0) {
+            valor = 0;
+        }
+        contagens.incrementAndGet(indice(valor));
+        soma.add(valor);
+        contagem.increment();
+    }
+
+    /**
+     * Registra o tempo decorrido desde {@code inicioNanos} (System.nanoTime()).
+     */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    public long getContagem() {
+        return contagem.sum();
+    }
+
+    public long getSoma() {
+        return soma.sum();
+    }
+
+    /**
+     * Maior valor equivalente do balde em que cai o percentil.
+     * @param percentil Entre 0 e 1
+     * @return Valor do percentil, ou 0 se vazio
+     */
+    public long percentil(double percentil) {
+        return percentis(new double[] {percentil})[0];
+    }
+
+    /**
+     * Calcula vários percentis (em ordem crescente) em uma única passada.
+     */
+    public long[] percentis(double[] percentis) {
+        long[] copia = new long[BALDES];
+        long total = 0;
+        for (int i = 0; i < BALDES; i++) {
+            copia[i] = contagens.get(i);
+            total += copia[i];
+        }
+        long[] resultado = new long[percentis.length];
+        if (total == 0) {
+            return resultado;
+        }
+        int balde = 0;
+        long acumulado = copia[0];
+        for (int p = 0; p < percentis.length; p++) {
+            long posicao = Math.max(1, (long) Math.ceil(percentis[p] * total));
+            while (acumulado < posicao && balde < BALDES - 1) {
+                acumulado += copia[++balde];
+            }
+            resultado[p] = maiorValor(balde);
+        }
+        return resultado;
+    }
+
+    static int indice(long valor) {
+        if (valor < SUBBALDES) {
+            return (int) valor;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (magnitude - BITS_SUBBALDE)) & (SUBBALDES - 1);
+        return (magnitude - BITS_SUBBALDE + 1) * SUBBALDES + sub;
+    }
+
+    static long maiorValor(int indice) {
+        if (indice < SUBBALDES) {
+            return indice;
+        }
+        int deslocamento = indice / SUBBALDES - 1;
+        long inicio = (long) (SUBBALDES + indice % SUBBALDES) << deslocamento;
+        return inicio + (1L << deslocamento) - 1;
+    }
+}
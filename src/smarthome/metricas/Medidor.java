@@ -0,0 +1,30 @@
+package smarthome.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Valor instantâneo (gauge): mantido por incrementos/decrementos ou lido de
+ * uma função no momento da exportação.
+ */
+public final class Medidor {
+
+    private final LongAdder valor = new LongAdder();
+    private final LongSupplier leitura;
+
+    Medidor(LongSupplier leitura) {
+        this.leitura = leitura;
+    }
+
+    public void incrementar() {
+        valor.increment();
+    }
+
+    public void decrementar() {
+        valor.decrement();
+    }
+
+    public long valor() {
+        return leitura != null ? leitura.getAsLong() : valor.sum();
+    }
+}
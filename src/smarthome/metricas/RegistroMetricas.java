@@ -0,0 +1,184 @@
+package smarthome.metricas;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registro global de métricas, exportado no formato de texto do Prometheus.
+ *
+ * Cada métrica é uma família (nome, ajuda, tipo) com uma série por conjunto
+ * de rótulos. Obter uma série é "busca ou cria": quem registra guarda a
+ * referência em um campo e o caminho quente só incrementa, sem buscas.
+ *
+ * Histogramas são exportados como summary (quantis 0.5, 0.9, 0.99 e 0.999,
+ * soma e contagem), já que os baldes internos são finos demais para
+ * exportar um a um.
+ */
+public final class RegistroMetricas {
+
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Tipo { COUNTER, GAUGE, SUMMARY }
+
+    private static final class Familia {
+        final String nome;
+        final String ajuda;
+        final Tipo tipo;
+        // Fator aplicado na exportação (ex.: 1e-9 para nanossegundos -> segundos)
+        final double escala;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Familia(String nome, String ajuda, Tipo tipo, double escala) {
+            this.nome = nome;
+            this.ajuda = ajuda;
+            this.tipo = tipo;
+            this.escala = escala;
+        }
+    }
+
+    private static final Map<String, Familia> familias = new ConcurrentSkipListMap<>();
+
+    private RegistroMetricas() {}
+
+    /**
+     * Contador com os rótulos informados (pares nome, valor).
+     */
+    public static Contador contador(String nome, String ajuda, String... rotulos) {
+        return (Contador) serie(nome, ajuda, Tipo.COUNTER, 1, rotulos, Contador::new);
+    }
+
+    /**
+     * Medidor mantido por incrementos e decrementos.
+     */
+    public static Medidor medidor(String nome, String ajuda, String... rotulos) {
+        return (Medidor) serie(nome, ajuda, Tipo.GAUGE, 1, rotulos, () -> new Medidor(null));
+    }
+
+    /**
+     * Medidor lido de uma função na exportação. Registrar de novo a mesma
+     * série substitui a função (a última instância registrada vence).
+     */
+    public static Medidor medidor(String nome, String ajuda, LongSupplier leitura, String... rotulos) {
+        Familia familia = familia(nome, ajuda, Tipo.GAUGE, 1);
+        Medidor medidor = new Medidor(leitura);
+        familia.series.put(formatarRotulos(rotulos), medidor);
+        return medidor;
+    }
+
+    /**
+     * Histograma de durações registradas em nanossegundos e exportadas em segundos.
+     */
+    public static Histograma histogramaTempo(String nome, String ajuda, String... rotulos) {
+        return (Histograma) serie(nome, ajuda, Tipo.SUMMARY, 1e-9, rotulos, Histograma::new);
+    }
+
+    /**
+     * Histograma de valores exportados sem conversão (ex.: bytes).
+     */
+    public static Histograma histograma(String nome, String ajuda, String... rotulos) {
+        return (Histograma) serie(nome, ajuda, Tipo.SUMMARY, 1, rotulos, Histograma::new);
+    }
+
+    private static Object serie(String nome, String ajuda, Tipo tipo, double escala, String[] rotulos, Supplier<?> fabrica) {
+        Familia familia = familia(nome, ajuda, tipo, escala);
+        return familia.series.computeIfAbsent(formatarRotulos(rotulos), k -> fabrica.get());
+    }
+
+    private static Familia familia(String nome, String ajuda, Tipo tipo, double escala) {
+        Familia familia = familias.computeIfAbsent(nome, k -> new Familia(nome, ajuda, tipo, escala));
+        if (familia.tipo != tipo || familia.escala != escala) {
+            throw new IllegalArgumentException("Métrica já registrada com outro tipo: " + nome);
+        }
+        return familia;
+    }
+
+    // ---------------------------------------------------------------
+    // Exportação
+    // ---------------------------------------------------------------
+
+    /**
+     * Todas as métricas no formato de texto do Prometheus (versão 0.0.4).
+     */
+    public static String exportar() {
+        StringBuilder saida = new StringBuilder(4096);
+        for (Familia familia : familias.values()) {
+            saida.append("# HELP ").append(familia.nome).append(' ').append(familia.ajuda).append('\n');
+            saida.append("# TYPE ").append(familia.nome).append(' ')
+                 .append(familia.tipo.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Object> serie : familia.series.entrySet()) {
+                String rotulos = serie.getKey();
+                Object metrica = serie.getValue();
+                if (metrica instanceof Contador) {
+                    linha(saida, familia.nome, rotulos, null, ((Contador) metrica).valor());
+                } else if (metrica instanceof Medidor) {
+                    linha(saida, familia.nome, rotulos, null, ((Medidor) metrica).valor());
+                } else {
+                    Histograma h = (Histograma) metrica;
+                    long[] valores = h.percentis(QUANTIS);
+                    for (int i = 0; i < QUANTIS.length; i++) {
+                        linha(saida, familia.nome, rotulos, "quantile=\"" + QUANTIS[i] + "\"", valores[i] * familia.escala);
+                    }
+                    linha(saida, familia.nome + "_sum", rotulos, null, h.getSoma() * familia.escala);
+                    linha(saida, familia.nome + "_count", rotulos, null, h.getContagem());
+                }
+            }
+        }
+        return saida.toString();
+    }
+
+    private static void linha(StringBuilder saida, String nome, String rotulos, String extra, long valor) {
+        cabecalhoLinha(saida, nome, rotulos, extra);
+        saida.append(valor).append('\n');
+    }
+
+    private static void linha(StringBuilder saida, String nome, String rotulos, String extra, double valor) {
+        cabecalhoLinha(saida, nome, rotulos, extra);
+        saida.append(valor).append('\n');
+    }
+
+    private static void cabecalhoLinha(StringBuilder saida, String nome, String rotulos, String extra) {
+        saida.append(nome);
+        if (!rotulos.isEmpty() || extra != null) {
+            saida.append('{').append(rotulos);
+            if (extra != null) {
+                if (!rotulos.isEmpty()) {
+                    saida.append(',');
+                }
+                saida.append(extra);
+            }
+            saida.append('}');
+        }
+        saida.append(' ');
+    }
+
+    /**
+     * Formata pares (nome, valor) como {@code a="x",b="y"}, escapando os valores.
+     */
+    static String formatarRotulos(String[] rotulos) {
+        if (rotulos.length % 2 != 0) {
+            throw new IllegalArgumentException("Rótulos devem ser pares nome, valor");
+        }
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < rotulos.length; i += 2) {
+            if (i > 0) {
+                texto.append(',');
+            }
+            texto.append(rotulos[i]).append("=\"");
+            String valor = rotulos[i + 1] != null ? rotulos[i + 1] : "";
+            for (int j = 0; j < valor.length(); j++) {
+                char c = valor.charAt(j);
+                if (c == '\\' || c == '"') {
+                    texto.append('\\').append(c);
+                } else if (c == '\n') {
+                    texto.append("\\n");
+                } else {
+                    texto.append(c);
+                }
+            }
+            texto.append('"');
+        }
+        return texto.toString();
+    }
+}
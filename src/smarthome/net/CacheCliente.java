@@ -0,0 +1,212 @@
+package smarthome.net;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache local de leitura (read-through) usado pelo ClienteRemotoAPI.
+ * Guarda as respostas JSON já parseadas por chave (endpoint + corpo),
+ * com tamanho máximo (descarte LRU) e TTL configurável por entidade.
+ * Cada entrada também guarda a versão informada pelo servidor, usada
+ * para revalidar a entrada sem trafegar o corpo novamente.
+ *
+ * Cada consulta conta uma vez: como acerto (respondida localmente) ou como
+ * falha. Falhas resolvidas por um 304 do servidor também contam como
+ * revalidação, sem entrar na taxa de acerto.
+ */
+public class CacheCliente {
+
+    private static final int CAPACIDADE_PADRAO = 256;
+    private static final long TTL_PADRAO_MS = 5000;
+
+    private final int capacidade;
+    private final LinkedHashMap<String, Entrada> entradas;
+    private final Map<String, Long> ttlPorEntidade;
+
+    private long acertos;
+    private long falhas;
+    private long revalidacoes;
+    private long invalidacoes;
+    // Incrementada a cada invalidação; respostas obtidas antes dela são descartadas
+    private long geracao;
+
+    public CacheCliente() {
+        this(CAPACIDADE_PADRAO);
+    }
+
+    public CacheCliente(int capacidade) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade do cache deve ser positiva: " + capacidade);
+        }
+        this.capacidade = capacidade;
+        // accessOrder = true: a entrada mais antiga é a menos usada recentemente
+        this.entradas = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                return size() > CacheCliente.this.capacidade;
+            }
+        };
+        this.ttlPorEntidade = new HashMap<>();
+        ttlPorEntidade.put("dispositivos", 5000L);
+        ttlPorEntidade.put("comodos", 30000L);
+        ttlPorEntidade.put("rotinas", 30000L);
+        ttlPorEntidade.put("alertas", 2000L);
+    }
+
+    /**
+     * Entrada do cache: valor parseado, versão do servidor e validade.
+     */
+    public static class Entrada {
+        private final Object valor;
+        private final String versao;
+        private final String entidade;
+        private volatile long expiraEm;
+
+        Entrada(Object valor, String versao, String entidade, long expiraEm) {
+            this.valor = valor;
+            this.versao = versao;
+            this.entidade = entidade;
+            this.expiraEm = expiraEm;
+        }
+
+        public Object getValor() { return valor; }
+        public String getVersao() { return versao; }
+        public String getEntidade() { return entidade; }
+
+        boolean isExpirada(long agora) {
+            return agora >= expiraEm;
+        }
+    }
+
+    /**
+     * Define o TTL (em milissegundos) das entradas de uma entidade.
+     * TTL zero desativa o cache para a entidade.
+     */
+    public synchronized void definirTtl(String entidade, long ttlMs) {
+        if (ttlMs < 0) {
+            throw new IllegalArgumentException("TTL não pode ser negativo: " + ttlMs);
+        }
+        ttlPorEntidade.put(entidade, ttlMs);
+    }
+
+    /**
+     * Retorna o valor em cache se ainda estiver válido, ou null (falha).
+     */
+    public synchronized Object obter(String chave) {
+        Entrada entrada = entradas.get(chave);
+        if (entrada == null || entrada.isExpirada(System.currentTimeMillis())) {
+            falhas++;
+            return null;
+        }
+        acertos++;
+        return entrada.valor;
+    }
+
+    /**
+     * Retorna a entrada mesmo se expirada (usada para revalidação no servidor).
+     */
+    public synchronized Entrada obterEntrada(String chave) {
+        return entradas.get(chave);
+    }
+
+    /**
+     * Geração atual do cache. Deve ser lida antes de enviar a requisição
+     * e repassada para {@link #armazenar}.
+     */
+    public synchronized long getGeracao() {
+        return geracao;
+    }
+
+    /**
+     * Armazena uma resposta no cache.
+     * Se houve invalidação desde que a requisição foi iniciada, a resposta
+     * pode refletir um estado anterior à escrita e não é armazenada.
+     * @param versao Versão informada pelo servidor (pode ser null)
+     * @param geracaoObservada Valor de {@link #getGeracao()} antes da requisição
+     */
+    public synchronized void armazenar(String chave, String entidade, Object valor, String versao,
+                                       long geracaoObservada) {
+        if (geracaoObservada != geracao) {
+            return;
+        }
+        long ttl = getTtl(entidade);
+        if (ttl == 0 || valor == null) {
+            entradas.remove(chave);
+            return;
+        }
+        entradas.put(chave, new Entrada(valor, versao, entidade, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Renova a validade de uma entrada confirmada pelo servidor como atual.
+     * A consulta já foi contada como falha em {@link #obter}; aqui conta
+     * apenas como revalidação.
+     */
+    public synchronized Object renovar(String chave) {
+        Entrada entrada = entradas.get(chave);
+        if (entrada == null) {
+            return null;
+        }
+        entrada.expiraEm = System.currentTimeMillis() + getTtl(entrada.entidade);
+        revalidacoes++;
+        return entrada.valor;
+    }
+
+    public synchronized void invalidar(String chave) {
+        geracao++;
+        if (entradas.remove(chave) != null) {
+            invalidacoes++;
+        }
+    }
+
+    /**
+     * Invalida todas as entradas de uma entidade (ex.: "dispositivos").
+     */
+    public synchronized void invalidarEntidade(String entidade) {
+        geracao++;
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            if (entidade.equals(it.next().entidade)) {
+                it.remove();
+                invalidacoes++;
+            }
+        }
+    }
+
+    public synchronized void limpar() {
+        geracao++;
+        invalidacoes += entradas.size();
+        entradas.clear();
+    }
+
+    private long getTtl(String entidade) {
+        Long ttl = ttlPorEntidade.get(entidade);
+        return ttl != null ? ttl : TTL_PADRAO_MS;
+    }
+
+    // Métricas
+    public synchronized long getAcertos() { return acertos; }
+    public synchronized long getFalhas() { return falhas; }
+    public synchronized long getRevalidacoes() { return revalidacoes; }
+    public synchronized long getInvalidacoes() { return invalidacoes; }
+    public synchronized int getTamanho() { return entradas.size(); }
+
+    public synchronized double getTaxaAcerto() {
+        long total = acertos + falhas;
+        return total == 0 ? 0.0 : (double) acertos / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CacheCliente{" +
+                "tamanho=" + entradas.size() +
+                ", capacidade=" + capacidade +
+                ", acertos=" + acertos +
+                ", falhas=" + falhas +
+                ", revalidacoes=" + revalidacoes +
+                ", invalidacoes=" + invalidacoes +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+package smarthome.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache de respostas já codificadas (bytes JSON e variante gzip) do servidor.
+ * Cada entrada é associada à versão do estado que a gerou; uma leitura com
+ * versão diferente é tratada como falha e a resposta é recodificada sob demanda.
+ * Assim, uma alteração invalida apenas as chaves cuja versão mudou.
+ */
+public class CacheRespostas {
+
+    private final ConcurrentHashMap<String, Resposta> entradas = new ConcurrentHashMap<>();
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    /**
+     * Resposta codificada e imutável. A variante gzip é gerada na primeira vez
+     * que algum cliente a solicita.
+     */
+    public static class Resposta {
+        private final long versao;
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        Resposta(long versao, byte[] json) {
+            this.versao = versao;
+            this.json = json;
+        }
+
+        public long getVersao() { return versao; }
+        public byte[] getJson() { return json; }
+
+        public byte[] getGzip() throws IOException {
+            byte[] comprimido = gzip;
+            if (comprimido == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4 + 64);
+                try (GZIPOutputStream gz = new GZIPOutputStream(buffer)) {
+                    gz.write(json);
+                }
+                comprimido = buffer.toByteArray();
+                gzip = comprimido;
+            }
+            return comprimido;
+        }
+    }
+
+    /**
+     * Retorna a resposta em cache se ela foi gerada na versão informada.
+     * @return Resposta ou null (ausente ou desatualizada)
+     */
+    public Resposta obter(String chave, long versaoAtual) {
+        Resposta resposta = entradas.get(chave);
+        if (resposta != null && resposta.versao == versaoAtual) {
+            acertos.incrementAndGet();
+            return resposta;
+        }
+        falhas.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Armazena a resposta codificada para a versão informada.
+     * A versão deve ter sido lida antes do estado usado na codificação.
+     */
+    public Resposta armazenar(String chave, long versao, byte[] json) {
+        Resposta nova = new Resposta(versao, json);
+        // Nunca substitui uma entrada mais nova por uma mais antiga
+        entradas.merge(chave, nova, (atual, candidata) -> candidata.versao >= atual.versao ? candidata : atual);
+        return nova;
+    }
+
+    public void invalidar(String chave) {
+        entradas.remove(chave);
+    }
+
+    public void limpar() {
+        entradas.clear();
+    }
+
+    // Métricas
+    public long getAcertos() { return acertos.get(); }
+    public long getFalhas() { return falhas.get(); }
+    public int getTamanho() { return entradas.size(); }
+
+    public double getTaxaAcerto() {
+        long a = acertos.get();
+        long total = a + falhas.get();
+        return total == 0 ? 0.0 : (double) a / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheRespostas{" +
+                "tamanho=" + entradas.size() +
+                ", acertos=" + acertos.get() +
+                ", falhas=" + falhas.get() +
+                '}';
+    }
+}
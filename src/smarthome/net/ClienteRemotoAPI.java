@@ -1,6 +1,7 @@
 package smarthome.net;
 
 import smarthome.interfaces.ISmartHomeService;
+import smarthome.log.LogAssincrono;
 import smarthome.pojos.DispositivoIoT;
 import smarthome.pojos.Rotina;
 import smarthome.pojos.Alerta;
@@ -8,15 +9,18 @@ import smarthome.pojos.Comodo;
 import smarthome.pojos.Acao;
 import smarthome.net.JsonParser;
 import smarthome.net.JsonConverter;
+import smarthome.net.codec.RegistroCodecs;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Cliente remoto que se comunica com o servidor usando API REST HTTP.
@@ -25,10 +29,41 @@ import java.util.HashMap;
  */
 public class ClienteRemotoAPI {
     
+    // Log estruturado das requisições feitas e dos erros, gravado em segundo plano
+    private static final LogAssincrono LOG = LogAssincrono.configurado("cliente");
+    
     private final String baseUrl;
+    private final CacheCliente cache;
     
     public ClienteRemotoAPI(String host, int porta) {
+        this(host, porta, new CacheCliente());
+    }
+    
+    public ClienteRemotoAPI(String host, int porta, CacheCliente cache) {
         this.baseUrl = "http://" + host + ":" + porta;
+        this.cache = cache;
+    }
+    
+    /**
+     * Cache local de leituras (expõe métricas de acerto/falha).
+     */
+    public CacheCliente getCache() {
+        return cache;
+    }
+    
+    /**
+     * Resposta HTTP já deserializada, com a ETag informada pelo servidor.
+     */
+    private static class RespostaHttp {
+        final int status;
+        final Object corpo;
+        final String etag;
+        
+        RespostaHttp(int status, Object corpo, String etag) {
+            this.status = status;
+            this.corpo = corpo;
+            this.etag = etag;
+        }
     }
     
     /**
@@ -37,9 +72,21 @@ public class ClienteRemotoAPI {
      */
     private Object executarRequisicao(String endpoint, String method, Object requestBody) 
             throws IOException, ClassNotFoundException {
+        return executarRequisicao(endpoint, method, requestBody, null).corpo;
+    }
+    
+    /**
+     * Executa uma requisição HTTP, opcionalmente condicional (If-None-Match).
+     * Uma resposta 304 retorna status 304 e corpo null.
+     */
+    private RespostaHttp executarRequisicao(String endpoint, String method, Object requestBody,
+                                            String ifNoneMatch) throws IOException, ClassNotFoundException {
         
         URL url = new URL(baseUrl + endpoint);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        long inicio = System.nanoTime();
+        int status = -1;
+        long bytes = 0;
         
         try {
             connection.setRequestMethod(method);
@@ -48,6 +95,9 @@ public class ClienteRemotoAPI {
             
             // API REST sempre solicita JSON na resposta
             connection.setRequestProperty("Accept", "application/json");
+            if (ifNoneMatch != null) {
+                connection.setRequestProperty("If-None-Match", ifNoneMatch);
+            }
             
             // Envia corpo da requisição se houver (sempre JSON)
             if (requestBody != null) {
@@ -78,6 +128,11 @@ public class ClienteRemotoAPI {
             
             // Verifica código de resposta
             int responseCode = connection.getResponseCode();
+            status = responseCode;
+            String etag = connection.getHeaderField("ETag");
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new RespostaHttp(responseCode, null, etag);
+            }
             if (responseCode != HttpURLConnection.HTTP_OK) {
                 String errorMsg = lerErro(connection);
                 throw new IOException("Erro HTTP " + responseCode + ": " + errorMsg);
@@ -86,15 +141,65 @@ public class ClienteRemotoAPI {
             // Lê resposta JSON (servidor sempre retorna JSON)
             try (InputStream is = connection.getInputStream()) {
                 byte[] responseData = lerTodosBytes(is);
+                bytes = responseData.length;
                 String jsonResponse = new String(responseData, "UTF-8");
                 
                 // Parseia JSON
-                return JsonParser.parse(jsonResponse);
+                return new RespostaHttp(responseCode, JsonParser.parse(jsonResponse), etag);
             }
             
         } finally {
             connection.disconnect();
+            LOG.acesso(method, endpoint, status, System.nanoTime() - inicio, bytes);
+        }
+    }
+    
+    /**
+     * Executa uma requisição de leitura passando pelo cache local.
+     * Só acessa o servidor se não houver entrada válida para a chave.
+     * Entradas expiradas com ETag são revalidadas com If-None-Match:
+     * se o servidor responder 304, o valor local é reaproveitado.
+     */
+    private Object executarLeitura(String endpoint, String method, String requestBody, String entidade)
+            throws IOException, ClassNotFoundException {
+        String chave = method + " " + endpoint + (requestBody != null ? " " + requestBody : "");
+        Object emCache = cache.obter(chave);
+        if (emCache != null) {
+            return emCache;
+        }
+        
+        CacheCliente.Entrada anterior = cache.obterEntrada(chave);
+        String ifNoneMatch = anterior != null ? anterior.getVersao() : null;
+        
+        long geracao = cache.getGeracao();
+        RespostaHttp resposta = executarRequisicao(endpoint, method, requestBody, ifNoneMatch);
+        if (resposta.status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            Object valor = cache.renovar(chave);
+            if (valor != null) {
+                return valor;
+            }
+            // Entrada descartada durante a revalidação: busca o corpo completo
+            geracao = cache.getGeracao();
+            resposta = executarRequisicao(endpoint, method, requestBody, null);
         }
+        cache.armazenar(chave, entidade, resposta.corpo, resposta.etag, geracao);
+        return resposta.corpo;
+    }
+    
+    /**
+     * Codifica um valor como segmento do caminho (espaço vira %20, não '+').
+     */
+    private static String codificarSegmento(String valor) throws IOException {
+        return URLEncoder.encode(valor, "UTF-8").replace("+", "%20");
+    }
+    
+    /**
+     * Invalida as entradas afetadas por uma escrita em dispositivos.
+     * Cômodos embutem os dispositivos, portanto também são invalidados.
+     */
+    private void invalidarDispositivos() {
+        cache.invalidarEntidade("dispositivos");
+        cache.invalidarEntidade("comodos");
     }
     
     /**
@@ -142,13 +247,22 @@ public class ClienteRemotoAPI {
         return new ArrayList<>();
     }
     
+    /**
+     * Converte um dispositivo em JSON (Map) pelo campo "tipo".
+     * Um objeto novo a cada chamada: alterá-lo não afeta o cache local.
+     * @return null se a resposta não é um objeto JSON
+     */
+    @SuppressWarnings("unchecked")
+    private DispositivoIoT converterJsonParaDispositivo(Object json) {
+        return json instanceof Map ? RegistroCodecs.lerDispositivo((Map<String, Object>) json) : null;
+    }
+    
     /**
      * Lista todos os dispositivos usando API REST.
      */
     @SuppressWarnings("unchecked")
     public List<DispositivoIoT> listarDispositivos() throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] GET /api/dispositivos");
-        Object response = executarRequisicao("/api/dispositivos", "GET", null);
+        Object response = executarLeitura("/api/dispositivos", "GET", null, "dispositivos");
         // Por enquanto, retorna lista vazia - conversão JSON->DispositivoIoT requer implementação completa
         // Em produção, usar biblioteca JSON ou implementar conversor
         return new ArrayList<>();
@@ -158,12 +272,10 @@ public class ClienteRemotoAPI {
      * Obtém um dispositivo por ID usando API REST.
      */
     public DispositivoIoT obterDispositivo(String dispositivoId) throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] POST /api/dispositivos/obter (id=" + dispositivoId + ")");
-        // Envia como JSON string
-        String jsonRequest = "\"" + dispositivoId.replace("\"", "\\\"") + "\"";
-        Object response = executarRequisicao("/api/dispositivos/obter", "POST", jsonRequest);
-        // Por enquanto, retorna null - conversão requer implementação completa
-        return null;
+        // GET pelo caminho: a revalidação com If-None-Match pode receber 304
+        Object response = executarLeitura("/api/dispositivos/" + codificarSegmento(dispositivoId), "GET", null,
+                "dispositivos");
+        return converterJsonParaDispositivo(response);
     }
     
     /**
@@ -172,9 +284,13 @@ public class ClienteRemotoAPI {
      */
     public DispositivoIoT atualizarDispositivo(String dispositivoId, DispositivoIoT dispositivo) 
             throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] POST /api/dispositivos/atualizar (id=" + dispositivoId + ")");
         Object[] args = {dispositivoId, dispositivo};
-        Object response = executarRequisicao("/api/dispositivos/atualizar", "POST", args);
+        Object response;
+        try {
+            response = executarRequisicao("/api/dispositivos/atualizar", "POST", args);
+        } finally {
+            invalidarDispositivos();
+        }
         // Por enquanto, retorna null - conversão requer implementação completa
         return null;
     }
@@ -184,13 +300,17 @@ public class ClienteRemotoAPI {
      */
     public DispositivoIoT executarAcao(String dispositivoId, String comando) 
             throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] POST /api/dispositivos/acao (id=" + dispositivoId + ", comando=" + comando + ")");
         // Envia como array JSON: [deviceId, comando]
         String jsonRequest = "[\"" + dispositivoId.replace("\"", "\\\"") + "\",\"" + 
                            comando.replace("\"", "\\\"") + "\"]";
-        Object response = executarRequisicao("/api/dispositivos/acao", "POST", jsonRequest);
-        // Por enquanto, retorna null - conversão requer implementação completa
-        return null;
+        Object response;
+        try {
+            response = executarRequisicao("/api/dispositivos/acao", "POST", jsonRequest);
+        } finally {
+            // Invalida mesmo em caso de erro: o servidor pode ter aplicado a ação
+            invalidarDispositivos();
+        }
+        return converterJsonParaDispositivo(response);
     }
     
     /**
@@ -198,8 +318,7 @@ public class ClienteRemotoAPI {
      */
     @SuppressWarnings("unchecked")
     public List<Rotina> listarRotinas() throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] GET /api/rotinas");
-        Object response = executarRequisicao("/api/rotinas", "GET", null);
+        Object response = executarLeitura("/api/rotinas", "GET", null, "rotinas");
         // Por enquanto, retorna lista vazia
         return new ArrayList<>();
     }
@@ -209,8 +328,12 @@ public class ClienteRemotoAPI {
      * Usa serialização Java para enviar (compatibilidade).
      */
     public Rotina criarRotina(Rotina rotina) throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] POST /api/rotinas/criar");
-        Object response = executarRequisicao("/api/rotinas/criar", "POST", rotina);
+        Object response;
+        try {
+            response = executarRequisicao("/api/rotinas/criar", "POST", rotina);
+        } finally {
+            cache.invalidarEntidade("rotinas");
+        }
         // Por enquanto, retorna null
         return null;
     }
@@ -220,8 +343,7 @@ public class ClienteRemotoAPI {
      */
     @SuppressWarnings("unchecked")
     public List<Alerta> listarAlertas() throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] GET /api/alertas");
-        Object response = executarRequisicao("/api/alertas", "GET", null);
+        Object response = executarLeitura("/api/alertas", "GET", null, "alertas");
         // Por enquanto, retorna lista vazia
         return new ArrayList<>();
     }
@@ -230,10 +352,8 @@ public class ClienteRemotoAPI {
      * Obtém um cômodo por nome usando API REST.
      */
     public Comodo obterComodo(String nomeComodo) throws IOException, ClassNotFoundException {
-        System.out.println("[CLIENTE] POST /api/comodos/obter (nome=" + nomeComodo + ")");
-        // Envia como JSON string
-        String jsonRequest = "\"" + nomeComodo.replace("\"", "\\\"") + "\"";
-        Object response = executarRequisicao("/api/comodos/obter", "POST", jsonRequest);
+        // GET pelo caminho: a revalidação com If-None-Match pode receber 304
+        Object response = executarLeitura("/api/comodos/" + codificarSegmento(nomeComodo), "GET", null, "comodos");
         // Por enquanto, retorna null
         return null;
     }
@@ -293,6 +413,9 @@ public class ClienteRemotoAPI {
                         case "8":
                             obterComodo(cliente, scanner);
                             break;
+                        case "9":
+                            exibirEstatisticasCache(cliente);
+                            break;
                         case "0":
                             continuar = false;
                             System.out.println("\nEncerrando cliente...");
@@ -305,6 +428,7 @@ public class ClienteRemotoAPI {
                     if (e.getCause() != null) {
                         System.err.println("Causa: " + e.getCause().getMessage());
                     }
+                    LOG.erro("Falha na opção " + opcao, e);
                 }
                 
                 if (continuar) {
@@ -317,7 +441,7 @@ public class ClienteRemotoAPI {
             
         } catch (Exception e) {
             System.err.println("[ERRO] " + e.getMessage());
-            e.printStackTrace();
+            LOG.erro("Falha no cliente", e);
         }
     }
     
@@ -333,6 +457,7 @@ public class ClienteRemotoAPI {
         System.out.println("6. Criar rotina");
         System.out.println("7. Listar alertas");
         System.out.println("8. Obter comodo por nome");
+        System.out.println("9. Estatisticas do cache local");
         System.out.println("0. Sair");
         System.out.println("========================================");
     }
@@ -565,4 +690,15 @@ public class ClienteRemotoAPI {
             System.out.println("\n[ERRO] Comodo nao encontrado!");
         }
     }
+    
+    private static void exibirEstatisticasCache(ClienteRemotoAPI cliente) {
+        CacheCliente cache = cliente.getCache();
+        System.out.println("\n--- Cache Local ---");
+        System.out.println("  Entradas: " + cache.getTamanho());
+        System.out.println("  Acertos: " + cache.getAcertos());
+        System.out.println("  Falhas: " + cache.getFalhas());
+        System.out.println("  Revalidacoes (304): " + cache.getRevalidacoes());
+        System.out.println("  Invalidacoes: " + cache.getInvalidacoes());
+        System.out.println("  Taxa de acerto: " + String.format("%.1f%%", cache.getTaxaAcerto() * 100));
+    }
 }
@@ -1,187 +1,403 @@
 package smarthome.net;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Parser JSON simples para deserializar requisições JSON.
- * Implementação básica para casos simples (strings, arrays, objetos básicos).
+ * Parser JSON para deserializar requisições e respostas JSON.
+ * Lê de uma String ou diretamente de um InputStream (UTF-8), caractere a
+ * caractere, sem montar o texto inteiro em memória. Objetos viram Map,
+ * arrays List e números Integer, Long ou Double.
+ * JSON malformado gera IllegalArgumentException com a posição do erro.
+ *
+ * Cada thread reaproveita o mesmo parser (buffer de leitura e de trechos),
+ * de modo que só os valores resultantes são alocados.
  */
 public class JsonParser {
-    
+
+    // Limite de aninhamento: evita estouro de pilha com [[[[...
+    private static final int PROFUNDIDADE_MAXIMA = 512;
+    private static final int FIM = -1;
+
+    // Acima disso o buffer de trechos é trocado ao final (não retém o pico de uma string enorme)
+    private static final int CAPACIDADE_RETIDA_TRECHO = 64 * 1024;
+
+    private static final ThreadLocal<JsonParser> DA_THREAD = ThreadLocal.withInitial(JsonParser::new);
+
+    // Fonte: texto em memória ou fluxo de bytes UTF-8
+    private String texto;
+    private InputStream entrada;
+    private final byte[] buffer = new byte[8192];
+    private int posicaoBuffer;
+    private int limiteBuffer;
+    // Segunda metade de um par substituto (caractere fora do BMP)
+    private int baixoPendente;
+
+    // Caractere atual (FIM no fim da entrada) e quantos já foram lidos
+    private int atual;
+    private long posicao;
+    private StringBuilder trecho = new StringBuilder(64);
+    private boolean emUso;
+
+    private JsonParser() {}
+
+    /**
+     * Parser da thread pronto para a fonte; um novo se o da thread já está
+     * em uso (parse aninhado).
+     */
+    private static JsonParser iniciar(String texto, InputStream entrada) {
+        JsonParser parser = DA_THREAD.get();
+        if (parser.emUso) {
+            parser = new JsonParser();
+        }
+        parser.emUso = true;
+        parser.texto = texto;
+        parser.entrada = entrada;
+        parser.posicaoBuffer = 0;
+        parser.limiteBuffer = 0;
+        parser.baixoPendente = FIM;
+        parser.posicao = 0;
+        return parser;
+    }
+
+    private void liberar() {
+        texto = null;
+        entrada = null;
+        if (trecho.capacity() > CAPACIDADE_RETIDA_TRECHO) {
+            trecho = new StringBuilder(64);
+        }
+        emUso = false;
+    }
+
     /**
      * Parseia uma string JSON e retorna um objeto Java.
+     * @return null para texto nulo ou vazio
      */
     public static Object parse(String json) {
-        if (json == null || json.trim().isEmpty()) {
-            return null;
-        }
-        
-        json = json.trim();
-        
-        // null
-        if (json.equals("null")) {
+        if (json == null) {
             return null;
         }
-        
-        // String (entre aspas)
-        if (json.startsWith("\"") && json.endsWith("\"")) {
-            return json.substring(1, json.length() - 1)
-                      .replace("\\\"", "\"")
-                      .replace("\\n", "\n")
-                      .replace("\\r", "\r")
-                      .replace("\\t", "\t");
-        }
-        
-        // Array (começa com [)
-        if (json.startsWith("[")) {
-            return parseArray(json);
-        }
-        
-        // Objeto (começa com {)
-        if (json.startsWith("{")) {
-            return parseObject(json);
-        }
-        
-        // Número ou boolean
-        if (json.equals("true")) return true;
-        if (json.equals("false")) return false;
-        if (json.equals("null")) return null;
-        
+        JsonParser parser = iniciar(json, null);
         try {
-            // Tenta parsear como número
-            if (json.contains(".")) {
-                return Double.parseDouble(json);
-            } else {
-                return Integer.parseInt(json);
-            }
-        } catch (NumberFormatException e) {
-            // Se não for número, retorna como string
-            return json;
+            return parser.lerDocumento();
+        } catch (IOException e) {
+            // Leitura de String não faz I/O
+            throw new IllegalStateException(e);
+        } finally {
+            parser.liberar();
         }
     }
-    
+
     /**
-     * Parseia um array JSON.
+     * Parseia o JSON lido de um fluxo UTF-8 até o fim, sem fechá-lo.
+     * @return null para fluxo vazio (ou só com espaços)
+     * @throws IOException Erro ao ler o fluxo
      */
-    private static List<Object> parseArray(String json) {
-        List<Object> result = new ArrayList<>();
-        json = json.trim();
-        
-        if (json.equals("[]")) {
-            return result;
+    public static Object parse(InputStream entrada) throws IOException {
+        JsonParser parser = iniciar(null, entrada);
+        try {
+            return parser.lerDocumento();
+        } finally {
+            parser.liberar();
         }
-        
-        // Remove [ e ]
-        json = json.substring(1, json.length() - 1).trim();
-        
-        if (json.isEmpty()) {
-            return result;
+    }
+
+    private Object lerDocumento() throws IOException {
+        avancar();
+        pularEspacos();
+        if (atual == FIM) {
+            return null;
+        }
+        Object valor = lerValor(0);
+        pularEspacos();
+        if (atual != FIM) {
+            throw erro("conteúdo após o fim do documento");
         }
-        
-        // Divide por vírgulas (respeitando strings e objetos aninhados)
-        List<String> elementos = splitJson(json);
-        
-        for (String elemento : elementos) {
-            result.add(parse(elemento.trim()));
+        return valor;
+    }
+
+    private Object lerValor(int profundidade) throws IOException {
+        switch (atual) {
+            case '{':
+                return lerObjeto(profundidade + 1);
+            case '[':
+                return lerArray(profundidade + 1);
+            case '"':
+                return lerString();
+            case 't':
+                lerLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                lerLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                lerLiteral("null");
+                return null;
+            default:
+                if (atual == '-' || (atual >= '0' && atual <= '9')) {
+                    return lerNumero();
+                }
+                throw erro(atual == FIM ? "fim inesperado" : "valor inesperado '" + (char) atual + "'");
         }
-        
-        return result;
     }
-    
+
     /**
      * Parseia um objeto JSON.
      */
-    private static Map<String, Object> parseObject(String json) {
+    private Map<String, Object> lerObjeto(int profundidade) throws IOException {
+        verificarProfundidade(profundidade);
         Map<String, Object> result = new HashMap<>();
-        json = json.trim();
-        
-        if (json.equals("{}")) {
+        avancar();
+        pularEspacos();
+        if (atual == '}') {
+            avancar();
             return result;
         }
-        
-        // Remove { e }
-        json = json.substring(1, json.length() - 1).trim();
-        
-        if (json.isEmpty()) {
+        while (true) {
+            if (atual != '"') {
+                throw erro("esperada chave entre aspas");
+            }
+            String chave = lerString();
+            pularEspacos();
+            esperar(':');
+            pularEspacos();
+            result.put(chave, lerValor(profundidade));
+            pularEspacos();
+            if (atual == ',') {
+                avancar();
+                pularEspacos();
+            } else {
+                esperar('}');
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Parseia um array JSON.
+     */
+    private List<Object> lerArray(int profundidade) throws IOException {
+        verificarProfundidade(profundidade);
+        List<Object> result = new ArrayList<>();
+        avancar();
+        pularEspacos();
+        if (atual == ']') {
+            avancar();
             return result;
         }
-        
-        // Divide por vírgulas (respeitando strings e objetos aninhados)
-        List<String> pares = splitJson(json);
-        
-        for (String par : pares) {
-            int doisPontos = par.indexOf(':');
-            if (doisPontos > 0) {
-                String chave = par.substring(0, doisPontos).trim();
-                String valor = par.substring(doisPontos + 1).trim();
-                
-                // Remove aspas da chave
-                if (chave.startsWith("\"") && chave.endsWith("\"")) {
-                    chave = chave.substring(1, chave.length() - 1);
-                }
-                
-                result.put(chave, parse(valor));
+        while (true) {
+            result.add(lerValor(profundidade));
+            pularEspacos();
+            if (atual == ',') {
+                avancar();
+                pularEspacos();
+            } else {
+                esperar(']');
+                return result;
+            }
+        }
+    }
+
+    private String lerString() throws IOException {
+        trecho.setLength(0);
+        while (true) {
+            avancar();
+            if (atual == '"') {
+                avancar();
+                return trecho.toString();
+            }
+            if (atual == FIM) {
+                throw erro("string não terminada");
+            }
+            if (atual != '\\') {
+                trecho.append((char) atual);
+                continue;
+            }
+            avancar();
+            switch (atual) {
+                case '"': trecho.append('"'); break;
+                case '\\': trecho.append('\\'); break;
+                case '/': trecho.append('/'); break;
+                case 'b': trecho.append('\b'); break;
+                case 'f': trecho.append('\f'); break;
+                case 'n': trecho.append('\n'); break;
+                case 'r': trecho.append('\r'); break;
+                case 't': trecho.append('\t'); break;
+                case 'u':
+                    int codigo = 0;
+                    for (int i = 0; i < 4; i++) {
+                        avancar();
+                        int digito = Character.digit(atual, 16);
+                        if (atual == FIM || digito < 0) {
+                            throw erro("escape \\u inválido");
+                        }
+                        codigo = codigo * 16 + digito;
+                    }
+                    trecho.append((char) codigo);
+                    break;
+                default:
+                    throw erro("escape inválido");
             }
         }
-        
-        return result;
     }
-    
+
     /**
-     * Divide uma string JSON por vírgulas, respeitando strings e objetos aninhados.
+     * Números inteiros viram Integer (ou Long se não couberem), acumulados
+     * sem passar por String; com ponto, expoente ou acima de Long, Double.
      */
-    private static List<String> splitJson(String json) {
-        List<String> result = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        int depth = 0;
-        boolean inString = false;
-        boolean escapeNext = false;
-        
-        for (char c : json.toCharArray()) {
-            if (escapeNext) {
-                current.append(c);
-                escapeNext = false;
-                continue;
+    private Object lerNumero() throws IOException {
+        trecho.setLength(0);
+        boolean decimal = false;
+        boolean transbordou = false;
+        int digitos = 0;
+        long valor = 0;
+        while (atual == '-' || atual == '+' || atual == '.' || atual == 'e' || atual == 'E'
+                || (atual >= '0' && atual <= '9')) {
+            if (atual >= '0' && atual <= '9') {
+                int digito = atual - '0';
+                if (valor > (Long.MAX_VALUE - digito) / 10) {
+                    transbordou = true;
+                } else {
+                    valor = valor * 10 + digito;
+                }
+                digitos++;
+            } else if (atual == '.' || atual == 'e' || atual == 'E') {
+                decimal = true;
             }
-            
-            if (c == '\\') {
-                escapeNext = true;
-                current.append(c);
-                continue;
+            trecho.append((char) atual);
+            avancar();
+        }
+        boolean negativo = trecho.charAt(0) == '-';
+        if (!decimal && !transbordou) {
+            // Só sinal opcional seguido de dígitos
+            if (digitos == 0 || trecho.length() != digitos + (negativo ? 1 : 0)) {
+                throw erro("número inválido '" + trecho + "'");
             }
-            
-            if (c == '"' && !escapeNext) {
-                inString = !inString;
-                current.append(c);
-                continue;
+            long inteiro = negativo ? -valor : valor;
+            if (inteiro >= Integer.MIN_VALUE && inteiro <= Integer.MAX_VALUE) {
+                return (int) inteiro;
             }
-            
-            if (inString) {
-                current.append(c);
-                continue;
+            return inteiro;
+        }
+        try {
+            return Double.parseDouble(trecho.toString());
+        } catch (NumberFormatException e) {
+            throw erro("número inválido '" + trecho + "'");
+        }
+    }
+
+    private void lerLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (atual != literal.charAt(i)) {
+                throw erro("esperado " + literal);
             }
-            
-            if (c == '{' || c == '[') {
-                depth++;
-                current.append(c);
-            } else if (c == '}' || c == ']') {
-                depth--;
-                current.append(c);
-            } else if (c == ',' && depth == 0) {
-                result.add(current.toString());
-                current = new StringBuilder();
-            } else {
-                current.append(c);
+            avancar();
+        }
+    }
+
+    private void esperar(char esperado) throws IOException {
+        if (atual != esperado) {
+            throw erro("esperado '" + esperado + "'");
+        }
+        avancar();
+    }
+
+    private void verificarProfundidade(int profundidade) {
+        if (profundidade > PROFUNDIDADE_MAXIMA) {
+            throw erro("aninhamento acima de " + PROFUNDIDADE_MAXIMA + " níveis");
+        }
+    }
+
+    private void pularEspacos() throws IOException {
+        while (atual == ' ' || atual == '\n' || atual == '\r' || atual == '\t') {
+            avancar();
+        }
+    }
+
+    private IllegalArgumentException erro(String mensagem) {
+        return new IllegalArgumentException(mensagem + " na posição " + Math.max(0, posicao - 1));
+    }
+
+    // ---------------------------------------------------------------
+    // Leitura de caracteres
+    // ---------------------------------------------------------------
+
+    private void avancar() throws IOException {
+        if (texto != null) {
+            atual = posicao < texto.length() ? texto.charAt((int) posicao) : FIM;
+        } else {
+            atual = lerCaractereUtf8();
+        }
+        if (atual != FIM) {
+            posicao++;
+        }
+    }
+
+    /**
+     * Decodifica o próximo caractere UTF-8 do fluxo. Sequências inválidas
+     * viram U+FFFD; caracteres fora do BMP viram um par substituto.
+     */
+    private int lerCaractereUtf8() throws IOException {
+        if (baixoPendente != FIM) {
+            int baixo = baixoPendente;
+            baixoPendente = FIM;
+            return baixo;
+        }
+        int b = lerByte();
+        if (b < 0x80) {
+            return b;
+        }
+        int continuacoes;
+        int codigo;
+        if ((b & 0xE0) == 0xC0) {
+            continuacoes = 1;
+            codigo = b & 0x1F;
+        } else if ((b & 0xF0) == 0xE0) {
+            continuacoes = 2;
+            codigo = b & 0x0F;
+        } else if ((b & 0xF8) == 0xF0) {
+            continuacoes = 3;
+            codigo = b & 0x07;
+        } else {
+            return '\uFFFD';
+        }
+        for (int i = 0; i < continuacoes; i++) {
+            int c = lerByte();
+            if ((c & 0xC0) != 0x80) {
+                if (c != FIM) {
+                    // Devolve o byte: ele inicia o próximo caractere
+                    posicaoBuffer--;
+                }
+                return '\uFFFD';
+            }
+            codigo = (codigo << 6) | (c & 0x3F);
+        }
+        if (codigo >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            if (codigo > Character.MAX_CODE_POINT) {
+                return '\uFFFD';
             }
+            baixoPendente = Character.lowSurrogate(codigo);
+            return Character.highSurrogate(codigo);
         }
-        
-        if (current.length() > 0) {
-            result.add(current.toString());
+        return codigo;
+    }
+
+    private int lerByte() throws IOException {
+        if (posicaoBuffer == limiteBuffer) {
+            int lidos;
+            do {
+                lidos = entrada.read(buffer, 0, buffer.length);
+            } while (lidos == 0);
+            if (lidos < 0) {
+                return FIM;
+            }
+            posicaoBuffer = 0;
+            limiteBuffer = lidos;
         }
-        
-        return result;
+        return buffer[posicaoBuffer++] & 0xFF;
     }
 }
@@ -0,0 +1,264 @@
+package smarthome.net;
+
+import smarthome.log.LogAssincrono;
+import smarthome.metricas.Contador;
+import smarthome.metricas.RegistroMetricas;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Rastreamento das etapas de cada requisição (leitura do corpo, parse,
+ * conversão, serviço, serialização e envio).
+ *
+ * Cada thread do servidor tem um {@link Rastreio} pré-alocado, reiniciado a
+ * cada requisição: marcar uma etapa só lê o relógio e soma em um array.
+ * Apenas as requisições acima do limiar viram uma {@link Amostra} imutável,
+ * que vai para o log (nível AVISO) e para o ranking das N mais lentas.
+ *
+ * Desligado (padrão), as marcações retornam sem ler o relógio.
+ */
+public class RastreioRequisicoes {
+
+    /**
+     * Etapas medidas, na ordem em que ocorrem na requisição.
+     */
+    public enum Etapa {
+        LEITURA_CORPO("leituraCorpo"),
+        PARSE_JSON("parseJson"),
+        CONVERSAO("conversao"),
+        SERVICO("servico"),
+        SERIALIZACAO("serializacao"),
+        ENVIO("envio");
+
+        private final String nome;
+
+        Etapa(String nome) {
+            this.nome = nome;
+        }
+
+        public String getNome() { return nome; }
+    }
+
+    private static final Etapa[] ETAPAS = Etapa.values();
+
+    /**
+     * Etapas da requisição em andamento na thread, reaproveitado entre requisições.
+     */
+    public static final class Rastreio {
+        private final long[] duracoes = new long[ETAPAS.length];
+
+        void reiniciar() {
+            Arrays.fill(duracoes, 0);
+        }
+
+        /**
+         * Soma à etapa o tempo decorrido desde {@code inicio}.
+         */
+        void registrar(Etapa etapa, long inicio) {
+            duracoes[etapa.ordinal()] += System.nanoTime() - inicio;
+        }
+
+        /**
+         * Soma à etapa uma duração medida por fora (ex.: tempo bloqueado em leituras).
+         */
+        void somar(Etapa etapa, long nanos) {
+            duracoes[etapa.ordinal()] += nanos;
+        }
+
+        /**
+         * Soma à etapa o tempo desde {@code inicio}, descontando o que foi
+         * registrado em outras etapas nesse intervalo (ex.: leitura e parse
+         * feitos dentro do handler não contam como serviço).
+         * @param somaAnterior Valor de {@link #soma()} em {@code inicio}
+         */
+        void registrarExclusivo(Etapa etapa, long inicio, long somaAnterior) {
+            long aninhadas = soma() - somaAnterior;
+            duracoes[etapa.ordinal()] += Math.max(0, System.nanoTime() - inicio - aninhadas);
+        }
+
+        long soma() {
+            long total = 0;
+            for (long d : duracoes) {
+                total += d;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Cópia imutável do rastreio de uma requisição lenta.
+     */
+    public static final class Amostra {
+        private final long inicioMs;
+        private final String metodo;
+        private final String caminho;
+        private final int status;
+        private final long totalNanos;
+        private final long[] duracoes;
+
+        Amostra(long inicioMs, String metodo, String caminho, int status, long totalNanos, long[] duracoes) {
+            this.inicioMs = inicioMs;
+            this.metodo = metodo;
+            this.caminho = caminho;
+            this.status = status;
+            this.totalNanos = totalNanos;
+            this.duracoes = duracoes;
+        }
+
+        public long getTotalNanos() { return totalNanos; }
+
+        public long getDuracao(Etapa etapa) {
+            return duracoes[etapa.ordinal()];
+        }
+
+        /**
+         * Tempo não atribuído a nenhuma etapa (roteamento, ETag, cabeçalhos).
+         */
+        public long getOutrosNanos() {
+            long soma = 0;
+            for (long d : duracoes) {
+                soma += d;
+            }
+            return Math.max(0, totalNanos - soma);
+        }
+
+        /**
+         * Representação para a resposta JSON (tempos em milissegundos).
+         */
+        public Map<String, Object> paraMapa() {
+            Map<String, Object> etapas = new LinkedHashMap<>();
+            for (Etapa etapa : ETAPAS) {
+                etapas.put(etapa.getNome(), milissegundos(getDuracao(etapa)));
+            }
+            etapas.put("outros", milissegundos(getOutrosNanos()));
+
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            mapa.put("inicio", Instant.ofEpochMilli(inicioMs).toString());
+            mapa.put("metodo", metodo);
+            mapa.put("caminho", caminho);
+            mapa.put("status", status);
+            mapa.put("totalMs", milissegundos(totalNanos));
+            mapa.put("etapasMs", etapas);
+            return mapa;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder texto = new StringBuilder(160);
+            texto.append("Requisição lenta: ").append(metodo).append(' ').append(caminho)
+                 .append(" status=").append(status)
+                 .append(" totalMs=").append(milissegundos(totalNanos));
+            for (Etapa etapa : ETAPAS) {
+                texto.append(' ').append(etapa.getNome()).append('=').append(milissegundos(getDuracao(etapa)));
+            }
+            texto.append(" outros=").append(milissegundos(getOutrosNanos()));
+            return texto.toString();
+        }
+
+        private static double milissegundos(long nanos) {
+            return Math.round(nanos / 1000.0) / 1000.0;
+        }
+    }
+
+    private final boolean ativo;
+    private final long limiarNanos;
+    private final int maximoRetidas;
+    private final LogAssincrono log;
+    private final Contador lentas;
+
+    // Mais lentas retidas; a cabeça é a mais rápida delas (a próxima a sair)
+    private final PriorityQueue<Amostra> piores;
+    // Total da cabeça quando o ranking está cheio: filtra sem lock quem não entraria
+    private volatile long menorRetida = Long.MIN_VALUE;
+
+    /**
+     * @param limiarMs Latência mínima para amostrar a requisição; negativo desliga
+     * @param maximoRetidas Número de requisições mais lentas mantidas para consulta
+     * @param log Destino das amostras; null para não registrar em log
+     */
+    public RastreioRequisicoes(long limiarMs, int maximoRetidas, LogAssincrono log) {
+        if (maximoRetidas <= 0) {
+            throw new IllegalArgumentException("Número de rastreios retidos deve ser positivo: " + maximoRetidas);
+        }
+        this.ativo = limiarMs >= 0;
+        this.limiarNanos = limiarMs * 1_000_000;
+        this.maximoRetidas = maximoRetidas;
+        this.log = log;
+        this.piores = new PriorityQueue<>(maximoRetidas + 1,
+                (a, b) -> Long.compare(a.totalNanos, b.totalNanos));
+        this.lentas = RegistroMetricas.contador("smarthome_http_requisicoes_lentas_total",
+                "Requisições acima do limiar de rastreamento");
+    }
+
+    /**
+     * Rastreamento configurado pelas propriedades de sistema
+     * {@code smarthome.rastreio.limiarMs} (padrão -1, desligado) e
+     * {@code smarthome.rastreio.retidas} (padrão 50).
+     */
+    public static RastreioRequisicoes configurado(LogAssincrono log) {
+        long limiarMs = Long.getLong("smarthome.rastreio.limiarMs", -1L);
+        int retidas = Integer.getInteger("smarthome.rastreio.retidas", 50);
+        return new RastreioRequisicoes(limiarMs, retidas, log);
+    }
+
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    public long getLimiarMs() {
+        return ativo ? limiarNanos / 1_000_000 : -1;
+    }
+
+    /**
+     * Início de uma etapa: o relógio atual, ou 0 se o rastreamento está desligado.
+     */
+    public long marcar() {
+        return ativo ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Encerra o rastreio de uma requisição, amostrando-a se passou do limiar.
+     */
+    void concluir(Rastreio rastreio, String metodo, String caminho, int status, long totalNanos) {
+        if (!ativo || totalNanos < limiarNanos) {
+            return;
+        }
+        Amostra amostra = new Amostra(System.currentTimeMillis() - totalNanos / 1_000_000,
+                metodo, caminho, status, totalNanos, rastreio.duracoes.clone());
+        lentas.incrementar();
+        if (log != null) {
+            log.aviso(amostra.toString());
+        }
+        if (totalNanos <= menorRetida) {
+            return;
+        }
+        synchronized (piores) {
+            piores.add(amostra);
+            if (piores.size() > maximoRetidas) {
+                piores.poll();
+            }
+            if (piores.size() == maximoRetidas) {
+                menorRetida = piores.peek().totalNanos;
+            }
+        }
+    }
+
+    /**
+     * As requisições mais lentas retidas, da mais lenta para a mais rápida.
+     * @param limite Número máximo de amostras retornadas
+     */
+    public List<Amostra> listarMaisLentas(int limite) {
+        List<Amostra> amostras;
+        synchronized (piores) {
+            amostras = new ArrayList<>(piores);
+        }
+        amostras.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+        return amostras.size() > limite ? new ArrayList<>(amostras.subList(0, limite)) : amostras;
+    }
+}
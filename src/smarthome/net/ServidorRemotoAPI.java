@@ -1,15 +1,21 @@
 package smarthome.net;
 
+import smarthome.interfaces.ConflitoVersaoException;
 import smarthome.interfaces.ISmartHomeService;
 import smarthome.services.SmartHomeServiceImpl;
 import smarthome.pojos.DispositivoIoT;
 import smarthome.pojos.Rotina;
 import smarthome.pojos.Alerta;
 import smarthome.pojos.Comodo;
-import smarthome.pojos.Lampada;
-import smarthome.pojos.Termostato;
-import smarthome.pojos.Sensor;
-import smarthome.pojos.Acao;
+import smarthome.pojos.ResultadoLote;
+import smarthome.net.codec.RegistroCodecs;
+import smarthome.net.codec.SaidaJson;
+import smarthome.net.RastreioRequisicoes.Etapa;
+import smarthome.log.LogAssincrono;
+import smarthome.metricas.Contador;
+import smarthome.metricas.Histograma;
+import smarthome.metricas.Medidor;
+import smarthome.metricas.RegistroMetricas;
 
 import java.util.Map;
 
@@ -17,14 +23,27 @@ import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
-import java.time.LocalDateTime;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 /**
  * Servidor remoto que processa requisições de clientes usando API REST HTTP.
@@ -34,68 +53,236 @@ import java.util.List;
 public class ServidorRemotoAPI {
     
     private static final int PORTA = 8080;
+    
+    // Tamanho máximo do corpo das requisições, em bytes (maior: 413)
+    private static final long CORPO_MAXIMO = Long.getLong("smarthome.http.corpoMaximo", 1024 * 1024L);
     private HttpServer server;
-    private ISmartHomeService smartHomeService;
+    // Null até a inicialização em segundo plano terminar (ver iniciar())
+    private volatile ISmartHomeService smartHomeService;
+    private final Supplier<? extends ISmartHomeService> fabricaServico;
+    private volatile Throwable falhaInicializacao;
+    
+    // Marcos da inicialização (System.currentTimeMillis(); 0 = ainda não ocorreu)
+    private final long portaAberta;
+    private volatile long servicoPronto;
+    private volatile long primeiraResposta;
+    
+    // Distingue ETags de execuções diferentes do servidor (versões recomeçam do zero)
+    private final String epocaETag = Long.toHexString(System.currentTimeMillis());
+    
+    // Respostas já codificadas dos endpoints de leitura mais acessados
+    private final CacheRespostas cacheRespostas = new CacheRespostas();
+    
+    // Cache-Control dos recursos com ETag: sem max-age, o cliente guarda a resposta mas revalida antes de usar
+    private static final String CACHE_CONTROL = cacheControl(Long.getLong("smarthome.http.cacheMaxAge", 0));
+    // Formato IMF-fixdate de Last-Modified (dia sempre com dois dígitos, ao contrário de RFC_1123_DATE_TIME)
+    private static final DateTimeFormatter DATA_HTTP =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    
+    // Retornado por processarRequest quando o handler já enviou a resposta
+    private static final Object RESPOSTA_ENVIADA = new Object();
+    
+    // Partes fixas das respostas JSON, codificadas uma vez
+    private static final byte[] JSON_NULO = {'n', 'u', 'l', 'l'};
+    private static final byte[] CAMPO_ERRO = "{\"erro\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CAMPO_CODIGO = SaidaJson.nomeCampo("codigo", false);
+    
+    // Log estruturado (requisições e erros), gravado por uma thread própria
+    private static final LogAssincrono LOG = LogAssincrono.configurado("servidor");
     
+    /**
+     * Estado da requisição em atendimento na thread, reaproveitado entre requisições.
+     */
+    private static final class ContextoRequisicao {
+        long bytes;
+        final RastreioRequisicoes.Rastreio rastreio = new RastreioRequisicoes.Rastreio();
+        final CorpoLimitado corpo = new CorpoLimitado();
+        final TabelaRotas.Correspondencia<BaseHandler> rota = new TabelaRotas.Correspondencia<>();
+    }
+    
+    private static final ThreadLocal<ContextoRequisicao> CONTEXTO = ThreadLocal.withInitial(ContextoRequisicao::new);
+    
+    // Tempo por etapa das requisições lentas (desligado por padrão)
+    private final RastreioRequisicoes rastreios = RastreioRequisicoes.configurado(LOG);
+    
+    // Rotas (método + caminho) atendidas pelo Roteador, único contexto do HttpServer
+    private final TabelaRotas<BaseHandler> rotas = new TabelaRotas<>();
+    private final BaseHandler semRota = new SemRotaHandler();
+    
+    /**
+     * Servidor na porta padrão, com o serviço criado em segundo plano.
+     */
     public ServidorRemotoAPI() throws IOException {
-        this.smartHomeService = new SmartHomeServiceImpl();
-        this.server = HttpServer.create(new InetSocketAddress(PORTA), 0);
+        this(SmartHomeServiceImpl::new, PORTA);
+    }
+    
+    /**
+     * Servidor sobre um serviço já criado (ex.: benchmarks em processo).
+     * @param porta Porta HTTP; 0 escolhe uma porta livre (ver {@link #getPorta()})
+     */
+    public ServidorRemotoAPI(ISmartHomeService smartHomeService, int porta) throws IOException {
+        this(smartHomeService, null, porta);
+    }
+    
+    /**
+     * Servidor que abre a porta imediatamente e só cria o serviço em uma
+     * thread própria ao {@link #iniciar() iniciar}. Até o serviço ficar
+     * pronto, as rotas que dependem dele respondem 503 com Retry-After;
+     * saúde, métricas e rastreios respondem desde o início.
+     * @param fabricaServico Cria (ou carrega) o serviço; pode ser demorada
+     * @param porta Porta HTTP; 0 escolhe uma porta livre
+     */
+    public ServidorRemotoAPI(Supplier<? extends ISmartHomeService> fabricaServico, int porta) throws IOException {
+        this(null, fabricaServico, porta);
+    }
+    
+    private ServidorRemotoAPI(ISmartHomeService smartHomeService, Supplier<? extends ISmartHomeService> fabricaServico,
+                              int porta) throws IOException {
+        this.smartHomeService = smartHomeService;
+        this.fabricaServico = fabricaServico;
+        this.server = HttpServer.create(new InetSocketAddress(porta), 0);
+        this.portaAberta = System.currentTimeMillis();
+        this.servicoPronto = smartHomeService != null ? portaAberta : 0;
+        registrarMetricasCache();
         configurarRotas();
     }
     
     /**
-     * Configura as rotas da API REST.
+     * Configura as rotas da API REST. O HttpServer tem um único contexto:
+     * o {@link Roteador} escolhe o handler pela tabela de rotas.
      */
     private void configurarRotas() {
-        // Endpoint para listar dispositivos
-        server.createContext("/api/dispositivos", new DispositivosHandler());
-        
-        // Endpoint para obter dispositivo específico
-        server.createContext("/api/dispositivos/obter", new ObterDispositivoHandler());
+        // Dispositivos: listar, obter, atualizar, executar ação e atualização parcial
+        rota("GET", "/api/dispositivos", new DispositivosHandler());
+        rota("GET", "/api/dispositivos/{id}", new ObterDispositivoHandler(true));
+        rota("PATCH", "/api/dispositivos/{id}", new MergePatchDispositivoHandler());
+        rota("POST", "/api/dispositivos/obter", new ObterDispositivoHandler(false));
+        rota("POST", "/api/dispositivos/atualizar", new AtualizarDispositivoHandler());
+        rota("POST", "/api/dispositivos/acao", new ExecutarAcaoHandler());
+        BaseHandler campos = new AtualizarCamposHandler();
+        rota("PATCH", "/api/dispositivos/campos", campos);
+        rota("POST", "/api/dispositivos/campos", campos);
         
-        // Endpoint para atualizar dispositivo
-        server.createContext("/api/dispositivos/atualizar", new AtualizarDispositivoHandler());
+        // Rotinas: listar, criar e executar
+        rota("GET", "/api/rotinas", new RotinasHandler());
+        rota("POST", "/api/rotinas/criar", new CriarRotinaHandler());
+        rota("POST", "/api/rotinas/executar", new ExecutarRotinaHandler());
         
-        // Endpoint para executar ação
-        server.createContext("/api/dispositivos/acao", new ExecutarAcaoHandler());
+        // Alertas, com filtros opcionais na query string
+        rota("GET", "/api/alertas", new AlertasHandler());
         
-        // Endpoint para listar rotinas
-        server.createContext("/api/rotinas", new RotinasHandler());
+        // Cômodos e grupos, incluindo comandos em lote
+        rota("GET", "/api/comodos/{nome}", new ObterComodoHandler(true));
+        rota("POST", "/api/comodos/obter", new ObterComodoHandler(false));
+        rota("POST", "/api/comodos/acao", new AcaoEmLoteHandler(false));
+        rota("GET", "/api/grupos", new GruposHandler());
+        rota("POST", "/api/grupos/definir", new DefinirGrupoHandler());
+        rota("POST", "/api/grupos/acao", new AcaoEmLoteHandler(true));
         
-        // Endpoint para criar rotina
-        server.createContext("/api/rotinas/criar", new CriarRotinaHandler());
+        // Métricas (formato de texto do Prometheus) e requisições mais lentas rastreadas
+        rota("GET", "/api/metricas", new MetricasHandler());
+        rota("GET", "/api/rastreios", new RastreiosHandler());
         
-        // Endpoint para listar alertas
-        server.createContext("/api/alertas", new AlertasHandler());
+        // Saúde: processo no ar e serviço pronto para comandos
+        rota("GET", "/api/saude", new SaudeHandler(false));
+        rota("GET", "/api/saude/pronto", new SaudeHandler(true));
         
-        // Endpoint para obter cômodo
-        server.createContext("/api/comodos/obter", new ObterComodoHandler());
+        // Raiz para verificação
+        rota("GET", "/", new RootHandler());
         
-        // Endpoint raiz para verificação
-        server.createContext("/", new RootHandler());
+        server.createContext("/", new Roteador());
+    }
+    
+    /**
+     * Registra a rota; as métricas do handler são rotuladas com o padrão
+     * da primeira rota em que ele aparece.
+     */
+    private void rota(String metodo, String padrao, BaseHandler handler) {
+        rotas.adicionar(metodo, padrao, handler);
+        if (handler.metricas == null) {
+            handler.metricas = new MetricasEndpoint(padrao);
+        }
     }
     
     public void iniciar() {
         server.setExecutor(null); // Usa executor padrão
         server.start();
         System.out.println("=== Servidor Remoto Smart Home (API REST HTTP) ===");
-        System.out.println("Servidor iniciado na porta " + PORTA);
+        System.out.println("Servidor iniciado na porta " + getPorta());
         System.out.println("Endpoints disponíveis:");
-        System.out.println("  GET  /api/dispositivos");
-        System.out.println("  POST /api/dispositivos/obter");
-        System.out.println("  POST /api/dispositivos/atualizar");
-        System.out.println("  POST /api/dispositivos/acao");
-        System.out.println("  GET  /api/rotinas");
-        System.out.println("  POST /api/rotinas/criar");
-        System.out.println("  GET  /api/alertas");
-        System.out.println("  POST /api/comodos/obter");
+        for (String rota : rotas.listar()) {
+            System.out.println("  " + rota);
+        }
         System.out.println("Aguardando requisições de clientes...\n");
+        LOG.info("Servidor iniciado na porta " + getPorta());
+        if (rastreios.isAtivo()) {
+            LOG.info("Rastreamento de requisições acima de " + rastreios.getLimiarMs() + " ms");
+        }
+        if (smartHomeService == null) {
+            Thread inicializacao = new Thread(this::inicializarServico, "smarthome-inicializacao");
+            inicializacao.setDaemon(true);
+            inicializacao.start();
+        }
+    }
+    
+    /**
+     * Cria o serviço fora do caminho de abertura da porta.
+     */
+    private void inicializarServico() {
+        long inicio = System.nanoTime();
+        try {
+            smartHomeService = fabricaServico.get();
+            servicoPronto = System.currentTimeMillis();
+            LOG.info(String.format("Serviço pronto em %.1f ms; porta aberta %d ms e serviço pronto %d ms após o início do processo",
+                    (System.nanoTime() - inicio) / 1e6, portaAberta - InicioProcesso.MS, servicoPronto - InicioProcesso.MS));
+        } catch (Throwable e) {
+            // Sem o serviço o processo continua no ar: /api/saude informa a falha
+            falhaInicializacao = e;
+            LOG.erro("Falha ao inicializar o serviço", e);
+        }
+    }
+    
+    /**
+     * Instante de início do processo, lido só quando necessário
+     * (carregar o java.lang.management atrasaria a abertura da porta).
+     */
+    private static final class InicioProcesso {
+        static final long MS = ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+    
+    private synchronized void registrarPrimeiraResposta(String metodo, String caminho, int status) {
+        if (primeiraResposta != 0) {
+            return;
+        }
+        primeiraResposta = System.currentTimeMillis();
+        LOG.info("Primeira resposta (" + metodo + " " + caminho + " -> " + status + ") "
+                + (primeiraResposta - InicioProcesso.MS) + " ms após o início do processo");
+    }
+    
+    /**
+     * @return true quando o serviço está criado e as rotas que dependem dele respondem
+     */
+    public boolean isPronto() {
+        return smartHomeService != null;
+    }
+    
+    public int getPorta() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Cache de respostas codificadas (acertos e falhas, ex.: em benchmarks).
+     */
+    public CacheRespostas getCacheRespostas() {
+        return cacheRespostas;
     }
     
     public void parar() {
         if (server != null) {
             server.stop(0);
-            System.out.println("[SERVIDOR] Servidor parado");
+            LOG.info("Servidor parado");
+            LOG.info("Cache de respostas: " + cacheRespostas +
+                    String.format(" (taxa de acerto %.1f%%)", cacheRespostas.getTaxaAcerto() * 100));
         }
     }
     
@@ -103,34 +290,112 @@ public class ServidorRemotoAPI {
      * Handler base para processar requisições HTTP.
      */
     private abstract class BaseHandler implements HttpHandler {
+        // Definidas ao registrar a rota (ver rota())
+        private MetricasEndpoint metricas;
+        
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            MetricasEndpoint m = metricas;
+            ContextoRequisicao contexto = CONTEXTO.get();
+            contexto.bytes = 0;
+            if (rastreios.isAtivo()) {
+                contexto.rastreio.reiniciar();
+            }
+            long inicio = System.nanoTime();
+            m.emAndamento.incrementar();
+            try {
+                atender(exchange, contexto);
+            } finally {
+                long latencia = System.nanoTime() - inicio;
+                int status = exchange.getResponseCode();
+                String metodo = exchange.getRequestMethod();
+                String caminho = exchange.getRequestURI().getPath();
+                m.emAndamento.decrementar();
+                m.latencia.registrar(latencia);
+                m.contarStatus(status);
+                LOG.acesso(metodo, caminho, status, latencia, contexto.bytes);
+                rastreios.concluir(contexto.rastreio, metodo, caminho, status, latencia);
+                if (primeiraResposta == 0) {
+                    registrarPrimeiraResposta(metodo, caminho, status);
+                }
+            }
+        }
+        
+        private void atender(HttpExchange exchange, ContextoRequisicao contexto) throws IOException {
             String method = exchange.getRequestMethod();
             String path = exchange.getRequestURI().getPath();
             
-            System.out.println("[SERVIDOR] " + method + " " + path);
-            
             try {
-                // Valida método HTTP
-                if (!isMetodoValido(method)) {
-                    enviarErroJson(exchange, 405, "Método não permitido: " + method);
+                // Corpo declarado acima do limite: rejeita antes de ler qualquer byte
+                String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                if (contentLength != null && excedeCorpoMaximo(contentLength)) {
+                    enviarErroJson(exchange, 413, "Corpo da requisição acima de " + CORPO_MAXIMO + " bytes");
+                    return;
+                }
+                
+                // Serviço ainda em inicialização (ou falhou): cliente tenta de novo depois
+                if (exigeServico() && smartHomeService == null) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    enviarErroJson(exchange, 503, falhaInicializacao == null
+                            ? "Serviço em inicialização" : "Falha na inicialização do serviço");
                     return;
                 }
                 
+                // Requisição condicional: coleção inalterada -> 304 sem serializar nada
+                if ("GET".equals(method)) {
+                    String etag = calcularETag(exchange);
+                    if (etag != null && responderSeNaoModificado(exchange, etag, 0)) {
+                        return;
+                    }
+                }
+                
+                // Serviço = tempo no handler menos as etapas registradas dentro dele
+                long inicioServico = rastreios.marcar();
+                long etapasAnteriores = inicioServico != 0 ? contexto.rastreio.soma() : 0;
                 Object responseObj = processarRequest(exchange);
+                if (inicioServico != 0) {
+                    contexto.rastreio.registrarExclusivo(Etapa.SERVICO, inicioServico, etapasAnteriores);
+                }
+                
+                // Handler já escreveu uma resposta em outro formato
+                if (responseObj == RESPOSTA_ENVIADA) {
+                    return;
+                }
+                
+                // Resposta pré-codificada: envia os bytes em cache diretamente
+                if (responseObj instanceof CacheRespostas.Resposta) {
+                    enviarRespostaCacheada(exchange, (CacheRespostas.Resposta) responseObj);
+                    return;
+                }
                 
                 // API REST sempre retorna JSON
-                byte[] response;
-                if (responseObj != null) {
-                    String jsonResponse = JsonConverter.toJson(responseObj);
-                    response = jsonResponse.getBytes("UTF-8");
-                } else {
-                    response = "null".getBytes("UTF-8");
+                if (responseObj == null) {
+                    enviarRespostaJson(exchange, 200, JSON_NULO);
+                    return;
+                }
+                // Serializa na saída da thread e envia dela, sem copiar para um byte[]
+                SaidaJson saida = SaidaJson.daThread();
+                try {
+                    long inicioSerializacao = System.nanoTime();
+                    RegistroCodecs.escrever(responseObj, saida);
+                    metricas.serializacao.registrarDesde(inicioSerializacao);
+                    registrarEtapa(Etapa.SERIALIZACAO, inicioSerializacao);
+                    enviarRespostaJson(exchange, 200, saida);
+                } finally {
+                    saida.devolver();
                 }
-                enviarRespostaJson(exchange, 200, response);
             } catch (NotFoundException e) {
                 // 404 Not Found
                 enviarErroJson(exchange, 404, e.getMessage());
+            } catch (CorpoExcedidoException e) {
+                // 413 Payload Too Large - corpo sem Content-Length (chunked) passou do limite
+                enviarErroJson(exchange, 413, e.getMessage());
+            } catch (TipoConteudoException e) {
+                // 415 Unsupported Media Type - corpo em formato que a rota não aceita
+                enviarErroJson(exchange, 415, e.getMessage());
+            } catch (ConflitoVersaoException e) {
+                // 409 Conflict - If-Match não corresponde à versão atual
+                enviarErroJson(exchange, 409, e.getMessage());
             } catch (IllegalArgumentException e) {
                 // Erro de validação - 400 Bad Request
                 enviarErroJson(exchange, 400, e.getMessage());
@@ -144,30 +409,137 @@ public class ServidorRemotoAPI {
                     enviarErroJson(exchange, 400, e.getMessage());
                 } else {
                     // Erro interno - 500
-                    System.err.println("[ERRO] " + e.getMessage());
-                    e.printStackTrace();
+                    LOG.erro("Erro ao processar " + method + " " + path, e);
                     enviarErroJson(exchange, 500, "Erro interno do servidor");
                 }
             } catch (ClassNotFoundException e) {
                 // Não deveria acontecer em API REST pura, mas trata como 500
-                System.err.println("[ERRO] " + e.getMessage());
-                e.printStackTrace();
+                LOG.erro("Erro ao processar " + method + " " + path, e);
                 enviarErroJson(exchange, 500, "Erro interno do servidor");
             } catch (Exception e) {
                 // Erro não esperado - 500 Internal Server Error
-                System.err.println("[ERRO] " + e.getMessage());
-                e.printStackTrace();
+                LOG.erro("Erro ao processar " + method + " " + path, e);
                 enviarErroJson(exchange, 500, "Erro interno do servidor");
             }
         }
         
         protected abstract Object processarRequest(HttpExchange exchange) throws IOException, ClassNotFoundException;
         
-        protected boolean isMetodoValido(String method) {
-            return "GET".equals(method) || "POST".equals(method);
+        /**
+         * Se o handler depende do serviço (responde 503 enquanto ele não está pronto).
+         */
+        protected boolean exigeServico() {
+            return true;
+        }
+        
+        /**
+         * ETag do recurso para requisições GET condicionais.
+         * Deve ser calculada antes de ler o estado, para que uma alteração
+         * concorrente nunca fique escondida atrás de uma ETag antiga.
+         * @return ETag entre aspas, ou null se o handler não suporta
+         */
+        protected String calcularETag(HttpExchange exchange) {
+            return null;
+        }
+        
+        /**
+         * Define os cabeçalhos de cache do recurso (ETag, Last-Modified e
+         * Cache-Control) e responde 304 se a requisição condicional indica
+         * que o cliente já tem essa versão. If-None-Match tem precedência;
+         * If-Modified-Since só é considerado sem ele.
+         * @param alteradoEm Instante da última alteração (ms); 0 omite Last-Modified
+         * @return true se respondeu 304 (o handler deve retornar {@link #RESPOSTA_ENVIADA})
+         */
+        protected boolean responderSeNaoModificado(HttpExchange exchange, String etag, long alteradoEm)
+                throws IOException {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", CACHE_CONTROL);
+            if (alteradoEm > 0) {
+                exchange.getResponseHeaders().set("Last-Modified", DATA_HTTP.format(Instant.ofEpochMilli(alteradoEm)));
+            }
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            boolean naoModificado;
+            if (ifNoneMatch == null) {
+                naoModificado = alteradoEm > 0
+                        && naoModificadoDesde(exchange.getRequestHeaders().getFirst("If-Modified-Since"), alteradoEm);
+            } else if (aceitaGzip(exchange) && etagCorresponde(ifNoneMatch, etagGzip(etag))) {
+                // Cliente tem a variante gzip da mesma versão: o 304 confirma essa variante
+                exchange.getResponseHeaders().set("ETag", etagGzip(etag));
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                naoModificado = true;
+            } else {
+                naoModificado = etagCorresponde(ifNoneMatch, etag);
+            }
+            if (!naoModificado) {
+                return false;
+            }
+            // O HttpServer não drena o corpo da requisição em respostas sem corpo e,
+            // com o corpo não lido, fecha a conexão: fechá-lo antes mantém o keep-alive
+            exchange.getRequestBody().close();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return true;
+        }
+        
+        /**
+         * Se If-Modified-Since é igual ou posterior à última alteração
+         * (Last-Modified tem resolução de segundos). Data inválida é ignorada.
+         */
+        private boolean naoModificadoDesde(String ifModifiedSince, long alteradoEm) {
+            if (ifModifiedSince == null) {
+                return false;
+            }
+            try {
+                long desde = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toEpochSecond();
+                return alteradoEm / 1000 <= desde;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        
+        /**
+         * Verifica se o cabeçalho If-None-Match contém a ETag atual.
+         */
+        private boolean etagCorresponde(String ifNoneMatch, String etag) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            if ("*".equals(ifNoneMatch.trim())) {
+                return true;
+            }
+            for (String candidata : ifNoneMatch.split(",")) {
+                String valor = candidata.trim();
+                if (valor.startsWith("W/")) {
+                    valor = valor.substring(2);
+                }
+                if (valor.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private boolean aceitaGzip(HttpExchange exchange) {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        }
+        
+        /**
+         * ETag da variante gzip: a ETag da versão com o sufixo {@code -gz}.
+         */
+        private String etagGzip(String etag) {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+        
+        private void registrarBytes(int bytes) {
+            metricas.bytes.registrar(bytes);
+            CONTEXTO.get().bytes = bytes;
         }
         
         protected void enviarResposta(HttpExchange exchange, int statusCode, byte[] response) throws IOException {
+            registrarBytes(response != null ? response.length : 0);
+            long inicioEnvio = rastreios.marcar();
             exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
             exchange.sendResponseHeaders(statusCode, response != null ? response.length : 0);
             
@@ -177,9 +549,12 @@ public class ServidorRemotoAPI {
                 }
             }
             exchange.close();
+            registrarEtapa(Etapa.ENVIO, inicioEnvio);
         }
         
         protected void enviarRespostaJson(HttpExchange exchange, int statusCode, byte[] response) throws IOException {
+            registrarBytes(response != null ? response.length : 0);
+            long inicioEnvio = rastreios.marcar();
             exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
             exchange.sendResponseHeaders(statusCode, response != null ? response.length : 0);
             
@@ -189,122 +564,288 @@ public class ServidorRemotoAPI {
                 }
             }
             exchange.close();
+            registrarEtapa(Etapa.ENVIO, inicioEnvio);
         }
         
-        protected void enviarErroJson(HttpExchange exchange, int statusCode, String mensagem) throws IOException {
-            // Cria objeto JSON de erro
-            String jsonError = "{\"erro\":\"" + escapeJson(mensagem) + "\",\"codigo\":" + statusCode + "}";
-            byte[] errorBytes = jsonError.getBytes("UTF-8");
+        protected void enviarRespostaJson(HttpExchange exchange, int statusCode, SaidaJson corpo) throws IOException {
+            registrarBytes(corpo.tamanho());
+            long inicioEnvio = rastreios.marcar();
             exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-            exchange.sendResponseHeaders(statusCode, errorBytes.length);
+            exchange.sendResponseHeaders(statusCode, corpo.tamanho());
+            try (OutputStream os = exchange.getResponseBody()) {
+                corpo.escreverPara(os);
+            }
+            exchange.close();
+            registrarEtapa(Etapa.ENVIO, inicioEnvio);
+        }
+        
+        /**
+         * Envia uma resposta que não é JSON (ex.: texto das métricas).
+         * O handler deve então retornar {@link #RESPOSTA_ENVIADA}.
+         */
+        protected void enviarRespostaTexto(HttpExchange exchange, String contentType, byte[] corpo) throws IOException {
+            registrarBytes(corpo.length);
+            long inicioEnvio = rastreios.marcar();
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, corpo.length);
             try (OutputStream os = exchange.getResponseBody()) {
-                os.write(errorBytes);
+                os.write(corpo);
             }
             exchange.close();
+            registrarEtapa(Etapa.ENVIO, inicioEnvio);
         }
         
-        private String escapeJson(String str) {
-            if (str == null) return "";
-            return str.replace("\\", "\\\\")
-                     .replace("\"", "\\\"")
-                     .replace("\n", "\\n")
-                     .replace("\r", "\\r")
-                     .replace("\t", "\\t");
+        /**
+         * Envia uma resposta pré-codificada, usando a variante gzip quando
+         * o cliente a aceita.
+         */
+        protected void enviarRespostaCacheada(HttpExchange exchange, CacheRespostas.Resposta resposta) throws IOException {
+            byte[] corpo;
+            if (aceitaGzip(exchange)) {
+                corpo = resposta.getGzip();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                // ETag forte identifica os bytes: a variante gzip tem a sua
+                String etag = exchange.getResponseHeaders().getFirst("ETag");
+                if (etag != null) {
+                    exchange.getResponseHeaders().set("ETag", etagGzip(etag));
+                }
+            } else {
+                corpo = resposta.getJson();
+            }
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            enviarRespostaJson(exchange, 200, corpo);
         }
         
-        protected byte[] lerCorpoRequisicao(HttpExchange exchange) throws IOException {
-            try (InputStream is = exchange.getRequestBody()) {
-                return lerTodosBytes(is);
+        protected void enviarErroJson(HttpExchange exchange, int statusCode, String mensagem) throws IOException {
+            // Cria objeto JSON de erro: {"erro":"...","codigo":404}
+            SaidaJson saida = SaidaJson.daThread();
+            try {
+                saida.bruto(CAMPO_ERRO);
+                saida.texto(mensagem != null ? mensagem : "");
+                saida.bruto(CAMPO_CODIGO);
+                saida.inteiro(statusCode);
+                saida.bruto('}');
+                enviarRespostaJson(exchange, statusCode, saida);
+            } finally {
+                saida.devolver();
             }
         }
         
         /**
-         * Lê o corpo da requisição e deserializa como JSON.
+         * Lê o corpo da requisição e deserializa como JSON, direto do fluxo
+         * (sem copiar o corpo inteiro para um byte[] ou String).
          * API REST aceita apenas JSON.
+         * @throws CorpoExcedidoException Corpo acima de {@link #CORPO_MAXIMO}
          */
         protected Object lerCorpoRequisicaoJson(HttpExchange exchange) throws IOException {
-            byte[] data = lerCorpoRequisicao(exchange);
-            if (data == null || data.length == 0) {
+            return lerCorpoRequisicaoJson(exchange, "application/json", false);
+        }
+        
+        /**
+         * @param tipoAceito Único Content-Type aceito
+         * @param tipoObrigatorio Se false, um corpo sem Content-Type é aceito
+         * @see #lerCorpoRequisicaoJson(HttpExchange)
+         */
+        protected Object lerCorpoRequisicaoJson(HttpExchange exchange, String tipoAceito, boolean tipoObrigatorio)
+                throws IOException {
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            boolean chunked = exchange.getRequestHeaders().getFirst("Transfer-Encoding") != null;
+            if (!chunked && (contentLength == null || "0".equals(contentLength.trim()))) {
                 return null;
             }
             
             // Verifica Content-Type
             String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
-            if (contentType != null) {
-                String contentTypeLower = contentType.toLowerCase().split(";")[0].trim();
-                if (!contentTypeLower.equals("application/json")) {
-                    throw new IOException("Content-Type deve ser application/json. Recebido: " + contentType);
+            if (contentType != null || tipoObrigatorio) {
+                String contentTypeLower = contentType != null ? contentType.toLowerCase().split(";")[0].trim() : null;
+                if (!tipoAceito.equals(contentTypeLower)) {
+                    throw new TipoConteudoException("Content-Type deve ser " + tipoAceito + ". Recebido: " + contentType);
                 }
             }
             
-            // Parseia como JSON
-            String jsonStr = new String(data, "UTF-8");
-            try {
-                return JsonParser.parse(jsonStr);
-            } catch (Exception e) {
+            // Leitura e parse intercalados: o tempo bloqueado em read() conta como leitura do corpo
+            long inicio = rastreios.marcar();
+            ContextoRequisicao contexto = CONTEXTO.get();
+            long etapasAnteriores = inicio != 0 ? contexto.rastreio.soma() : 0;
+            CorpoLimitado corpo = contexto.corpo.iniciar(exchange.getRequestBody(), CORPO_MAXIMO, inicio != 0);
+            try (InputStream is = corpo) {
+                return JsonParser.parse(is);
+            } catch (IllegalArgumentException e) {
                 throw new IOException("JSON inválido: " + e.getMessage(), e);
+            } finally {
+                if (inicio != 0) {
+                    RastreioRequisicoes.Rastreio rastreio = contexto.rastreio;
+                    rastreio.somar(Etapa.LEITURA_CORPO, corpo.getNanosLeitura());
+                    rastreio.registrarExclusivo(Etapa.PARSE_JSON, inicio, etapasAnteriores);
+                }
             }
         }
         
         /**
-         * Lê todos os bytes de um InputStream (compatível com Java 8+).
+         * Parâmetro do caminho da rota atendida (ex.: {id} em /api/x/{id}).
+         * @return null se a rota não tem o parâmetro
+         */
+        protected String parametroRota(String nome) {
+            return CONTEXTO.get().rota.parametro(nome);
+        }
+        
+        /**
+         * Lê os parâmetros da query string (?chave=valor&...).
          */
-        private byte[] lerTodosBytes(InputStream is) throws IOException {
-            java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
-            byte[] data = new byte[1024];
-            int nRead;
-            while ((nRead = is.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
+        protected Map<String, String> lerParametrosConsulta(HttpExchange exchange) throws IOException {
+            Map<String, String> parametros = new LinkedHashMap<>();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query == null || query.isEmpty()) {
+                return parametros;
+            }
+            for (String par : query.split("&")) {
+                if (par.isEmpty()) {
+                    continue;
+                }
+                int igual = par.indexOf('=');
+                String chave = igual >= 0 ? par.substring(0, igual) : par;
+                String valor = igual >= 0 ? par.substring(igual + 1) : "";
+                parametros.put(URLDecoder.decode(chave, "UTF-8"), URLDecoder.decode(valor, "UTF-8"));
             }
-            return buffer.toByteArray();
+            return parametros;
+        }
+    }
+    
+    /**
+     * Retorna a resposta codificada da chave, recodificando apenas se a
+     * versão mudou desde a última codificação.
+     * @param versao Versão lida antes de consultar o estado
+     * @param carregar Obtém o objeto a ser serializado (chamado só em falha)
+     */
+    private CacheRespostas.Resposta respostaCacheada(String chave, long versao, Supplier<Object> carregar)
+            throws IOException {
+        CacheRespostas.Resposta resposta = cacheRespostas.obter(chave, versao);
+        if (resposta == null) {
+            Object valor = carregar.get();
+            long inicio = rastreios.marcar();
+            byte[] json = JsonConverter.toJsonBytes(valor);
+            registrarEtapa(Etapa.SERIALIZACAO, inicio);
+            resposta = cacheRespostas.armazenar(chave, versao, json);
+        }
+        return resposta;
+    }
+    
+    /**
+     * Soma ao rastreio da requisição atual o tempo da etapa iniciada em
+     * {@code inicio} (obtido de {@link RastreioRequisicoes#marcar()}).
+     */
+    private void registrarEtapa(Etapa etapa, long inicio) {
+        if (rastreios.isAtivo()) {
+            CONTEXTO.get().rastreio.registrar(etapa, inicio);
+        }
+    }
+    
+    /**
+     * Monta a ETag de uma coleção a partir de sua versão.
+     */
+    private String gerarETag(String colecao, long versao) {
+        return "\"" + colecao + "-" + epocaETag + "-" + versao + "\"";
+    }
+    
+    /**
+     * Cabeçalho If-Match que exige uma versão. "*" corresponde a qualquer
+     * versão do recurso existente (RFC 7232): como sem o cabeçalho, só um
+     * dispositivo inexistente resulta em 404.
+     * @return null se ausente ou "*"
+     */
+    private static String lerIfMatch(HttpExchange exchange) {
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        return ifMatch != null && !ifMatch.trim().equals("*") ? ifMatch : null;
+    }
+    
+    /**
+     * Extrai a versão do cabeçalho If-Match. Aceita a ETag enviada pelo
+     * servidor ("dispositivo-epoca-versao") ou o campo "versao" do JSON.
+     * Uma ETag de outra execução do servidor nunca corresponde.
+     * @see #lerIfMatch(HttpExchange)
+     */
+    private long lerVersaoIfMatch(String ifMatch) {
+        String valor = ifMatch.trim();
+        if (valor.startsWith("W/")) {
+            valor = valor.substring(2);
+        }
+        if (valor.length() >= 2 && valor.startsWith("\"") && valor.endsWith("\"")) {
+            valor = valor.substring(1, valor.length() - 1);
         }
+        String prefixo = "dispositivo-" + epocaETag + "-";
+        if (valor.startsWith("dispositivo-") && !valor.startsWith(prefixo)) {
+            return Long.MAX_VALUE;
+        }
+        long versao;
+        try {
+            versao = Long.parseLong(valor.startsWith(prefixo) ? valor.substring(prefixo.length()) : valor);
+        } catch (NumberFormatException e) {
+            versao = -1;
+        }
+        if (versao < 0) {
+            throw new IllegalArgumentException("Cabeçalho If-Match inválido: " + ifMatch);
+        }
+        return versao;
     }
     
     /**
      * Handler para listar dispositivos (GET /api/dispositivos)
      */
     private class DispositivosHandler extends BaseHandler {
+        @Override
+        protected String calcularETag(HttpExchange exchange) {
+            return gerarETag("dispositivos", smartHomeService.obterVersaoDispositivos());
+        }
+        
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"GET".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser GET");
-            }
-            return smartHomeService.listarDispositivos();
+            return respostaCacheada("dispositivos", smartHomeService.obterVersaoDispositivos(),
+                    smartHomeService::listarDispositivos);
         }
     }
     
     /**
-     * Handler para obter dispositivo (POST /api/dispositivos/obter)
+     * Handler para obter dispositivo: GET /api/dispositivos/{id}, com
+     * ETag, Last-Modified e GET condicional, ou POST /api/dispositivos/obter
+     * com o id como string JSON no corpo.
      */
     private class ObterDispositivoHandler extends BaseHandler {
+        private final boolean porCaminho;
+        
+        ObterDispositivoHandler(boolean porCaminho) {
+            this.porCaminho = porCaminho;
+        }
+        
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser POST");
-            }
-            
-            Object data = lerCorpoRequisicaoJson(exchange);
-            if (data == null) {
-                throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
-            }
-            
             String dispositivoId;
-            if (data instanceof String) {
-                dispositivoId = (String) data;
+            if (porCaminho) {
+                dispositivoId = parametroRota("id");
             } else {
-                dispositivoId = data.toString();
+                Object data = lerCorpoRequisicaoJson(exchange);
+                if (data == null) {
+                    throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
+                }
+                dispositivoId = data instanceof String ? (String) data : data.toString();
             }
             
             if (dispositivoId == null || dispositivoId.trim().isEmpty()) {
                 throw new IllegalArgumentException("ID do dispositivo não pode ser vazio");
             }
             
+            // Dispositivo publicado é imutável: versão, instante e corpo são do mesmo estado
             DispositivoIoT dispositivo = smartHomeService.obterDispositivo(dispositivoId);
             if (dispositivo == null) {
                 // 404 Not Found
                 throw new NotFoundException("Dispositivo não encontrado: " + dispositivoId);
             }
             
+            String etag = gerarETag("dispositivo", dispositivo.getVersao());
+            if (!porCaminho) {
+                exchange.getResponseHeaders().set("ETag", etag);
+            } else if (responderSeNaoModificado(exchange, etag, dispositivo.getAlteradoEm())) {
+                return RESPOSTA_ENVIADA;
+            }
             return dispositivo;
         }
     }
@@ -315,10 +856,6 @@ public class ServidorRemotoAPI {
     private class AtualizarDispositivoHandler extends BaseHandler {
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser POST");
-            }
-            
             // JSON array: [id, dispositivo]
             Object data = lerCorpoRequisicaoJson(exchange);
             if (data == null) {
@@ -346,178 +883,140 @@ public class ServidorRemotoAPI {
             }
             
             DispositivoIoT dispositivo = converterJsonParaDispositivo(dispositivoJson);
-            DispositivoIoT resultado = smartHomeService.atualizarDispositivo(id, dispositivo);
+            
+            // If-Match: atualização condicional à versão lida pelo cliente (409 se mudou)
+            String ifMatch = lerIfMatch(exchange);
+            DispositivoIoT resultado = ifMatch != null
+                    ? smartHomeService.atualizarDispositivo(id, dispositivo, lerVersaoIfMatch(ifMatch))
+                    : smartHomeService.atualizarDispositivo(id, dispositivo);
             
             if (resultado == null) {
                 // 404 Not Found
                 throw new NotFoundException("Dispositivo não encontrado: " + id);
             }
             
+            exchange.getResponseHeaders().set("ETag", gerarETag("dispositivo", resultado.getVersao()));
             return resultado;
         }
     }
     
     /**
-     * Converte um objeto JSON (Map) para Rotina.
+     * Handler para atualização parcial (PATCH ou POST /api/dispositivos/campos).
+     * Corpo: [id, {"campo": valor, ...}] - apenas os campos informados são alterados.
      */
-    @SuppressWarnings("unchecked")
-    private Rotina converterJsonParaRotina(Object jsonObj) throws IOException {
-        if (!(jsonObj instanceof Map)) {
-            throw new IOException("Esperado objeto JSON (Map) para converter em Rotina");
-        }
-        
-        Map<String, Object> map = (Map<String, Object>) jsonObj;
-        
-        String nome = getStringFromMap(map, "nome", "");
-        if (nome == null || nome.trim().isEmpty()) {
-            throw new IllegalArgumentException("Nome da rotina não pode ser vazio");
-        }
-        
-        // Converte ações
-        Object acoesObj = map.get("acoes");
-        List<Acao> acoes = new ArrayList<>();
-        if (acoesObj instanceof List) {
+    private class AtualizarCamposHandler extends BaseHandler {
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            Object data = lerCorpoRequisicaoJson(exchange);
+            if (data == null) {
+                throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
+            }
+            
+            if (!(data instanceof List)) {
+                throw new IllegalArgumentException("Esperado array JSON: [id, campos]");
+            }
+            
             @SuppressWarnings("unchecked")
-            List<Object> acoesList = (List<Object>) acoesObj;
-            for (Object acaoObj : acoesList) {
-                if (acaoObj instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> acaoMap = (Map<String, Object>) acaoObj;
-                    String dispositivoId = getStringFromMap(acaoMap, "dispositivoId", "");
-                    String comando = getStringFromMap(acaoMap, "comando", "");
-                    Map<String, Object> parametros = new HashMap<>();
-                    Object paramsObj = acaoMap.get("parametros");
-                    if (paramsObj instanceof Map) {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> params = (Map<String, Object>) paramsObj;
-                        parametros.putAll(params);
-                    }
-                    acoes.add(new Acao(dispositivoId, comando, parametros));
-                }
+            List<Object> args = (List<Object>) data;
+            if (args.size() < 2 || args.get(0) == null || !(args.get(1) instanceof Map)) {
+                throw new IllegalArgumentException("Array JSON deve conter [id, {campo: valor, ...}]");
             }
-        }
-        
-        // Converte horário
-        Object horarioObj = map.get("horarioInicio");
-        LocalDateTime horarioInicio = null;
-        if (horarioObj != null) {
-            if (horarioObj instanceof String) {
-                try {
-                    horarioInicio = LocalDateTime.parse((String) horarioObj);
-                } catch (Exception e) {
-                    // Se falhar, usa horário atual
-                    horarioInicio = LocalDateTime.now();
-                }
-            } else {
-                horarioInicio = LocalDateTime.now();
+            
+            String id = args.get(0).toString();
+            if (id.trim().isEmpty()) {
+                throw new IllegalArgumentException("ID do dispositivo não pode ser vazio");
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> campos = (Map<String, Object>) args.get(1);
+            if (campos.isEmpty()) {
+                throw new IllegalArgumentException("Nenhum campo informado");
+            }
+            
+            String ifMatch = lerIfMatch(exchange);
+            DispositivoIoT resultado = ifMatch != null
+                    ? smartHomeService.atualizarCampos(id, campos, lerVersaoIfMatch(ifMatch))
+                    : smartHomeService.atualizarCampos(id, campos);
+            
+            if (resultado == null) {
+                // 404 Not Found
+                throw new NotFoundException("Dispositivo não encontrado: " + id);
             }
-        } else {
-            horarioInicio = LocalDateTime.now();
+            
+            exchange.getResponseHeaders().set("ETag", gerarETag("dispositivo", resultado.getVersao()));
+            return resultado;
         }
-        
-        Rotina rotina = new Rotina(nome, acoes, horarioInicio);
-        
-        // ID é gerado automaticamente no construtor
-        // Se necessário, pode ser definido via reflection ou método setId se existir
-        
-        return rotina;
     }
     
     /**
-     * Converte um objeto JSON (Map) para DispositivoIoT.
+     * Handler para JSON merge patch (PATCH /api/dispositivos/{id}, RFC 7396,
+     * Content-Type application/merge-patch+json). Corpo: objeto JSON; cada
+     * membro altera o campo de mesmo nome e um membro null remove um campo
+     * opcional (descricao, comodo). Aceita If-Match.
      */
-    @SuppressWarnings("unchecked")
-    private DispositivoIoT converterJsonParaDispositivo(Object jsonObj) throws IOException {
-        if (!(jsonObj instanceof Map)) {
-            throw new IOException("Esperado objeto JSON (Map) para converter em DispositivoIoT");
-        }
-        
-        Map<String, Object> map = (Map<String, Object>) jsonObj;
-        
-        // Extrai campos comuns
-        String id = getStringFromMap(map, "id", null);
-        String nome = getStringFromMap(map, "nome", "");
-        String descricao = getStringFromMap(map, "descricao", null);
-        String comodo = getStringFromMap(map, "comodo", "");
-        boolean online = getBooleanFromMap(map, "online", false);
-        String tipo = getStringFromMap(map, "tipo", "Lampada");
-        
-        DispositivoIoT dispositivo;
-        
-        // Cria instância baseada no tipo
-        if ("Lampada".equals(tipo)) {
-            boolean ligada = getBooleanFromMap(map, "ligada", false);
-            int intensidade = getIntFromMap(map, "intensidade", 0);
-            int temperatura = getIntFromMap(map, "temperatura", 0);
-            dispositivo = new Lampada(nome, comodo, online, ligada, intensidade, temperatura);
-        } else if ("Termostato".equals(tipo)) {
-            double tempAtual = getDoubleFromMap(map, "temperaturaAtual", 0.0);
-            double tempDesejada = getDoubleFromMap(map, "temperaturaDesejada", 0.0);
-            boolean status = getBooleanFromMap(map, "status", false);
-            dispositivo = new Termostato(nome, comodo, status, tempAtual, tempDesejada);
-            dispositivo.setOnline(online);
-        } else if ("Sensor".equals(tipo)) {
-            String tipoSensor = getStringFromMap(map, "tipoSensor", "Desconhecido");
-            boolean unidadeMedida = getBooleanFromMap(map, "unidadeMedida", false);
-            double valor = getDoubleFromMap(map, "valor", 0.0);
-            dispositivo = new Sensor(nome, comodo, online, tipoSensor, unidadeMedida, valor);
-        } else {
-            // Fallback: cria Lampada
-            dispositivo = new Lampada(nome, comodo, online, false, 0, 0);
-        }
-        
-        // Define ID e descrição se fornecidos
-        if (id != null) {
-            dispositivo.setId(id);
-        }
-        if (descricao != null) {
-            dispositivo.setDescricao(descricao);
+    private class MergePatchDispositivoHandler extends BaseHandler {
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            Object data = lerCorpoRequisicaoJson(exchange, "application/merge-patch+json", true);
+            if (data == null) {
+                throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
+            }
+            
+            // Um patch que não é objeto substituiria o dispositivo inteiro (RFC 7396, seção 2)
+            if (!(data instanceof Map)) {
+                throw new IllegalArgumentException("Merge patch de dispositivo deve ser um objeto JSON");
+            }
+            
+            String id = parametroRota("id");
+            @SuppressWarnings("unchecked")
+            Map<String, Object> patch = (Map<String, Object>) data;
+            String ifMatch = lerIfMatch(exchange);
+            DispositivoIoT resultado = ifMatch != null
+                    ? smartHomeService.aplicarMergePatch(id, patch, lerVersaoIfMatch(ifMatch))
+                    : smartHomeService.aplicarMergePatch(id, patch);
+            
+            if (resultado == null) {
+                // 404 Not Found
+                throw new NotFoundException("Dispositivo não encontrado: " + id);
+            }
+            
+            exchange.getResponseHeaders().set("ETag", gerarETag("dispositivo", resultado.getVersao()));
+            return resultado;
         }
-        
-        return dispositivo;
-    }
-    
-    // Métodos auxiliares para extrair valores do Map
-    private String getStringFromMap(Map<String, Object> map, String key, String defaultValue) {
-        Object value = map.get(key);
-        if (value == null) return defaultValue;
-        return value.toString();
-    }
-    
-    private boolean getBooleanFromMap(Map<String, Object> map, String key, boolean defaultValue) {
-        Object value = map.get(key);
-        if (value == null) return defaultValue;
-        if (value instanceof Boolean) return (Boolean) value;
-        if (value instanceof String) return Boolean.parseBoolean((String) value);
-        return defaultValue;
     }
     
-    private int getIntFromMap(Map<String, Object> map, String key, int defaultValue) {
-        Object value = map.get(key);
-        if (value == null) return defaultValue;
-        if (value instanceof Number) return ((Number) value).intValue();
-        if (value instanceof String) {
-            try {
-                return Integer.parseInt((String) value);
-            } catch (NumberFormatException e) {
-                return defaultValue;
-            }
+    /**
+     * Converte um objeto JSON (Map) para Rotina.
+     */
+    @SuppressWarnings("unchecked")
+    private Rotina converterJsonParaRotina(Object jsonObj) throws IOException {
+        if (!(jsonObj instanceof Map)) {
+            throw new IOException("Esperado objeto JSON (Map) para converter em Rotina");
+        }
+        // ID é gerado automaticamente no construtor
+        long inicio = rastreios.marcar();
+        try {
+            return RegistroCodecs.ler(Rotina.class, (Map<String, Object>) jsonObj);
+        } finally {
+            registrarEtapa(Etapa.CONVERSAO, inicio);
         }
-        return defaultValue;
     }
     
-    private double getDoubleFromMap(Map<String, Object> map, String key, double defaultValue) {
-        Object value = map.get(key);
-        if (value == null) return defaultValue;
-        if (value instanceof Number) return ((Number) value).doubleValue();
-        if (value instanceof String) {
-            try {
-                return Double.parseDouble((String) value);
-            } catch (NumberFormatException e) {
-                return defaultValue;
-            }
+    /**
+     * Converte um objeto JSON (Map) para DispositivoIoT.
+     * O tipo concreto é escolhido pelo campo "tipo" no registro de codecs.
+     */
+    @SuppressWarnings("unchecked")
+    private DispositivoIoT converterJsonParaDispositivo(Object jsonObj) throws IOException {
+        if (!(jsonObj instanceof Map)) {
+            throw new IOException("Esperado objeto JSON (Map) para converter em DispositivoIoT");
+        }
+        long inicio = rastreios.marcar();
+        try {
+            return RegistroCodecs.lerDispositivo((Map<String, Object>) jsonObj);
+        } finally {
+            registrarEtapa(Etapa.CONVERSAO, inicio);
         }
-        return defaultValue;
     }
     
     /**
@@ -526,39 +1025,46 @@ public class ServidorRemotoAPI {
     private class ExecutarAcaoHandler extends BaseHandler {
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser POST");
-            }
-            
-            // JSON array: [deviceId, comando]
+            // JSON array: [deviceId, comando] ou [deviceId, comando, {parametros}]
             Object data = lerCorpoRequisicaoJson(exchange);
             if (data == null) {
                 throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
             }
             
             if (!(data instanceof List)) {
-                throw new IllegalArgumentException("Esperado array JSON: [deviceId, comando]");
+                throw new IllegalArgumentException("Esperado array JSON: [deviceId, comando, {parametros}]");
             }
             
             @SuppressWarnings("unchecked")
             List<Object> args = (List<Object>) data;
-            if (args.size() < 2) {
+            if (args.size() < 2 || args.get(0) == null || args.get(1) == null) {
                 throw new IllegalArgumentException("Array JSON deve conter [deviceId, comando]");
             }
             
             String deviceId = args.get(0).toString();
             String comando = args.get(1).toString();
             
-            if (deviceId == null || deviceId.trim().isEmpty()) {
+            if (deviceId.trim().isEmpty()) {
                 throw new IllegalArgumentException("ID do dispositivo não pode ser vazio");
             }
-            if (comando == null || comando.trim().isEmpty()) {
+            if (comando.trim().isEmpty()) {
                 throw new IllegalArgumentException("Comando não pode ser vazio");
             }
             
-            DispositivoIoT resultado = smartHomeService.executarAcao(deviceId, comando);
+            Map<String, Object> parametros = null;
+            if (args.size() > 2 && args.get(2) != null) {
+                if (!(args.get(2) instanceof Map)) {
+                    throw new IllegalArgumentException("Parâmetros do comando devem ser um objeto JSON");
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> valores = (Map<String, Object>) args.get(2);
+                parametros = valores;
+            }
+            
+            DispositivoIoT resultado = smartHomeService.executarAcao(deviceId, comando, parametros);
             if (resultado == null) {
-                throw new IOException("Dispositivo não encontrado: " + deviceId);
+                // 404 Not Found
+                throw new NotFoundException("Dispositivo não encontrado: " + deviceId);
             }
             
             return resultado;
@@ -569,12 +1075,15 @@ public class ServidorRemotoAPI {
      * Handler para listar rotinas (GET /api/rotinas)
      */
     private class RotinasHandler extends BaseHandler {
+        @Override
+        protected String calcularETag(HttpExchange exchange) {
+            return gerarETag("rotinas", smartHomeService.obterVersaoRotinas());
+        }
+        
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"GET".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser GET");
-            }
-            return smartHomeService.listarRotinas();
+            return respostaCacheada("rotinas", smartHomeService.obterVersaoRotinas(),
+                    smartHomeService::listarRotinas);
         }
     }
     
@@ -584,10 +1093,6 @@ public class ServidorRemotoAPI {
     private class CriarRotinaHandler extends BaseHandler {
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser POST");
-            }
-            
             // JSON: objeto Rotina
             Object data = lerCorpoRequisicaoJson(exchange);
             if (data == null) {
@@ -607,51 +1112,426 @@ public class ServidorRemotoAPI {
     }
     
     /**
-     * Handler para listar alertas (GET /api/alertas)
+     * Handler para executar rotina (POST /api/rotinas/executar)
      */
-    private class AlertasHandler extends BaseHandler {
+    private class ExecutarRotinaHandler extends BaseHandler {
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"GET".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser GET");
+            // JSON: ID da rotina (string)
+            Object data = lerCorpoRequisicaoJson(exchange);
+            if (data == null) {
+                throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
+            }
+            
+            String rotinaId = data.toString();
+            List<DispositivoIoT> resultado = smartHomeService.executarRotina(rotinaId);
+            if (resultado == null) {
+                // 404 Not Found
+                throw new NotFoundException("Rotina não encontrada: " + rotinaId);
             }
-            return smartHomeService.listarAlertas();
+            
+            return resultado;
         }
     }
     
     /**
-     * Handler para obter cômodo (POST /api/comodos/obter)
+     * Handler para listar alertas (GET /api/alertas).
+     * Filtros opcionais: ?comodo=Nome&desde=2024-01-01T00:00:00Z&ate=...
      */
-    private class ObterComodoHandler extends BaseHandler {
+    private class AlertasHandler extends BaseHandler {
+        @Override
+        protected String calcularETag(HttpExchange exchange) {
+            return gerarETag("alertas", smartHomeService.obterVersaoAlertas());
+        }
+        
         @Override
         protected Object processarRequest(HttpExchange exchange) throws IOException {
-            if (!"POST".equals(exchange.getRequestMethod())) {
-                throw new IllegalArgumentException("Método deve ser POST");
+            Map<String, String> parametros = lerParametrosConsulta(exchange);
+            if (parametros.isEmpty()) {
+                return respostaCacheada("alertas", smartHomeService.obterVersaoAlertas(),
+                        smartHomeService::listarAlertas);
             }
             
-            Object data = lerCorpoRequisicaoJson(exchange);
-            if (data == null) {
-                throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
+            // Consultas filtradas não passam pelo cache de respostas
+            Instant desde = lerInstante(parametros, "desde");
+            Instant ate = lerInstante(parametros, "ate");
+            String comodo = parametros.get("comodo");
+            if (comodo != null) {
+                return smartHomeService.listarAlertasPorComodo(comodo, desde, ate);
             }
-            
+            return smartHomeService.listarAlertasPorPeriodo(desde, ate);
+        }
+        
+        private Instant lerInstante(Map<String, String> parametros, String nome) {
+            String valor = parametros.get(nome);
+            if (valor == null || valor.isEmpty()) {
+                return null;
+            }
+            try {
+                return Instant.parse(valor);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Parâmetro '" + nome + "' deve ser um instante ISO-8601: " + valor);
+            }
+        }
+    }
+    
+    /**
+     * Handler para obter cômodo: GET /api/comodos/{nome}, com ETag,
+     * Last-Modified e GET condicional, ou POST /api/comodos/obter com o
+     * nome como string JSON no corpo.
+     */
+    private class ObterComodoHandler extends BaseHandler {
+        private final boolean porCaminho;
+        
+        ObterComodoHandler(boolean porCaminho) {
+            this.porCaminho = porCaminho;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
             String nomeComodo;
-            if (data instanceof String) {
-                nomeComodo = (String) data;
+            if (porCaminho) {
+                nomeComodo = parametroRota("nome");
             } else {
-                nomeComodo = data.toString();
+                Object data = lerCorpoRequisicaoJson(exchange);
+                if (data == null) {
+                    throw new IllegalArgumentException("Corpo da requisição não pode ser vazio");
+                }
+                nomeComodo = data instanceof String ? (String) data : data.toString();
             }
             
             if (nomeComodo == null || nomeComodo.trim().isEmpty()) {
                 throw new IllegalArgumentException("Nome do cômodo não pode ser vazio");
             }
             
+            // Cômodo publicado é imutável: versão, instante e corpo são do mesmo retrato
             Comodo comodo = smartHomeService.obterComodo(nomeComodo);
             if (comodo == null) {
                 // 404 Not Found
                 throw new NotFoundException("Cômodo não encontrado: " + nomeComodo);
             }
             
-            return comodo;
+            if (porCaminho && responderSeNaoModificado(exchange, gerarETag("comodo", comodo.getVersao()),
+                    comodo.getAlteradoEm())) {
+                return RESPOSTA_ENVIADA;
+            }
+            return respostaCacheada("comodo:" + nomeComodo, comodo.getVersao(), () -> comodo);
+        }
+    }
+    
+    /**
+     * Handler para comandos em lote (POST /api/comodos/acao e /api/grupos/acao)
+     */
+    private class AcaoEmLoteHandler extends BaseHandler {
+        private final boolean grupo;
+        
+        AcaoEmLoteHandler(boolean grupo) {
+            this.grupo = grupo;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            // JSON array: [alvo, comando, {parametros}, tipo] (os dois últimos opcionais)
+            Object data = lerCorpoRequisicaoJson(exchange);
+            if (!(data instanceof List)) {
+                throw new IllegalArgumentException("Esperado array JSON: [alvo, comando, {parametros}, tipo]");
+            }
+            
+            @SuppressWarnings("unchecked")
+            List<Object> args = (List<Object>) data;
+            if (args.size() < 2 || args.get(0) == null || args.get(1) == null) {
+                throw new IllegalArgumentException("Array JSON deve conter [alvo, comando]");
+            }
+            
+            String alvo = args.get(0).toString();
+            String comando = args.get(1).toString();
+            if (comando.trim().isEmpty()) {
+                throw new IllegalArgumentException("Comando não pode ser vazio");
+            }
+            
+            Map<String, Object> parametros = null;
+            if (args.size() > 2 && args.get(2) != null) {
+                if (!(args.get(2) instanceof Map)) {
+                    throw new IllegalArgumentException("Parâmetros do comando devem ser um objeto JSON");
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> valores = (Map<String, Object>) args.get(2);
+                parametros = valores;
+            }
+            String tipo = args.size() > 3 && args.get(3) != null ? args.get(3).toString() : null;
+            
+            ResultadoLote resultado = grupo
+                    ? smartHomeService.executarAcaoGrupo(alvo, tipo, comando, parametros)
+                    : smartHomeService.executarAcaoComodo(alvo, tipo, comando, parametros);
+            if (resultado == null) {
+                // 404 Not Found
+                throw new NotFoundException((grupo ? "Grupo" : "Cômodo") + " não encontrado: " + alvo);
+            }
+            
+            return resultado;
+        }
+    }
+    
+    /**
+     * Handler para listar grupos (GET /api/grupos)
+     */
+    private class GruposHandler extends BaseHandler {
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            return smartHomeService.listarGrupos();
+        }
+    }
+    
+    /**
+     * Handler para definir grupo (POST /api/grupos/definir)
+     */
+    private class DefinirGrupoHandler extends BaseHandler {
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            // JSON array: [nome, [ids]]
+            Object data = lerCorpoRequisicaoJson(exchange);
+            if (!(data instanceof List)) {
+                throw new IllegalArgumentException("Esperado array JSON: [nome, [ids]]");
+            }
+            
+            @SuppressWarnings("unchecked")
+            List<Object> args = (List<Object>) data;
+            if (args.size() < 2 || args.get(0) == null || !(args.get(1) instanceof List)) {
+                throw new IllegalArgumentException("Array JSON deve conter [nome, [ids]]");
+            }
+            
+            List<String> ids = new ArrayList<>();
+            for (Object id : (List<?>) args.get(1)) {
+                ids.add(String.valueOf(id));
+            }
+            return smartHomeService.definirGrupo(args.get(0).toString(), ids);
+        }
+    }
+    
+    /**
+     * Séries de métricas de um endpoint, obtidas uma vez do registro para que
+     * cada requisição só faça incrementos.
+     */
+    private static final class MetricasEndpoint {
+        final String rota;
+        final Medidor emAndamento;
+        final Histograma latencia;
+        final Histograma serializacao;
+        final Histograma bytes;
+        // Requisições por classe de status (índice = status / 100)
+        private final Contador[] porStatus = new Contador[6];
+        
+        MetricasEndpoint(String rota) {
+            this.rota = rota;
+            this.emAndamento = RegistroMetricas.medidor("smarthome_http_requisicoes_em_andamento",
+                    "Requisições sendo processadas", "rota", rota);
+            this.latencia = RegistroMetricas.histogramaTempo("smarthome_http_latencia_segundos",
+                    "Tempo de atendimento das requisições", "rota", rota);
+            this.serializacao = RegistroMetricas.histogramaTempo("smarthome_http_serializacao_segundos",
+                    "Tempo de serialização JSON das respostas (não inclui respostas em cache)", "rota", rota);
+            this.bytes = RegistroMetricas.histograma("smarthome_http_resposta_bytes",
+                    "Tamanho do corpo das respostas", "rota", rota);
+        }
+        
+        void contarStatus(int status) {
+            int classe = status >= 100 && status < 600 ? status / 100 : 0;
+            Contador contador = porStatus[classe];
+            if (contador == null) {
+                // Corrida benigna: o registro devolve a mesma série
+                contador = RegistroMetricas.contador("smarthome_http_requisicoes_total",
+                        "Requisições atendidas", "rota", rota,
+                        "status", classe == 0 ? "sem_resposta" : classe + "xx");
+                porStatus[classe] = contador;
+            }
+            contador.incrementar();
+        }
+    }
+    
+    private void registrarMetricasCache() {
+        RegistroMetricas.medidor("smarthome_cache_respostas_acertos", "Leituras atendidas pelo cache de respostas",
+                cacheRespostas::getAcertos);
+        RegistroMetricas.medidor("smarthome_cache_respostas_falhas", "Leituras que recodificaram a resposta",
+                cacheRespostas::getFalhas);
+        RegistroMetricas.medidor("smarthome_cache_respostas_entradas", "Entradas no cache de respostas",
+                cacheRespostas::getTamanho);
+    }
+    
+    /**
+     * Handler de métricas (GET /api/metricas), no formato de texto do Prometheus
+     */
+    private class MetricasHandler extends BaseHandler {
+        @Override
+        protected boolean exigeServico() {
+            return false;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            byte[] corpo = RegistroMetricas.exportar().getBytes("UTF-8");
+            enviarRespostaTexto(exchange, "text/plain; version=0.0.4; charset=UTF-8", corpo);
+            return RESPOSTA_ENVIADA;
+        }
+    }
+    
+    /**
+     * Handler das requisições mais lentas (GET /api/rastreios?n=10), com o
+     * tempo de cada etapa. Vazio se o rastreamento está desligado.
+     */
+    private class RastreiosHandler extends BaseHandler {
+        @Override
+        protected boolean exigeServico() {
+            return false;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            String n = lerParametrosConsulta(exchange).get("n");
+            int limite;
+            try {
+                limite = n != null ? Integer.parseInt(n) : 10;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Parâmetro 'n' deve ser inteiro: " + n);
+            }
+            if (limite <= 0) {
+                throw new IllegalArgumentException("Parâmetro 'n' deve ser positivo: " + n);
+            }
+            
+            List<Object> amostras = new ArrayList<>();
+            for (RastreioRequisicoes.Amostra amostra : rastreios.listarMaisLentas(limite)) {
+                amostras.add(amostra.paraMapa());
+            }
+            Map<String, Object> resposta = new LinkedHashMap<>();
+            resposta.put("ativo", rastreios.isAtivo());
+            resposta.put("limiarMs", rastreios.getLimiarMs());
+            resposta.put("rastreios", amostras);
+            return resposta;
+        }
+    }
+    
+    /**
+     * Handler de saúde. GET /api/saude responde 200 enquanto o processo está
+     * no ar (liveness); GET /api/saude/pronto responde 503 até o serviço
+     * ficar pronto (readiness). Ambos trazem os marcos da inicialização em
+     * ms desde o início do processo.
+     */
+    private class SaudeHandler extends BaseHandler {
+        private final boolean prontidao;
+        
+        SaudeHandler(boolean prontidao) {
+            this.prontidao = prontidao;
+        }
+        
+        @Override
+        protected boolean exigeServico() {
+            return prontidao;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            Map<String, Object> resposta = new LinkedHashMap<>();
+            resposta.put("status", smartHomeService != null ? "pronto"
+                    : falhaInicializacao != null ? "falha" : "iniciando");
+            resposta.put("portaAbertaMs", portaAberta - InicioProcesso.MS);
+            resposta.put("servicoProntoMs", servicoPronto != 0 ? servicoPronto - InicioProcesso.MS : null);
+            resposta.put("primeiraRespostaMs", primeiraResposta != 0 ? primeiraResposta - InicioProcesso.MS : null);
+            resposta.put("ativoHaMs", System.currentTimeMillis() - InicioProcesso.MS);
+            return resposta;
+        }
+    }
+    
+    private static String cacheControl(long maxAgeSegundos) {
+        return maxAgeSegundos > 0 ? "max-age=" + maxAgeSegundos : "no-cache";
+    }
+    
+    private static boolean excedeCorpoMaximo(String contentLength) {
+        try {
+            return Long.parseLong(contentLength.trim()) > CORPO_MAXIMO;
+        } catch (NumberFormatException e) {
+            // Cabeçalho inválido: o HttpServer já rejeita a requisição
+            return false;
+        }
+    }
+    
+    /**
+     * Corpo da requisição com limite de tamanho, verificado durante a
+     * leitura (vale também para corpos chunked, sem Content-Length).
+     * Uma instância por thread, reiniciada a cada requisição.
+     */
+    private static final class CorpoLimitado extends FilterInputStream {
+        private long limite;
+        private boolean medirTempo;
+        private long lidos;
+        private long nanosLeitura;
+        
+        CorpoLimitado() {
+            super(null);
+        }
+        
+        CorpoLimitado iniciar(InputStream entrada, long limite, boolean medirTempo) {
+            this.in = entrada;
+            this.limite = limite;
+            this.medirTempo = medirTempo;
+            this.lidos = 0;
+            this.nanosLeitura = 0;
+            return this;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0 && ++lidos > limite) {
+                throw new CorpoExcedidoException("Corpo da requisição acima de " + limite + " bytes");
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long inicio = medirTempo ? System.nanoTime() : 0;
+            // Lê um byte além do limite para distinguir "exatamente no limite" de "acima"
+            int n = in.read(b, off, (int) Math.min(len, limite - lidos + 1));
+            if (medirTempo) {
+                nanosLeitura += System.nanoTime() - inicio;
+            }
+            if (n > 0) {
+                lidos += n;
+                if (lidos > limite) {
+                    throw new CorpoExcedidoException("Corpo da requisição acima de " + limite + " bytes");
+                }
+            }
+            return n;
+        }
+        
+        long getNanosLeitura() {
+            return nanosLeitura;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            // Solta o fluxo da requisição: a instância fica na thread
+            InputStream entrada = in;
+            in = null;
+            if (entrada != null) {
+                entrada.close();
+            }
+        }
+    }
+    
+    /**
+     * Corpo da requisição maior que o permitido (413).
+     */
+    private static class CorpoExcedidoException extends IOException {
+        public CorpoExcedidoException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * Content-Type do corpo não aceito pela rota (415).
+     */
+    private static class TipoConteudoException extends IOException {
+        public TipoConteudoException(String message) {
+            super(message);
         }
     }
     
@@ -665,26 +1545,159 @@ public class ServidorRemotoAPI {
     }
     
     /**
-     * Handler para endpoint raiz
+     * Único handler registrado no HttpServer: encontra a rota do método e
+     * caminho na tabela (sem alocar) e repassa a requisição ao handler dela.
      */
-    private class RootHandler implements HttpHandler {
+    private final class Roteador implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String response = "Servidor Smart Home API - Serviço Remoto\n" +
-                            "Use os endpoints /api/* para acessar os serviços.";
-            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
-            exchange.sendResponseHeaders(200, response.getBytes("UTF-8").length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(response.getBytes("UTF-8"));
+            TabelaRotas.Correspondencia<BaseHandler> rota = CONTEXTO.get().rota;
+            BaseHandler handler = rotas.encontrar(exchange.getRequestMethod(),
+                    exchange.getRequestURI().getRawPath(), rota) ? rota.getDestino() : semRota;
+            handler.handle(exchange);
+        }
+    }
+    
+    /**
+     * Requisições sem rota: 405 com Allow se o caminho existe para outros
+     * métodos, senão 404.
+     */
+    private class SemRotaHandler extends BaseHandler {
+        SemRotaHandler() {
+            // Série única: caminhos desconhecidos não criam rótulos novos
+            super.metricas = new MetricasEndpoint("desconhecida");
+        }
+        
+        @Override
+        protected boolean exigeServico() {
+            return false;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            TabelaRotas.Correspondencia<BaseHandler> rota = CONTEXTO.get().rota;
+            if (rota.isCaminhoEncontrado()) {
+                exchange.getResponseHeaders().set("Allow", rota.getMetodosPermitidos());
+                enviarErroJson(exchange, 405, "Método não permitido: " + exchange.getRequestMethod());
+                return RESPOSTA_ENVIADA;
             }
-            exchange.close();
+            throw new NotFoundException("Rota não encontrada: " + exchange.getRequestURI().getPath());
         }
     }
     
+    /**
+     * Handler para endpoint raiz (GET /)
+     */
+    private class RootHandler extends BaseHandler {
+        private final byte[] corpo = ("Servidor Smart Home API - Serviço Remoto\n" +
+                "Use os endpoints /api/* para acessar os serviços.").getBytes(StandardCharsets.UTF_8);
+        
+        @Override
+        protected boolean exigeServico() {
+            return false;
+        }
+        
+        @Override
+        protected Object processarRequest(HttpExchange exchange) throws IOException {
+            enviarRespostaTexto(exchange, "text/plain; charset=UTF-8", corpo);
+            return RESPOSTA_ENVIADA;
+        }
+    }
+    
+    /**
+     * Exercita as rotas principais pela porta do próprio servidor, para que
+     * as classes do caminho de atendimento sejam carregadas (e gravadas no
+     * arquivo AppCDS quando a JVM roda com -XX:ArchiveClassesAtExit).
+     */
+    private void treinar() throws IOException, InterruptedException {
+        while (!isPronto()) {
+            if (falhaInicializacao != null) {
+                throw new IOException("Falha na inicialização do serviço", falhaInicializacao);
+            }
+            Thread.sleep(10);
+        }
+        List<String[]> requisicoes = new ArrayList<>();
+        requisicoes.add(new String[] {"GET", "/api/saude", null});
+        requisicoes.add(new String[] {"GET", "/api/saude/pronto", null});
+        requisicoes.add(new String[] {"GET", "/api/dispositivos", null});
+        requisicoes.add(new String[] {"GET", "/api/rotinas", null});
+        requisicoes.add(new String[] {"GET", "/api/alertas", null});
+        requisicoes.add(new String[] {"GET", "/api/grupos", null});
+        requisicoes.add(new String[] {"GET", "/api/metricas", null});
+        List<DispositivoIoT> dispositivos = smartHomeService.listarDispositivos();
+        if (!dispositivos.isEmpty()) {
+            DispositivoIoT dispositivo = dispositivos.get(0);
+            String id = JsonConverter.toJson(dispositivo.getId());
+            requisicoes.add(new String[] {"GET", "/api/dispositivos/" + caminhoCodificado(dispositivo.getId()), null});
+            requisicoes.add(new String[] {"POST", "/api/dispositivos/obter", id});
+            requisicoes.add(new String[] {"POST", "/api/dispositivos/acao", "[" + id + ",\"ligar\"]"});
+            requisicoes.add(new String[] {"GET", "/api/comodos/" + caminhoCodificado(dispositivo.getComodo()), null});
+            requisicoes.add(new String[] {"POST", "/api/comodos/obter", JsonConverter.toJson(dispositivo.getComodo())});
+            requisicoes.add(new String[] {"GET", "/api/alertas?comodo=" + URLEncoder.encode(dispositivo.getComodo(), "UTF-8"), null});
+        }
+        
+        long inicio = System.nanoTime();
+        for (String[] requisicao : requisicoes) {
+            int status = requisitarLocal(requisicao[0], requisicao[1], requisicao[2]);
+            if (status != 200) {
+                LOG.aviso("Treino: " + requisicao[0] + " " + requisicao[1] + " respondeu " + status);
+            }
+        }
+        LOG.info(String.format("Treino: %d requisições em %.1f ms", requisicoes.size(), (System.nanoTime() - inicio) / 1e6));
+    }
+    
+    /**
+     * Codifica um valor para um segmento de caminho (espaço vira %20, não '+').
+     */
+    private static String caminhoCodificado(String valor) throws IOException {
+        return URLEncoder.encode(valor, "UTF-8").replace("+", "%20");
+    }
+    
+    private int requisitarLocal(String metodo, String caminho, String corpo) throws IOException {
+        HttpURLConnection conexao = (HttpURLConnection) new URL("http://localhost:" + getPorta() + caminho).openConnection();
+        conexao.setRequestMethod(metodo);
+        if (corpo != null) {
+            byte[] bytes = corpo.getBytes("UTF-8");
+            conexao.setDoOutput(true);
+            conexao.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = conexao.getOutputStream()) {
+                os.write(bytes);
+            }
+        }
+        int status = conexao.getResponseCode();
+        InputStream entrada = status >= 400 ? conexao.getErrorStream() : conexao.getInputStream();
+        if (entrada != null) {
+            try (InputStream is = entrada) {
+                byte[] buffer = new byte[8192];
+                while (is.read(buffer) != -1) {
+                    // Descarta o corpo; só o caminho de atendimento interessa
+                }
+            }
+        }
+        return status;
+    }
+    
+    /**
+     * Uso: {@code java smarthome.net.ServidorRemotoAPI [--treinar]}.
+     * Com --treinar, sobe o servidor em uma porta livre, exercita as rotas
+     * principais e encerra (execução de treino para gerar o arquivo AppCDS).
+     */
     public static void main(String[] args) {
+        boolean treinar = args.length > 0 && "--treinar".equals(args[0]);
+        // Conexão que não conclui a requisição em 30 s é fechada: upload lento não prende a thread
+        if (System.getProperty("sun.net.httpserver.maxReqTime") == null) {
+            System.setProperty("sun.net.httpserver.maxReqTime", "30");
+        }
         try {
-            ServidorRemotoAPI servidor = new ServidorRemotoAPI();
+            ServidorRemotoAPI servidor = treinar
+                    ? new ServidorRemotoAPI(SmartHomeServiceImpl::new, 0)
+                    : new ServidorRemotoAPI();
             servidor.iniciar();
+            if (treinar) {
+                servidor.treinar();
+                servidor.parar();
+                return;
+            }
             
             // Mantém o servidor rodando
             System.out.println("Pressione Enter para parar o servidor...");
@@ -693,7 +1706,9 @@ public class ServidorRemotoAPI {
             servidor.parar();
         } catch (IOException e) {
             System.err.println("[ERRO] Falha ao iniciar servidor: " + e.getMessage());
-            e.printStackTrace();
+            LOG.erro("Falha ao iniciar servidor", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
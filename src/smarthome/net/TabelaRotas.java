@@ -0,0 +1,383 @@
+package smarthome.net;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tabela de rotas HTTP (método + caminho) montada uma vez na inicialização
+ * e consultada a cada requisição.
+ *
+ * Os padrões são divididos em segmentos e guardados em uma árvore: cada nó
+ * tem os filhos literais em uma tabela hash própria, no máximo um filho
+ * parâmetro ({@code {nome}}, casa com qualquer segmento) e o destino de
+ * cada método. Na busca, o hash de cada segmento é calculado sobre o
+ * próprio caminho e comparado com regionMatches, sem criar substrings;
+ * o resultado vai para uma {@link Correspondencia} reaproveitável, de modo
+ * que a busca não aloca. Literais têm precedência sobre parâmetros.
+ *
+ * Barras repetidas ou no fim do caminho são ignoradas. A tabela não é
+ * thread-safe para escrita: as rotas devem ser adicionadas antes das
+ * consultas concorrentes.
+ *
+ * @param <H> Tipo do destino (ex.: o handler da rota)
+ */
+public final class TabelaRotas<H> {
+
+    /** Parâmetros de caminho por rota. */
+    public static final int MAXIMO_PARAMETROS = 8;
+
+    // Métodos aceitos, na ordem do cabeçalho Allow
+    private static final String[] METODOS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"};
+
+    private final No<H> raiz = new No<>();
+    private final List<String> rotas = new ArrayList<>();
+
+    /**
+     * Rota registrada: padrão, destino e nomes dos parâmetros na ordem em
+     * que aparecem no caminho.
+     */
+    private static final class Rota<H> {
+        final String padrao;
+        final H destino;
+        final String[] parametros;
+
+        Rota(String padrao, H destino, String[] parametros) {
+            this.padrao = padrao;
+            this.destino = destino;
+            this.parametros = parametros;
+        }
+    }
+
+    private static final class No<H> {
+        // Filhos literais: endereçamento aberto com sondagem linear
+        String[] chaves = new String[4];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        No<H>[] filhos = new No[4];
+        int literais;
+        No<H> parametro;
+        // Destino por método (índice em METODOS); null se o caminho termina em outro nó
+        Rota<H>[] destinos;
+        String permitidos;
+
+        No<H> literal(String caminho, int inicio, int fim) {
+            int tamanho = fim - inicio;
+            int mascara = chaves.length - 1;
+            for (int i = indice(hash(caminho, inicio, fim), mascara); ; i = (i + 1) & mascara) {
+                String chave = chaves[i];
+                if (chave == null) {
+                    return null;
+                }
+                if (chave.length() == tamanho && caminho.regionMatches(inicio, chave, 0, tamanho)) {
+                    return filhos[i];
+                }
+            }
+        }
+
+        No<H> adicionarLiteral(String segmento) {
+            No<H> existente = literal(segmento, 0, segmento.length());
+            if (existente != null) {
+                return existente;
+            }
+            // Mantém a ocupação abaixo de 1/2: sondagens curtas e sempre há posição livre
+            if ((literais + 1) * 2 > chaves.length) {
+                redimensionar(chaves.length * 2);
+            }
+            No<H> filho = new No<>();
+            inserir(segmento, filho);
+            literais++;
+            return filho;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void redimensionar(int capacidade) {
+            String[] chavesAntigas = chaves;
+            No<H>[] filhosAntigos = filhos;
+            chaves = new String[capacidade];
+            filhos = new No[capacidade];
+            for (int i = 0; i < chavesAntigas.length; i++) {
+                if (chavesAntigas[i] != null) {
+                    inserir(chavesAntigas[i], filhosAntigos[i]);
+                }
+            }
+        }
+
+        private void inserir(String segmento, No<H> filho) {
+            int mascara = chaves.length - 1;
+            int i = indice(hash(segmento, 0, segmento.length()), mascara);
+            while (chaves[i] != null) {
+                i = (i + 1) & mascara;
+            }
+            chaves[i] = segmento;
+            filhos[i] = filho;
+        }
+    }
+
+    /**
+     * Resultado de uma busca, reaproveitado entre buscas (um por thread).
+     * Guarda só as posições dos parâmetros no caminho; o texto é extraído
+     * (e decodificado) quando o parâmetro é lido.
+     */
+    public static final class Correspondencia<H> {
+        private String caminho;
+        private Rota<H> rota;
+        private String permitidos;
+        private final int[] inicios = new int[MAXIMO_PARAMETROS];
+        private final int[] fins = new int[MAXIMO_PARAMETROS];
+
+        private void reiniciar(String caminho) {
+            this.caminho = caminho;
+            this.rota = null;
+            this.permitidos = null;
+        }
+
+        /**
+         * @return Destino da rota encontrada, ou null
+         */
+        public H getDestino() {
+            return rota != null ? rota.destino : null;
+        }
+
+        /**
+         * @return Padrão da rota encontrada (ex.: /api/dispositivos/{id}), ou null
+         */
+        public String getPadrao() {
+            return rota != null ? rota.padrao : null;
+        }
+
+        /**
+         * Se o caminho existe na tabela para algum método. Quando a busca
+         * falha com isto true, a resposta adequada é 405.
+         */
+        public boolean isCaminhoEncontrado() {
+            return permitidos != null;
+        }
+
+        /**
+         * @return Métodos aceitos no caminho, no formato do cabeçalho Allow; null se o caminho não existe
+         */
+        public String getMetodosPermitidos() {
+            return permitidos;
+        }
+
+        /**
+         * Valor de um parâmetro do caminho, com sequências %XX decodificadas (UTF-8).
+         * @return null se a rota não tem o parâmetro
+         * @throws IllegalArgumentException Sequência %XX inválida
+         */
+        public String parametro(String nome) {
+            if (rota == null) {
+                return null;
+            }
+            String[] nomes = rota.parametros;
+            for (int i = 0; i < nomes.length; i++) {
+                if (nomes[i].equals(nome)) {
+                    return decodificar(caminho, inicios[i], fins[i]);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Adiciona uma rota.
+     * @param metodo Método HTTP (GET, HEAD, POST, PUT, PATCH, DELETE ou OPTIONS)
+     * @param padrao Caminho iniciado por '/'; segmentos {nome} são parâmetros
+     * @throws IllegalArgumentException Método desconhecido, padrão inválido ou rota repetida
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void adicionar(String metodo, String padrao, H destino) {
+        int indiceMetodo = indiceMetodo(metodo);
+        if (indiceMetodo < 0) {
+            throw new IllegalArgumentException("Método HTTP não suportado: " + metodo);
+        }
+        if (padrao == null || !padrao.startsWith("/")) {
+            throw new IllegalArgumentException("Padrão de rota deve começar com '/': " + padrao);
+        }
+        if (destino == null) {
+            throw new IllegalArgumentException("Destino da rota não pode ser null");
+        }
+
+        No<H> no = raiz;
+        List<String> parametros = new ArrayList<>();
+        for (String segmento : padrao.split("/")) {
+            if (segmento.isEmpty()) {
+                continue;
+            }
+            if (segmento.startsWith("{") && segmento.endsWith("}")) {
+                String nome = segmento.substring(1, segmento.length() - 1);
+                if (nome.isEmpty() || parametros.contains(nome)) {
+                    throw new IllegalArgumentException("Parâmetro inválido ou repetido em " + padrao);
+                }
+                if (parametros.size() == MAXIMO_PARAMETROS) {
+                    throw new IllegalArgumentException("Mais de " + MAXIMO_PARAMETROS + " parâmetros em " + padrao);
+                }
+                parametros.add(nome);
+                if (no.parametro == null) {
+                    no.parametro = new No<>();
+                }
+                no = no.parametro;
+            } else if (segmento.indexOf('{') >= 0 || segmento.indexOf('}') >= 0) {
+                throw new IllegalArgumentException("Parâmetro deve ocupar o segmento inteiro: " + padrao);
+            } else {
+                no = no.adicionarLiteral(segmento);
+            }
+        }
+
+        if (no.destinos == null) {
+            no.destinos = new Rota[METODOS.length];
+        }
+        if (no.destinos[indiceMetodo] != null) {
+            throw new IllegalArgumentException("Rota repetida: " + metodo + " " + padrao
+                    + " (já registrada como " + no.destinos[indiceMetodo].padrao + ")");
+        }
+        no.destinos[indiceMetodo] = new Rota<>(padrao, destino, parametros.toArray(new String[0]));
+        no.permitidos = montarPermitidos(no.destinos);
+        rotas.add(metodo + " " + padrao);
+    }
+
+    /**
+     * Procura a rota do método e caminho (caminho cru da URI, sem query).
+     * @param resultado Recebe a rota e os parâmetros; em caso de falha,
+     *                  indica se o caminho existe para outros métodos
+     * @return true se encontrou
+     */
+    public boolean encontrar(String metodo, String caminho, Correspondencia<H> resultado) {
+        resultado.reiniciar(caminho);
+        if (caminho == null || caminho.isEmpty() || caminho.charAt(0) != '/') {
+            return false;
+        }
+        return casar(raiz, caminho, 0, indiceMetodo(metodo), 0, resultado);
+    }
+
+    /**
+     * Rotas registradas ("MÉTODO padrão"), na ordem de registro.
+     */
+    public List<String> listar() {
+        return Collections.unmodifiableList(rotas);
+    }
+
+    public int getTamanho() {
+        return rotas.size();
+    }
+
+    private static <H> boolean casar(No<H> no, String caminho, int inicio, int indiceMetodo,
+                                     int parametros, Correspondencia<H> resultado) {
+        int tamanho = caminho.length();
+        int i = inicio;
+        while (i < tamanho && caminho.charAt(i) == '/') {
+            i++;
+        }
+        if (i == tamanho) {
+            if (no.destinos == null) {
+                return false;
+            }
+            Rota<H> rota = indiceMetodo >= 0 ? no.destinos[indiceMetodo] : null;
+            if (rota == null) {
+                if (resultado.permitidos == null) {
+                    resultado.permitidos = no.permitidos;
+                }
+                return false;
+            }
+            resultado.rota = rota;
+            return true;
+        }
+
+        int fim = caminho.indexOf('/', i);
+        if (fim < 0) {
+            fim = tamanho;
+        }
+        No<H> literal = no.literais > 0 ? no.literal(caminho, i, fim) : null;
+        if (literal != null && casar(literal, caminho, fim, indiceMetodo, parametros, resultado)) {
+            return true;
+        }
+        if (no.parametro != null && parametros < MAXIMO_PARAMETROS) {
+            resultado.inicios[parametros] = i;
+            resultado.fins[parametros] = fim;
+            return casar(no.parametro, caminho, fim, indiceMetodo, parametros + 1, resultado);
+        }
+        return false;
+    }
+
+    // switch sobre String usa o hash já guardado na String: sem alocação
+    private static int indiceMetodo(String metodo) {
+        if (metodo == null) {
+            return -1;
+        }
+        switch (metodo) {
+            case "GET": return 0;
+            case "HEAD": return 1;
+            case "POST": return 2;
+            case "PUT": return 3;
+            case "PATCH": return 4;
+            case "DELETE": return 5;
+            case "OPTIONS": return 6;
+            default: return -1;
+        }
+    }
+
+    private static String montarPermitidos(Rota<?>[] destinos) {
+        StringBuilder permitidos = new StringBuilder();
+        for (int i = 0; i < destinos.length; i++) {
+            if (destinos[i] != null) {
+                if (permitidos.length() > 0) {
+                    permitidos.append(", ");
+                }
+                permitidos.append(METODOS[i]);
+            }
+        }
+        return permitidos.toString();
+    }
+
+    /**
+     * Mesmo hash de String.hashCode, calculado sobre um trecho do texto.
+     */
+    private static int hash(String texto, int inicio, int fim) {
+        int h = 0;
+        for (int i = inicio; i < fim; i++) {
+            h = 31 * h + texto.charAt(i);
+        }
+        return h;
+    }
+
+    private static int indice(int hash, int mascara) {
+        return (hash ^ (hash >>> 16)) & mascara;
+    }
+
+    /**
+     * Decodifica %XX (UTF-8) de um segmento do caminho. '+' é mantido:
+     * só na query string ele representa espaço.
+     */
+    private static String decodificar(String caminho, int inicio, int fim) {
+        int percentual = caminho.indexOf('%', inicio);
+        if (percentual < 0 || percentual >= fim) {
+            return caminho.substring(inicio, fim);
+        }
+        StringBuilder texto = new StringBuilder(fim - inicio);
+        byte[] bytes = new byte[(fim - inicio) / 3];
+        int i = inicio;
+        while (i < fim) {
+            char c = caminho.charAt(i);
+            if (c != '%') {
+                texto.append(c);
+                i++;
+                continue;
+            }
+            // Sequência de escapes consecutivos: um caractere pode ocupar vários bytes
+            int quantidade = 0;
+            while (i < fim && caminho.charAt(i) == '%') {
+                int alto = i + 2 < fim ? Character.digit(caminho.charAt(i + 1), 16) : -1;
+                int baixo = alto >= 0 ? Character.digit(caminho.charAt(i + 2), 16) : -1;
+                if (baixo < 0) {
+                    throw new IllegalArgumentException("Sequência de escape inválida no caminho: "
+                            + caminho.substring(inicio, fim));
+                }
+                bytes[quantidade++] = (byte) (alto * 16 + baixo);
+                i += 3;
+            }
+            texto.append(new String(bytes, 0, quantidade, StandardCharsets.UTF_8));
+        }
+        return texto.toString();
+    }
+}
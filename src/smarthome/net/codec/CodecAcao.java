@@ -0,0 +1,44 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Acao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CodecAcao implements CodecJson<Acao> {
+
+    private static final byte[] CAMPO_DISPOSITIVO_ID = SaidaJson.nomeCampo("dispositivoId", true);
+    private static final byte[] CAMPO_COMANDO = SaidaJson.nomeCampo("comando", false);
+    private static final byte[] CAMPO_PARAMETROS = SaidaJson.nomeCampo("parametros", false);
+
+    @Override
+    public void escrever(Acao a, SaidaJson saida) {
+        saida.bruto('{');
+        saida.bruto(CAMPO_DISPOSITIVO_ID);
+        saida.texto(a.getDispositivoId());
+        saida.bruto(CAMPO_COMANDO);
+        saida.texto(a.getComando());
+        saida.bruto(CAMPO_PARAMETROS);
+        if (a.getParametros() != null) {
+            RegistroCodecs.escrever(a.getParametros(), saida);
+        } else {
+            saida.bruto('{');
+            saida.bruto('}');
+        }
+        saida.bruto('}');
+    }
+
+    @Override
+    public Acao ler(Map<String, Object> json) {
+        String dispositivoId = LeituraJson.texto(json, "dispositivoId", "");
+        String comando = LeituraJson.texto(json, "comando", "");
+        Map<String, Object> parametros = new HashMap<>();
+        Object paramsObj = json.get("parametros");
+        if (paramsObj instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> params = (Map<String, Object>) paramsObj;
+            parametros.putAll(params);
+        }
+        return new Acao(dispositivoId, comando, parametros);
+    }
+}
@@ -0,0 +1,63 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Alerta;
+
+import java.time.Instant;
+import java.util.Map;
+
+public class CodecAlerta implements CodecJson<Alerta> {
+
+    private static final byte[] CAMPO_ID = SaidaJson.nomeCampo("id", true);
+    private static final byte[] CAMPO_TITULO = SaidaJson.nomeCampo("titulo", false);
+    private static final byte[] CAMPO_MENSAGEM = SaidaJson.nomeCampo("mensagem", false);
+    private static final byte[] CAMPO_COMODO = SaidaJson.nomeCampo("comodo", false);
+    private static final byte[] CAMPO_DISPOSITIVO_ID = SaidaJson.nomeCampo("dispositivoId", false);
+    private static final byte[] CAMPO_TIMESTAMP = SaidaJson.nomeCampo("timestamp", false);
+    private static final byte[] CAMPO_OCORRENCIAS = SaidaJson.nomeCampo("ocorrencias", false);
+    private static final byte[] CAMPO_ULTIMA_OCORRENCIA = SaidaJson.nomeCampo("ultimaOcorrencia", false);
+
+    @Override
+    public void escrever(Alerta a, SaidaJson saida) {
+        saida.bruto('{');
+        saida.bruto(CAMPO_ID);
+        saida.texto(a.getId());
+        saida.bruto(CAMPO_TITULO);
+        saida.texto(a.getTitulo());
+        saida.bruto(CAMPO_MENSAGEM);
+        saida.texto(a.getMensagem());
+        saida.bruto(CAMPO_COMODO);
+        saida.texto(a.getComodo());
+        saida.bruto(CAMPO_DISPOSITIVO_ID);
+        saida.texto(a.getDispositivoId());
+        if (a.getTimestamp() != null) {
+            saida.bruto(CAMPO_TIMESTAMP);
+            saida.texto(a.getTimestamp().toString());
+        }
+        saida.bruto(CAMPO_OCORRENCIAS);
+        saida.inteiro(a.getOcorrencias());
+        Instant ultima = a.getUltimaOcorrencia();
+        if (ultima != null) {
+            saida.bruto(CAMPO_ULTIMA_OCORRENCIA);
+            saida.texto(ultima.toString());
+        }
+        saida.bruto('}');
+    }
+
+    @Override
+    public Alerta ler(Map<String, Object> json) {
+        Alerta a = new Alerta(
+                LeituraJson.texto(json, "titulo", null),
+                LeituraJson.texto(json, "mensagem", null),
+                LeituraJson.texto(json, "comodo", null),
+                LeituraJson.texto(json, "dispositivoId", null));
+        String timestamp = LeituraJson.texto(json, "timestamp", null);
+        if (timestamp != null) {
+            try {
+                a.setTimestamp(Instant.parse(timestamp));
+            } catch (Exception e) {
+                // Mantém o timestamp de criação
+            }
+        }
+        return a;
+    }
+}
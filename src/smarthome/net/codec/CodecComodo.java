@@ -0,0 +1,47 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Comodo;
+import smarthome.pojos.DispositivoIoT;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CodecComodo implements CodecJson<Comodo> {
+
+    private static final byte[] CAMPO_NOME = SaidaJson.nomeCampo("nome", true);
+    private static final byte[] CAMPO_DISPOSITIVOS = SaidaJson.nomeCampo("dispositivos", false);
+
+    @Override
+    public void escrever(Comodo c, SaidaJson saida) {
+        saida.bruto('{');
+        saida.bruto(CAMPO_NOME);
+        saida.texto(c.getNome());
+        saida.bruto(CAMPO_DISPOSITIVOS);
+        if (c.getDispositivos() != null) {
+            RegistroCodecs.escrever(c.getDispositivos(), saida);
+        } else {
+            saida.bruto('[');
+            saida.bruto(']');
+        }
+        saida.bruto('}');
+    }
+
+    @Override
+    public Comodo ler(Map<String, Object> json) {
+        Comodo c = new Comodo(LeituraJson.texto(json, "nome", null));
+        List<DispositivoIoT> dispositivos = new ArrayList<>();
+        Object lista = json.get("dispositivos");
+        if (lista instanceof List) {
+            for (Object item : (List<?>) lista) {
+                if (item instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> map = (Map<String, Object>) item;
+                    dispositivos.add(RegistroCodecs.lerDispositivo(map));
+                }
+            }
+        }
+        c.setDispositivos(dispositivos);
+        return c;
+    }
+}
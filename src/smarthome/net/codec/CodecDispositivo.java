@@ -0,0 +1,110 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.DispositivoIoT;
+
+import java.util.Map;
+
+/**
+ * Codec base dos dispositivos IoT.
+ * Escreve/lê os campos comuns e delega os campos específicos à subclasse.
+ * A codificação de cada dispositivo é guardada como fragmento UTF-8 no próprio
+ * dispositivo e reaproveitada enquanto a versão do dispositivo não mudar.
+ */
+public abstract class CodecDispositivo<T extends DispositivoIoT> implements CodecJson<T> {
+
+    private static final byte[] CAMPO_ID = SaidaJson.nomeCampo("id", true);
+    private static final byte[] CAMPO_NOME = SaidaJson.nomeCampo("nome", false);
+    private static final byte[] CAMPO_DESCRICAO = SaidaJson.nomeCampo("descricao", false);
+    private static final byte[] CAMPO_COMODO = SaidaJson.nomeCampo("comodo", false);
+    private static final byte[] CAMPO_ONLINE = SaidaJson.nomeCampo("online", false);
+    private static final byte[] CAMPO_TIPO = SaidaJson.nomeCampo("tipo", false);
+    private static final byte[] CAMPO_VERSAO = SaidaJson.nomeCampo("versao", false);
+
+    private final String tipo;
+
+    protected CodecDispositivo(String tipo) {
+        this.tipo = tipo;
+    }
+
+    /**
+     * Valor do campo "tipo" no JSON (ex.: "Lampada").
+     */
+    public String getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Fragmento JSON de um dispositivo na versão em que foi gerado.
+     */
+    private static final class Fragmento {
+        final long versao;
+        final byte[] bytes;
+
+        Fragmento(long versao, byte[] bytes) {
+            this.versao = versao;
+            this.bytes = bytes;
+        }
+    }
+
+    @Override
+    public final void escrever(T d, SaidaJson saida) {
+        Object cache = d.getCacheSerializacao();
+        long versao = d.getVersao();
+        if (cache instanceof Fragmento && ((Fragmento) cache).versao == versao) {
+            saida.bruto(((Fragmento) cache).bytes);
+            return;
+        }
+
+        int inicio = saida.tamanho();
+        saida.bruto('{');
+        saida.bruto(CAMPO_ID);
+        saida.texto(d.getId());
+        saida.bruto(CAMPO_NOME);
+        saida.texto(d.getNome());
+        saida.bruto(CAMPO_DESCRICAO);
+        saida.texto(d.getDescricao());
+        saida.bruto(CAMPO_COMODO);
+        saida.texto(d.getComodo());
+        saida.bruto(CAMPO_ONLINE);
+        saida.booleano(d.getOnline());
+        saida.bruto(CAMPO_TIPO);
+        saida.texto(tipo);
+        saida.bruto(CAMPO_VERSAO);
+        saida.inteiro(versao);
+        escreverCampos(d, saida);
+        saida.bruto('}');
+
+        // Se o dispositivo mudou durante a codificação, não guarda o fragmento
+        if (d.getVersao() == versao) {
+            d.setCacheSerializacao(new Fragmento(versao, saida.copiar(inicio)));
+        }
+    }
+
+    @Override
+    public final T ler(Map<String, Object> json) {
+        T dispositivo = criar(json);
+
+        String id = LeituraJson.texto(json, "id", null);
+        if (id != null) {
+            dispositivo.setId(id);
+        }
+        dispositivo.setNome(LeituraJson.texto(json, "nome", ""));
+        String descricao = LeituraJson.texto(json, "descricao", null);
+        if (descricao != null) {
+            dispositivo.setDescricao(descricao);
+        }
+        dispositivo.setComodo(LeituraJson.texto(json, "comodo", ""));
+        dispositivo.setOnline(LeituraJson.booleano(json, "online", false));
+        return dispositivo;
+    }
+
+    /**
+     * Escreve os campos específicos do tipo (cada um com vírgula inicial).
+     */
+    protected abstract void escreverCampos(T d, SaidaJson saida);
+
+    /**
+     * Cria o dispositivo já com os campos específicos do tipo preenchidos.
+     */
+    protected abstract T criar(Map<String, Object> json);
+}
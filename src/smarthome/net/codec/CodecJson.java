@@ -0,0 +1,24 @@
+package smarthome.net.codec;
+
+import java.util.Map;
+
+/**
+ * Codificador/decodificador JSON de um tipo específico.
+ * Cada POJO possui um codec registrado em {@link RegistroCodecs}, de forma
+ * que a conversão é feita por uma única busca na tabela de codecs.
+ */
+public interface CodecJson<T> {
+
+    /**
+     * Escreve o objeto como JSON na saída.
+     */
+    void escrever(T obj, SaidaJson saida);
+
+    /**
+     * Reconstrói o objeto a partir de um objeto JSON já parseado.
+     * @throws UnsupportedOperationException se o tipo não suporta leitura
+     */
+    default T ler(Map<String, Object> json) {
+        throw new UnsupportedOperationException("Codec não suporta leitura");
+    }
+}
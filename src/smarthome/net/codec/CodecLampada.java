@@ -0,0 +1,35 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Lampada;
+
+import java.util.Map;
+
+public class CodecLampada extends CodecDispositivo<Lampada> {
+
+    private static final byte[] CAMPO_LIGADA = SaidaJson.nomeCampo("ligada", false);
+    private static final byte[] CAMPO_INTENSIDADE = SaidaJson.nomeCampo("intensidade", false);
+    private static final byte[] CAMPO_TEMPERATURA = SaidaJson.nomeCampo("temperatura", false);
+
+    public CodecLampada() {
+        super("Lampada");
+    }
+
+    @Override
+    protected void escreverCampos(Lampada l, SaidaJson saida) {
+        saida.bruto(CAMPO_LIGADA);
+        saida.booleano(l.isLigada());
+        saida.bruto(CAMPO_INTENSIDADE);
+        saida.inteiro(l.getIntensidade());
+        saida.bruto(CAMPO_TEMPERATURA);
+        saida.inteiro(l.getTemperatura());
+    }
+
+    @Override
+    protected Lampada criar(Map<String, Object> json) {
+        Lampada l = new Lampada();
+        l.setLigada(LeituraJson.booleano(json, "ligada", false));
+        l.setIntensidade(LeituraJson.inteiro(json, "intensidade", 0));
+        l.setTemperatura(LeituraJson.inteiro(json, "temperatura", 0));
+        return l;
+    }
+}
@@ -0,0 +1,66 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.ResultadoLote;
+
+import java.util.List;
+import java.util.Map;
+
+public class CodecResultadoLote implements CodecJson<ResultadoLote> {
+
+    private static final byte[] CAMPO_ALVO = SaidaJson.nomeCampo("alvo", true);
+    private static final byte[] CAMPO_COMANDO = SaidaJson.nomeCampo("comando", false);
+    private static final byte[] CAMPO_TOTAL = SaidaJson.nomeCampo("total", false);
+    private static final byte[] CAMPO_IGNORADOS = SaidaJson.nomeCampo("ignorados", false);
+    private static final byte[] CAMPO_DURACAO_MICROS = SaidaJson.nomeCampo("duracaoMicros", false);
+    private static final byte[] CAMPO_ALTERADOS = SaidaJson.nomeCampo("alterados", false);
+    private static final byte[] CAMPO_FALHAS = SaidaJson.nomeCampo("falhas", false);
+
+    @Override
+    public void escrever(ResultadoLote r, SaidaJson saida) {
+        saida.bruto('{');
+        saida.bruto(CAMPO_ALVO);
+        saida.texto(r.getAlvo());
+        saida.bruto(CAMPO_COMANDO);
+        saida.texto(r.getComando());
+        saida.bruto(CAMPO_TOTAL);
+        saida.inteiro(r.getTotal());
+        saida.bruto(CAMPO_IGNORADOS);
+        saida.inteiro(r.getIgnorados());
+        saida.bruto(CAMPO_DURACAO_MICROS);
+        saida.inteiro(r.getDuracaoMicros());
+        saida.bruto(CAMPO_ALTERADOS);
+        RegistroCodecs.escrever(r.getAlterados(), saida);
+        saida.bruto(CAMPO_FALHAS);
+        RegistroCodecs.escrever(r.getFalhas(), saida);
+        saida.bruto('}');
+    }
+
+    @Override
+    public ResultadoLote ler(Map<String, Object> json) {
+        ResultadoLote r = new ResultadoLote(
+                LeituraJson.texto(json, "alvo", null),
+                LeituraJson.texto(json, "comando", null));
+        r.setTotal(LeituraJson.inteiro(json, "total", 0));
+        r.setIgnorados(LeituraJson.inteiro(json, "ignorados", 0));
+        r.setDuracaoMicros((long) LeituraJson.decimal(json, "duracaoMicros", 0));
+        Object alterados = json.get("alterados");
+        if (alterados instanceof List) {
+            for (Object item : (List<?>) alterados) {
+                if (item instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> map = (Map<String, Object>) item;
+                    DispositivoIoT dispositivo = RegistroCodecs.lerDispositivo(map);
+                    r.getAlterados().add(dispositivo);
+                }
+            }
+        }
+        Object falhas = json.get("falhas");
+        if (falhas instanceof Map) {
+            for (Map.Entry<?, ?> falha : ((Map<?, ?>) falhas).entrySet()) {
+                r.getFalhas().put(String.valueOf(falha.getKey()), String.valueOf(falha.getValue()));
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,67 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Acao;
+import smarthome.pojos.Rotina;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CodecRotina implements CodecJson<Rotina> {
+
+    private static final byte[] CAMPO_ID = SaidaJson.nomeCampo("id", true);
+    private static final byte[] CAMPO_NOME = SaidaJson.nomeCampo("nome", false);
+    private static final byte[] CAMPO_ACOES = SaidaJson.nomeCampo("acoes", false);
+    private static final byte[] CAMPO_HORARIO_INICIO = SaidaJson.nomeCampo("horarioInicio", false);
+
+    private final CodecAcao codecAcao = new CodecAcao();
+
+    @Override
+    public void escrever(Rotina r, SaidaJson saida) {
+        saida.bruto('{');
+        saida.bruto(CAMPO_ID);
+        saida.texto(r.getId());
+        saida.bruto(CAMPO_NOME);
+        saida.texto(r.getNome());
+        saida.bruto(CAMPO_ACOES);
+        RegistroCodecs.escrever(r.getAcoes(), saida);
+        saida.bruto(CAMPO_HORARIO_INICIO);
+        saida.texto(r.getHorarioInicio() != null ? r.getHorarioInicio().toString() : null);
+        saida.bruto('}');
+    }
+
+    @Override
+    public Rotina ler(Map<String, Object> json) {
+        String nome = LeituraJson.texto(json, "nome", "");
+        if (nome == null || nome.trim().isEmpty()) {
+            throw new IllegalArgumentException("Nome da rotina não pode ser vazio");
+        }
+
+        // Converte ações
+        List<Acao> acoes = new ArrayList<>();
+        Object acoesObj = json.get("acoes");
+        if (acoesObj instanceof List) {
+            for (Object acaoObj : (List<?>) acoesObj) {
+                if (acaoObj instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> acaoMap = (Map<String, Object>) acaoObj;
+                    acoes.add(codecAcao.ler(acaoMap));
+                }
+            }
+        }
+
+        // Converte horário (usa horário atual se ausente ou inválido)
+        LocalDateTime horarioInicio = LocalDateTime.now();
+        Object horarioObj = json.get("horarioInicio");
+        if (horarioObj instanceof String) {
+            try {
+                horarioInicio = LocalDateTime.parse((String) horarioObj);
+            } catch (Exception e) {
+                // Mantém horário atual
+            }
+        }
+
+        return new Rotina(nome, acoes, horarioInicio);
+    }
+}
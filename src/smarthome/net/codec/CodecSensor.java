@@ -0,0 +1,35 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Sensor;
+
+import java.util.Map;
+
+public class CodecSensor extends CodecDispositivo<Sensor> {
+
+    private static final byte[] CAMPO_TIPO_SENSOR = SaidaJson.nomeCampo("tipoSensor", false);
+    private static final byte[] CAMPO_UNIDADE_MEDIDA = SaidaJson.nomeCampo("unidadeMedida", false);
+    private static final byte[] CAMPO_VALOR = SaidaJson.nomeCampo("valor", false);
+
+    public CodecSensor() {
+        super("Sensor");
+    }
+
+    @Override
+    protected void escreverCampos(Sensor s, SaidaJson saida) {
+        saida.bruto(CAMPO_TIPO_SENSOR);
+        saida.texto(s.getTipo());
+        saida.bruto(CAMPO_UNIDADE_MEDIDA);
+        saida.booleano(s.isUnidadeMedida());
+        saida.bruto(CAMPO_VALOR);
+        saida.decimal(s.getValor());
+    }
+
+    @Override
+    protected Sensor criar(Map<String, Object> json) {
+        Sensor s = new Sensor();
+        s.setTipo(LeituraJson.texto(json, "tipoSensor", "Desconhecido"));
+        s.setUnidadeMedida(LeituraJson.booleano(json, "unidadeMedida", false));
+        s.setValor(LeituraJson.decimal(json, "valor", 0.0));
+        return s;
+    }
+}
@@ -0,0 +1,33 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Termostato;
+
+import java.util.Map;
+
+public class CodecTermostato extends CodecDispositivo<Termostato> {
+
+    private static final byte[] CAMPO_TEMPERATURA_ATUAL = SaidaJson.nomeCampo("temperaturaAtual", false);
+    private static final byte[] CAMPO_TEMPERATURA_DESEJADA = SaidaJson.nomeCampo("temperaturaDesejada", false);
+
+    public CodecTermostato() {
+        super("Termostato");
+    }
+
+    @Override
+    protected void escreverCampos(Termostato t, SaidaJson saida) {
+        saida.bruto(CAMPO_TEMPERATURA_ATUAL);
+        saida.decimal(t.getTemperaturaAtual());
+        saida.bruto(CAMPO_TEMPERATURA_DESEJADA);
+        saida.decimal(t.getTemperaturaDesejada());
+    }
+
+    @Override
+    protected Termostato criar(Map<String, Object> json) {
+        Termostato t = new Termostato();
+        t.setDescricao("Termostato");
+        t.setTemperaturaAtual(LeituraJson.decimal(json, "temperaturaAtual", 0.0));
+        t.setTemperaturaDesejada(LeituraJson.decimal(json, "temperaturaDesejada", 0.0));
+        t.setStatus(LeituraJson.booleano(json, "status", false));
+        return t;
+    }
+}
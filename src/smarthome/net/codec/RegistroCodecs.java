@@ -0,0 +1,173 @@
+package smarthome.net.codec;
+
+import smarthome.pojos.Acao;
+import smarthome.pojos.Alerta;
+import smarthome.pojos.Comodo;
+import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.Lampada;
+import smarthome.pojos.ResultadoLote;
+import smarthome.pojos.Rotina;
+import smarthome.pojos.Sensor;
+import smarthome.pojos.Termostato;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de codecs JSON indexado por classe.
+ * A conversão de um objeto é uma única busca na tabela; classes não
+ * registradas são resolvidas uma vez (pela superclasse ou pelos tipos
+ * genéricos List/Map/Number/array) e o resultado é memorizado.
+ *
+ * Para suportar um novo tipo de DispositivoIoT basta chamar
+ * {@link #registrarDispositivo(Class, CodecDispositivo)}.
+ */
+public final class RegistroCodecs {
+
+    private static final Map<Class<?>, CodecJson<?>> codecs = new ConcurrentHashMap<>();
+    private static final Map<String, CodecDispositivo<?>> dispositivosPorTipo = new ConcurrentHashMap<>();
+
+    private static final CodecJson<Object> CODEC_TEXTO = (obj, saida) -> saida.texto(obj.toString());
+    private static final CodecJson<Object> CODEC_BOOLEANO = (obj, saida) -> saida.booleano((Boolean) obj);
+    private static final CodecJson<Object> CODEC_INTEIRO = (obj, saida) -> saida.inteiro(((Number) obj).longValue());
+    private static final CodecJson<Object> CODEC_NUMERO = (obj, saida) -> saida.decimal(((Number) obj).doubleValue());
+    private static final CodecJson<Object> CODEC_LISTA = (obj, saida) -> escreverLista((List<?>) obj, saida);
+    private static final CodecJson<Object> CODEC_ARRAY = (obj, saida) -> escreverArray((Object[]) obj, saida);
+    private static final CodecJson<Object> CODEC_MAPA = (obj, saida) -> escreverMapa((Map<?, ?>) obj, saida);
+
+    static {
+        registrar(String.class, CODEC_TEXTO);
+        registrar(Boolean.class, CODEC_BOOLEANO);
+        registrar(Integer.class, CODEC_INTEIRO);
+        registrar(Long.class, CODEC_INTEIRO);
+        registrar(Short.class, CODEC_INTEIRO);
+        registrar(Byte.class, CODEC_INTEIRO);
+        registrar(Double.class, CODEC_NUMERO);
+        registrar(Float.class, CODEC_NUMERO);
+
+        registrarDispositivo(Lampada.class, new CodecLampada());
+        registrarDispositivo(Termostato.class, new CodecTermostato());
+        registrarDispositivo(Sensor.class, new CodecSensor());
+        registrar(Rotina.class, new CodecRotina());
+        registrar(Alerta.class, new CodecAlerta());
+        registrar(Comodo.class, new CodecComodo());
+        registrar(Acao.class, new CodecAcao());
+        registrar(ResultadoLote.class, new CodecResultadoLote());
+    }
+
+    private RegistroCodecs() {}
+
+    /**
+     * Registra o codec de uma classe (substitui o anterior, se houver).
+     */
+    public static <T> void registrar(Class<T> classe, CodecJson<? super T> codec) {
+        codecs.put(classe, codec);
+    }
+
+    /**
+     * Registra o codec de um tipo de dispositivo para escrita (pela classe)
+     * e para leitura (pelo campo "tipo" do JSON).
+     */
+    public static <T extends DispositivoIoT> void registrarDispositivo(Class<T> classe, CodecDispositivo<T> codec) {
+        registrar(classe, codec);
+        dispositivosPorTipo.put(codec.getTipo(), codec);
+    }
+
+    /**
+     * Escreve qualquer objeto suportado como JSON.
+     */
+    @SuppressWarnings("unchecked")
+    public static void escrever(Object obj, SaidaJson saida) {
+        if (obj == null) {
+            saida.nulo();
+            return;
+        }
+        CodecJson<Object> codec = (CodecJson<Object>) codecs.get(obj.getClass());
+        if (codec == null) {
+            codec = (CodecJson<Object>) resolver(obj.getClass());
+        }
+        codec.escrever(obj, saida);
+    }
+
+    /**
+     * Reconstrói um dispositivo a partir do campo "tipo" do JSON.
+     * Tipos desconhecidos ou ausentes são tratados como Lampada.
+     */
+    public static DispositivoIoT lerDispositivo(Map<String, Object> json) {
+        String tipo = LeituraJson.texto(json, "tipo", "Lampada");
+        CodecDispositivo<?> codec = dispositivosPorTipo.get(tipo);
+        if (codec == null) {
+            codec = dispositivosPorTipo.get("Lampada");
+        }
+        return codec.ler(json);
+    }
+
+    /**
+     * Reconstrói um objeto da classe informada a partir do JSON.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T ler(Class<T> classe, Map<String, Object> json) {
+        CodecJson<T> codec = (CodecJson<T>) codecs.get(classe);
+        if (codec == null) {
+            throw new IllegalArgumentException("Nenhum codec registrado para " + classe.getSimpleName());
+        }
+        return codec.ler(json);
+    }
+
+    /**
+     * Resolve o codec de uma classe não registrada e memoriza o resultado.
+     */
+    private static CodecJson<?> resolver(Class<?> classe) {
+        CodecJson<?> codec = null;
+        for (Class<?> c = classe.getSuperclass(); c != null && codec == null; c = c.getSuperclass()) {
+            codec = codecs.get(c);
+        }
+        if (codec == null) {
+            if (List.class.isAssignableFrom(classe)) {
+                codec = CODEC_LISTA;
+            } else if (Map.class.isAssignableFrom(classe)) {
+                codec = CODEC_MAPA;
+            } else if (Object[].class.isAssignableFrom(classe)) {
+                codec = CODEC_ARRAY;
+            } else if (Number.class.isAssignableFrom(classe)) {
+                codec = CODEC_NUMERO;
+            } else {
+                codec = CODEC_TEXTO;
+            }
+        }
+        codecs.put(classe, codec);
+        return codec;
+    }
+
+    private static void escreverLista(List<?> list, SaidaJson saida) {
+        saida.bruto('[');
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) saida.bruto(',');
+            escrever(list.get(i), saida);
+        }
+        saida.bruto(']');
+    }
+
+    private static void escreverArray(Object[] array, SaidaJson saida) {
+        saida.bruto('[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) saida.bruto(',');
+            escrever(array[i], saida);
+        }
+        saida.bruto(']');
+    }
+
+    private static void escreverMapa(Map<?, ?> map, SaidaJson saida) {
+        saida.bruto('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) saida.bruto(',');
+            first = false;
+            saida.texto(entry.getKey().toString());
+            saida.bruto(':');
+            escrever(entry.getValue(), saida);
+        }
+        saida.bruto('}');
+    }
+}
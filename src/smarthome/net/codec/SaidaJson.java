@@ -0,0 +1,234 @@
+package smarthome.net.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Buffer de saída JSON que escreve diretamente em UTF-8.
+ * Nomes de campos são pré-codificados pelos codecs ({@link #nomeCampo})
+ * e copiados como bytes, sem passar por String.
+ *
+ * Cada thread tem uma saída reaproveitável ({@link #daThread()}), de modo
+ * que serializar uma resposta não aloca nem cresce buffers a cada chamada.
+ */
+public final class SaidaJson {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int CAPACIDADE_DA_THREAD = 8192;
+    // Acima disso o buffer da thread é trocado na devolução (não retém o pico de uma resposta enorme)
+    private static final int CAPACIDADE_RETIDA = 256 * 1024;
+    private static final ThreadLocal<SaidaJson> DA_THREAD =
+            ThreadLocal.withInitial(() -> new SaidaJson(CAPACIDADE_DA_THREAD));
+
+    private byte[] buf;
+    private int pos;
+    private boolean emprestada;
+
+    public SaidaJson() {
+        this(256);
+    }
+
+    public SaidaJson(int capacidadeInicial) {
+        this.buf = new byte[Math.max(16, capacidadeInicial)];
+    }
+
+    /**
+     * Empresta a saída da thread atual, vazia. Deve ser devolvida com
+     * {@link #devolver()} (em um finally); se ela já estiver emprestada
+     * (uso aninhado na mesma thread), retorna uma saída nova.
+     */
+    public static SaidaJson daThread() {
+        SaidaJson saida = DA_THREAD.get();
+        if (saida.emprestada) {
+            return new SaidaJson(1024);
+        }
+        saida.emprestada = true;
+        saida.pos = 0;
+        return saida;
+    }
+
+    /**
+     * Devolve uma saída obtida de {@link #daThread()}. O conteúdo não deve
+     * mais ser usado depois disso.
+     */
+    public void devolver() {
+        emprestada = false;
+        if (buf.length > CAPACIDADE_RETIDA) {
+            buf = new byte[CAPACIDADE_DA_THREAD];
+        }
+        pos = 0;
+    }
+
+    /**
+     * Pré-codifica o nome de um campo como {@code "nome":}, com vírgula
+     * inicial quando não é o primeiro campo do objeto.
+     */
+    public static byte[] nomeCampo(String nome, boolean primeiro) {
+        return ((primeiro ? "" : ",") + "\"" + nome + "\":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void bruto(byte[] bytes) {
+        bruto(bytes, 0, bytes.length);
+    }
+
+    public void bruto(byte[] bytes, int inicio, int tamanho) {
+        garantir(tamanho);
+        System.arraycopy(bytes, inicio, buf, pos, tamanho);
+        pos += tamanho;
+    }
+
+    public void bruto(char c) {
+        garantir(1);
+        buf[pos++] = (byte) c;
+    }
+
+    public void nulo() {
+        bruto(NULL);
+    }
+
+    public void booleano(boolean valor) {
+        bruto(valor ? TRUE : FALSE);
+    }
+
+    public void inteiro(long valor) {
+        if (valor == Long.MIN_VALUE) {
+            ascii(Long.toString(valor));
+            return;
+        }
+        garantir(20);
+        if (valor < 0) {
+            buf[pos++] = '-';
+            valor = -valor;
+        }
+        int inicio = pos;
+        do {
+            buf[pos++] = (byte) ('0' + (valor % 10));
+            valor /= 10;
+        } while (valor != 0);
+        // Inverte os dígitos escritos
+        for (int i = inicio, j = pos - 1; i < j; i++, j--) {
+            byte tmp = buf[i];
+            buf[i] = buf[j];
+            buf[j] = tmp;
+        }
+    }
+
+    public void decimal(double valor) {
+        ascii(Double.toString(valor));
+    }
+
+    /**
+     * Escreve uma string JSON (entre aspas e escapada), ou null.
+     */
+    public void texto(String s) {
+        if (s == null) {
+            nulo();
+            return;
+        }
+        garantir(s.length() + 2);
+        buf[pos++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                garantir(1);
+                buf[pos++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                garantir(2);
+                buf[pos++] = '\\';
+                buf[pos++] = (byte) c;
+            } else if (c == '\n') {
+                escape('n');
+            } else if (c == '\r') {
+                escape('r');
+            } else if (c == '\t') {
+                escape('t');
+            } else if (c < 0x20) {
+                garantir(6);
+                buf[pos++] = '\\';
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[c >> 4];
+                buf[pos++] = HEX[c & 0xF];
+            } else if (c < 0x800) {
+                garantir(2);
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                garantir(4);
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                garantir(3);
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        garantir(1);
+        buf[pos++] = '"';
+    }
+
+    private void escape(char c) {
+        garantir(2);
+        buf[pos++] = '\\';
+        buf[pos++] = (byte) c;
+    }
+
+    private void ascii(String s) {
+        garantir(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void garantir(int adicional) {
+        if (pos + adicional > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + adicional));
+        }
+    }
+
+    /**
+     * Número de bytes escritos até agora.
+     */
+    public int tamanho() {
+        return pos;
+    }
+
+    /**
+     * Copia os bytes escritos a partir da posição informada.
+     */
+    public byte[] copiar(int inicio) {
+        return Arrays.copyOfRange(buf, inicio, pos);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    public void escreverPara(OutputStream destino) throws IOException {
+        destino.write(buf, 0, pos);
+    }
+
+    /**
+     * Descarta o conteúdo mantendo o buffer alocado para reuso.
+     */
+    public void reiniciar() {
+        pos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, pos, StandardCharsets.UTF_8);
+    }
+}
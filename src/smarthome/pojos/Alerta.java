@@ -3,17 +3,22 @@ package smarthome.pojos;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.Objects;
-import java.util.UUID;
 
 public class Alerta implements Serializable {
+    private IdCompacto idCompacto;
+    // Forma textual do id, gerada sob demanda
     private String id;
     private String titulo;
     private String mensagem;
     private Instant timestamp;
     private String comodo;
+    private String dispositivoId;
+    // Agrupamento de alertas repetidos: timestamp é a primeira ocorrência
+    private int ocorrencias = 1;
+    private Instant ultimaOcorrencia;
 
     public Alerta() {
-        this.id = UUID.randomUUID().toString();
+        this.idCompacto = IdCompacto.gerar();
         this.timestamp = Instant.now();
     }
 
@@ -24,21 +29,70 @@ public class Alerta implements Serializable {
         this.comodo = comodo;
     }
 
-    public String getId() { return id; }
+    public Alerta(String titulo, String mensagem, String comodo, String dispositivoId) {
+        this(titulo, mensagem, comodo);
+        this.dispositivoId = dispositivoId;
+    }
+
+    /**
+     * Cópia com o mesmo id, para trocar um alerta já publicado sem alterá-lo.
+     */
+    private Alerta(Alerta origem) {
+        this.idCompacto = origem.idCompacto;
+        this.id = origem.id;
+        this.titulo = origem.titulo;
+        this.mensagem = origem.mensagem;
+        this.timestamp = origem.timestamp;
+        this.comodo = origem.comodo;
+        this.dispositivoId = origem.dispositivoId;
+        this.ocorrencias = origem.ocorrencias;
+        this.ultimaOcorrencia = origem.ultimaOcorrencia;
+    }
+
+    public String getId() {
+        String texto = id;
+        if (texto == null) {
+            texto = idCompacto.toString();
+            id = texto;
+        }
+        return texto;
+    }
+    public IdCompacto getIdCompacto() { return idCompacto; }
     public String getTitulo() { return titulo; }
     public String getMensagem() { return mensagem; }
     public Instant getTimestamp() { return timestamp; }
     public String getComodo() { return comodo; }
+    public String getDispositivoId() { return dispositivoId; }
+    public int getOcorrencias() { return ocorrencias; }
+    public Instant getUltimaOcorrencia() {
+        Instant ultima = ultimaOcorrencia;
+        return ultima != null ? ultima : timestamp;
+    }
     public void setTitulo(String titulo) { this.titulo = titulo; }
     public void setMensagem(String mensagem) { this.mensagem = mensagem; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
     public void setComodo(String comodo) { this.comodo = comodo; }
+    public void setDispositivoId(String dispositivoId) { this.dispositivoId = dispositivoId; }
+
+    /**
+     * Alerta repetido agrupado a este: retorna uma cópia com mais uma
+     * ocorrência. Este alerta não muda, então listagens já publicadas
+     * continuam coerentes com a versão delas.
+     */
+    public Alerta comNovaOcorrencia(Instant instante) {
+        Alerta copia = new Alerta(this);
+        copia.ocorrencias = ocorrencias + 1;
+        if (instante != null && (ultimaOcorrencia == null || instante.isAfter(ultimaOcorrencia))) {
+            copia.ultimaOcorrencia = instante;
+        }
+        return copia;
+    }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Alerta)) return false;
         Alerta that = (Alerta) o;
-        return Objects.equals(id, that.id);
+        return Objects.equals(idCompacto, that.idCompacto);
     }
 }
@@ -7,6 +7,9 @@ public class Comodo implements Serializable {
     private String id;
     private String nome;
     private List<DispositivoIoT> dispositivos;
+    // Controle de concorrência/cache (ETag, Last-Modified)
+    private long versao;
+    private long alteradoEm;
 
     public Comodo() {}
     public Comodo(String nome) {
@@ -15,8 +18,12 @@ public class Comodo implements Serializable {
 
     public String getNome() { return nome; }
     public List<DispositivoIoT> getDispositivos() { return dispositivos; }
+    public long getVersao() { return versao; }
+    public long getAlteradoEm() { return alteradoEm; }
     public void setNome(String nome) { this.nome = nome; }
     public void setDispositivos(List<DispositivoIoT> dispositivos) { this.dispositivos = dispositivos; }
+    public void setVersao(long versao) { this.versao = versao; }
+    public void setAlteradoEm(long alteradoEm) { this.alteradoEm = alteradoEm; }
 
     public void adicionarDispositivo(DispositivoIoT dispositivo) {
         if (dispositivo != null) {
@@ -2,17 +2,26 @@ package smarthome.pojos;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.UUID;
 
 public abstract class DispositivoIoT implements Serializable {
+    // Id em 128 bits; null se o id atribuído não for um UUID canônico
+    private IdCompacto idCompacto;
+    // Forma textual do id, gerada sob demanda a partir de idCompacto
     private String id;
     private String nome;
     private String descricao;
     private String comodo;
     private boolean online;
+    // Incrementada a cada alteração de estado
+    private long versao;
+    // Instante (ms) da criação ou da última alteração de estado
+    private long alteradoEm;
+    // Cache opaco dos conversores (ex.: fragmento JSON); não é serializado
+    private transient volatile Object cacheSerializacao;
 
     protected DispositivoIoT() {
-        this.id = UUID.randomUUID().toString();
+        this.idCompacto = IdCompacto.gerar();
+        this.alteradoEm = System.currentTimeMillis();
     }
 
     protected DispositivoIoT(String nome, String descricao, String comodo) {
@@ -23,21 +32,152 @@ public abstract class DispositivoIoT implements Serializable {
         this.online = false;
     }
 
-    public String getId() { return id; }
+    /**
+     * Cópia de estado (mesmo id e versão), sem o cache de serialização.
+     * Usa os getters da origem, então também materializa visões.
+     */
+    protected DispositivoIoT(DispositivoIoT origem) {
+        // Sem parse: o id de 128 bits é imutável e compartilhado; o texto já
+        // gerado também (o de uma visão é gerado sob demanda na cópia)
+        this.idCompacto = origem.getIdCompacto();
+        this.id = idCompacto != null ? origem.id : origem.getId();
+        this.nome = origem.getNome();
+        this.descricao = origem.getDescricao();
+        this.comodo = origem.getComodo();
+        this.online = origem.getOnline();
+        this.versao = origem.getVersao();
+        this.alteradoEm = origem.getAlteradoEm();
+    }
+
+    /**
+     * Cria uma cópia independente do dispositivo. O serviço altera sempre
+     * uma cópia e a publica no lugar da original, que nunca mais muda.
+     */
+    public abstract DispositivoIoT copiar();
+
+    public String getId() {
+        String texto = id;
+        if (texto == null && idCompacto != null) {
+            texto = idCompacto.toString();
+            id = texto;
+        }
+        return texto;
+    }
+    public IdCompacto getIdCompacto() { return idCompacto; }
     public String getNome() { return nome; }
     public String getDescricao() { return descricao; }
     public String getComodo() { return comodo; }
     public boolean getOnline() { return online; }
-    public void setNome(String nome) { this.nome = nome; }
-    public void setDescricao(String descricao) { this.descricao = descricao; }
-    public void setComodo(String comodo) { this.comodo = comodo; }
-    public void setId(String id) { this.id = id; }
-    public void setOnline(boolean online) { this.online = online; }
+    public long getVersao() { return versao; }
+    public long getAlteradoEm() { return alteradoEm; }
+    public void setNome(String nome) { this.nome = nome; marcarAlterado(); }
+    public void setDescricao(String descricao) { this.descricao = descricao; marcarAlterado(); }
+    public void setComodo(String comodo) { this.comodo = comodo; marcarAlterado(); }
+    public void setId(String id) {
+        this.id = id;
+        this.idCompacto = IdCompacto.parse(id);
+        marcarAlterado();
+    }
+    public void setOnline(boolean online) { this.online = online; marcarAlterado(); }
+
+    /**
+     * Registra uma alteração de estado. Deve ser chamado por todo setter,
+     * inclusive os das subclasses, para invalidar caches de serialização.
+     */
+    protected void marcarAlterado() {
+        versao++;
+        alteradoEm = System.currentTimeMillis();
+    }
+
+    /**
+     * Conclui uma atualização aplicada a uma cópia: se algum setter alterou
+     * a cópia, a versão passa a ser exatamente a seguinte à da origem, por
+     * mais campos que tenham mudado (uma atualização = uma versão).
+     * @param versaoOrigem Versão do dispositivo copiado
+     */
+    public void concluirAlteracao(long versaoOrigem) {
+        if (versao != versaoOrigem) {
+            versao = versaoOrigem + 1;
+        }
+    }
+
+    /**
+     * Altera um único campo pelo nome (atualização parcial, sem criar um
+     * dispositivo temporário). Subclasses tratam seus campos e delegam os
+     * demais para a superclasse.
+     * @param valor Valor já parseado do JSON (String, Number, Boolean ou
+     *        null; null só nos campos opcionais, como em {@link #removerCampo})
+     * @return false se o campo não existe ou não pode ser alterado
+     * @throws IllegalArgumentException se o valor não é do tipo do campo
+     */
+    public boolean aplicarCampo(String campo, Object valor) {
+        switch (campo) {
+            case "nome": setNome(comoTextoObrigatorio(campo, valor)); return true;
+            case "descricao": setDescricao(comoTexto(campo, valor)); return true;
+            case "comodo": setComodo(comoTexto(campo, valor)); return true;
+            case "online": setOnline(comoBooleano(campo, valor)); return true;
+            default: return false;
+        }
+    }
+
+    /**
+     * Remove um campo opcional (membro null em um JSON merge patch): o
+     * campo fica sem valor.
+     * @return false se o campo não existe ou é obrigatório
+     */
+    public boolean removerCampo(String campo) {
+        switch (campo) {
+            case "descricao": setDescricao(null); return true;
+            case "comodo": setComodo(null); return true;
+            default: return false;
+        }
+    }
+
+    protected static String comoTexto(String campo, Object valor) {
+        if (valor == null || valor instanceof String) {
+            return (String) valor;
+        }
+        throw new IllegalArgumentException("Campo '" + campo + "' deve ser texto");
+    }
+
+    protected static String comoTextoObrigatorio(String campo, Object valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Campo '" + campo + "' é obrigatório e não pode ser null");
+        }
+        return comoTexto(campo, valor);
+    }
+
+    protected static boolean comoBooleano(String campo, Object valor) {
+        if (valor instanceof Boolean) {
+            return (Boolean) valor;
+        }
+        throw new IllegalArgumentException("Campo '" + campo + "' deve ser booleano");
+    }
+
+    protected static int comoInteiro(String campo, Object valor) {
+        if (valor instanceof Number) {
+            double numero = ((Number) valor).doubleValue();
+            if (numero == Math.rint(numero) && numero >= Integer.MIN_VALUE && numero <= Integer.MAX_VALUE) {
+                return (int) numero;
+            }
+        }
+        throw new IllegalArgumentException("Campo '" + campo + "' deve ser inteiro");
+    }
+
+    protected static double comoDecimal(String campo, Object valor) {
+        if (valor instanceof Number) {
+            return ((Number) valor).doubleValue();
+        }
+        throw new IllegalArgumentException("Campo '" + campo + "' deve ser numérico");
+    }
+
+    public Object getCacheSerializacao() { return cacheSerializacao; }
+    public void setCacheSerializacao(Object cacheSerializacao) { this.cacheSerializacao = cacheSerializacao; }
 
     @Override
     public String toString() {
         return "DispositivoIoT{" +
-                "id='" + id + '\'' +
+                "id='" + getId() + '\'' +
                 ", nome='" + nome + '\'' +
                 ", descricao='" + descricao + '\'' +
                 ", comodo='" + comodo + '\'' +
@@ -50,11 +190,14 @@ public abstract class DispositivoIoT implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         DispositivoIoT that = (DispositivoIoT) o;
+        if (idCompacto != null || that.idCompacto != null) {
+            return Objects.equals(idCompacto, that.idCompacto);
+        }
         return Objects.equals(id, that.id);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return idCompacto != null ? idCompacto.hashCode() : Objects.hashCode(id);
     }
 }
\ No newline at end of file
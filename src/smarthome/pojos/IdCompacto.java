@@ -0,0 +1,107 @@
+package smarthome.pojos;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Identificador de 128 bits guardado como dois longs.
+ * A forma textual (UUID canônico, minúsculo) só é produzida na borda da API;
+ * internamente as buscas usam os dois longs sem hashear a String de 36 caracteres.
+ */
+public final class IdCompacto implements Serializable {
+
+    private static final int TAMANHO_CANONICO = 36;
+
+    private final long msb;
+    private final long lsb;
+
+    public IdCompacto(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
+    }
+
+    /**
+     * Gera um novo id aleatório (UUID versão 4).
+     */
+    public static IdCompacto gerar() {
+        UUID uuid = UUID.randomUUID();
+        return new IdCompacto(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Converte a forma textual canônica para IdCompacto.
+     * @return IdCompacto ou null se o texto não é um UUID canônico minúsculo
+     */
+    public static IdCompacto parse(String texto) {
+        if (!isCanonico(texto)) {
+            return null;
+        }
+        return new IdCompacto(msbDe(texto), lsbDe(texto));
+    }
+
+    /**
+     * Verifica se o texto está no formato xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx
+     * com dígitos hexadecimais minúsculos (o formato gerado por {@link #toString()}).
+     */
+    public static boolean isCanonico(String texto) {
+        if (texto == null || texto.length() != TAMANHO_CANONICO) {
+            return false;
+        }
+        for (int i = 0; i < TAMANHO_CANONICO; i++) {
+            char c = texto.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64 bits mais significativos de um id canônico (sem alocar).
+     * O texto deve ter sido validado com {@link #isCanonico(String)}.
+     */
+    public static long msbDe(String texto) {
+        return (hex(texto, 0, 8) << 32) | (hex(texto, 9, 13) << 16) | hex(texto, 14, 18);
+    }
+
+    /**
+     * 64 bits menos significativos de um id canônico (sem alocar).
+     * O texto deve ter sido validado com {@link #isCanonico(String)}.
+     */
+    public static long lsbDe(String texto) {
+        return (hex(texto, 19, 23) << 48) | hex(texto, 24, 36);
+    }
+
+    private static long hex(String texto, int inicio, int fim) {
+        long valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            char c = texto.charAt(i);
+            valor = (valor << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return valor;
+    }
+
+    public long getMsb() { return msb; }
+    public long getLsb() { return lsb; }
+
+    @Override
+    public String toString() {
+        return new UUID(msb, lsb).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IdCompacto)) return false;
+        IdCompacto that = (IdCompacto) o;
+        return msb == that.msb && lsb == that.lsb;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = msb ^ lsb;
+        return (int) (h ^ (h >>> 32));
+    }
+}
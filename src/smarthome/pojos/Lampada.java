@@ -16,13 +16,35 @@ public class Lampada extends DispositivoIoT {
         this.intensidade = 0;
         this.temperatura = 0;
     }
+
+    public Lampada(Lampada origem) {
+        super(origem);
+        this.ligada = origem.isLigada();
+        this.intensidade = origem.getIntensidade();
+        this.temperatura = origem.getTemperatura();
+    }
+
+    @Override
+    public Lampada copiar() {
+        return new Lampada(this);
+    }
     
     public boolean isLigada() { return ligada; }
     public int getIntensidade() { return intensidade; }
     public int getTemperatura() { return temperatura; }
-    public void setLigada(boolean ligada) { this.ligada = ligada; }
-    public void setIntensidade(int intensidade) { this.intensidade = intensidade; }
-    public void setTemperatura(int temperatura) { this.temperatura = temperatura; }
+    public void setLigada(boolean ligada) { this.ligada = ligada; marcarAlterado(); }
+    public void setIntensidade(int intensidade) { this.intensidade = intensidade; marcarAlterado(); }
+    public void setTemperatura(int temperatura) { this.temperatura = temperatura; marcarAlterado(); }
+
+    @Override
+    public boolean aplicarCampo(String campo, Object valor) {
+        switch (campo) {
+            case "ligada": setLigada(comoBooleano(campo, valor)); return true;
+            case "intensidade": setIntensidade(comoInteiro(campo, valor)); return true;
+            case "temperatura": setTemperatura(comoInteiro(campo, valor)); return true;
+            default: return super.aplicarCampo(campo, valor);
+        }
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,57 @@
+package smarthome.pojos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado agregado de um comando aplicado a vários dispositivos
+ * (um cômodo ou um grupo).
+ */
+public class ResultadoLote implements Serializable {
+    private String alvo;
+    private String comando;
+    private int total;
+    private int ignorados;
+    private long duracaoMicros;
+    private List<DispositivoIoT> alterados = new ArrayList<>();
+    // Id do dispositivo -> motivo da falha
+    private Map<String, String> falhas = new LinkedHashMap<>();
+
+    public ResultadoLote() {}
+
+    public ResultadoLote(String alvo, String comando) {
+        this.alvo = alvo;
+        this.comando = comando;
+    }
+
+    public String getAlvo() { return alvo; }
+    public String getComando() { return comando; }
+    public int getTotal() { return total; }
+    public int getIgnorados() { return ignorados; }
+    public long getDuracaoMicros() { return duracaoMicros; }
+    public List<DispositivoIoT> getAlterados() { return alterados; }
+    public Map<String, String> getFalhas() { return falhas; }
+    public void setAlvo(String alvo) { this.alvo = alvo; }
+    public void setComando(String comando) { this.comando = comando; }
+    public void setTotal(int total) { this.total = total; }
+    public void setIgnorados(int ignorados) { this.ignorados = ignorados; }
+    public void setDuracaoMicros(long duracaoMicros) { this.duracaoMicros = duracaoMicros; }
+    public void setAlterados(List<DispositivoIoT> alterados) { this.alterados = alterados; }
+    public void setFalhas(Map<String, String> falhas) { this.falhas = falhas; }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+                "alvo='" + alvo + '\'' +
+                ", comando='" + comando + '\'' +
+                ", total=" + total +
+                ", alterados=" + alterados.size() +
+                ", ignorados=" + ignorados +
+                ", falhas=" + falhas.size() +
+                ", duracaoMicros=" + duracaoMicros +
+                '}';
+    }
+}
@@ -4,23 +4,32 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
 import java.io.Serializable;
-import java.util.UUID;
 import java.util.Objects;
 
 public class Rotina implements Serializable {
+    private IdCompacto idCompacto;
+    // Forma textual do id, gerada sob demanda
     private String id;
     private String nome;
     private List<Acao> acoes = new ArrayList<>();
     private LocalDateTime horarioInicio;
 
     public Rotina(String nome, List<Acao> acoes, LocalDateTime horarioInicio) {
-        this.id = UUID.randomUUID().toString();
+        this.idCompacto = IdCompacto.gerar();
         this.nome = nome;
         if (acoes != null) this.acoes.addAll(acoes);
         this.horarioInicio = horarioInicio;
     }
 
-    public String getId() { return id; }
+    public String getId() {
+        String texto = id;
+        if (texto == null) {
+            texto = idCompacto.toString();
+            id = texto;
+        }
+        return texto;
+    }
+    public IdCompacto getIdCompacto() { return idCompacto; }
     public String getNome() { return nome; }
     public List<Acao> getAcoes() { return acoes; }
     public LocalDateTime getHorarioInicio() { return horarioInicio; }
@@ -35,6 +44,6 @@ public class Rotina implements Serializable {
         if (this == o) return true;
         if (!(o instanceof Rotina)) return false;
         Rotina rotina = (Rotina) o;
-        return Objects.equals(id, rotina.id);
+        return Objects.equals(idCompacto, rotina.idCompacto);
     }
 }
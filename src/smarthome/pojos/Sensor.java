@@ -17,14 +17,36 @@ public class Sensor extends DispositivoIoT {
         this.unidadeMedida = unidadeMedida;
         this.valor = valor;
     }
+
+    public Sensor(Sensor origem) {
+        super(origem);
+        this.tipo = origem.getTipo();
+        this.unidadeMedida = origem.isUnidadeMedida();
+        this.valor = origem.getValor();
+    }
+
+    @Override
+    public Sensor copiar() {
+        return new Sensor(this);
+    }
     
 
     public String getTipo() { return tipo; }
     public boolean isUnidadeMedida() { return unidadeMedida; }
     public double getValor() { return valor; }
-    public void setTipo(String tipo) { this.tipo = tipo; }
-    public void setUnidadeMedida(boolean unidadeMedida) { this.unidadeMedida = unidadeMedida; }
-    public void setValor(double valor) { this.valor = valor; }
+    public void setTipo(String tipo) { this.tipo = tipo; marcarAlterado(); }
+    public void setUnidadeMedida(boolean unidadeMedida) { this.unidadeMedida = unidadeMedida; marcarAlterado(); }
+    public void setValor(double valor) { this.valor = valor; marcarAlterado(); }
+
+    @Override
+    public boolean aplicarCampo(String campo, Object valor) {
+        switch (campo) {
+            case "tipoSensor": setTipo(comoTextoObrigatorio(campo, valor)); return true;
+            case "unidadeMedida": setUnidadeMedida(comoBooleano(campo, valor)); return true;
+            case "valor": setValor(comoDecimal(campo, valor)); return true;
+            default: return super.aplicarCampo(campo, valor);
+        }
+    }
 
     @Override
     public String toString() {
@@ -18,13 +18,35 @@ public class Termostato extends DispositivoIoT {
         this.temperaturaAtual = temperaturaAtual;
         this.temperaturaDesejada = temperaturaDesejada;
     }
+
+    public Termostato(Termostato origem) {
+        super(origem);
+        this.temperaturaAtual = origem.getTemperaturaAtual();
+        this.temperaturaDesejada = origem.getTemperaturaDesejada();
+        this.status = origem.getStatus();
+    }
+
+    @Override
+    public Termostato copiar() {
+        return new Termostato(this);
+    }
     
     public double getTemperaturaAtual() { return temperaturaAtual; }
     public double getTemperaturaDesejada() { return temperaturaDesejada; }
     public boolean getStatus() { return status; }
-    public void setTemperaturaAtual(double temperaturaAtual) { this.temperaturaAtual = temperaturaAtual; }
-    public void setTemperaturaDesejada(double temperaturaDesejada) { this.temperaturaDesejada = temperaturaDesejada; }
-    public void setStatus(boolean status) { this.status = status; }
+    public void setTemperaturaAtual(double temperaturaAtual) { this.temperaturaAtual = temperaturaAtual; marcarAlterado(); }
+    public void setTemperaturaDesejada(double temperaturaDesejada) { this.temperaturaDesejada = temperaturaDesejada; marcarAlterado(); }
+    public void setStatus(boolean status) { this.status = status; marcarAlterado(); }
+
+    @Override
+    public boolean aplicarCampo(String campo, Object valor) {
+        switch (campo) {
+            case "temperaturaAtual": setTemperaturaAtual(comoDecimal(campo, valor)); return true;
+            case "temperaturaDesejada": setTemperaturaDesejada(comoDecimal(campo, valor)); return true;
+            case "status": setStatus(comoBooleano(campo, valor)); return true;
+            default: return super.aplicarCampo(campo, valor);
+        }
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,288 @@
+package smarthome.services;
+
+import smarthome.pojos.Alerta;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Armazém de alertas em buffer circular de capacidade fixa, com retenção
+ * opcional por tempo. Quando cheio, o alerta mais antigo é sobrescrito.
+ *
+ * <ul>
+ *   <li>Inserção O(1) com um lock curto (escritor único por vez).</li>
+ *   <li>Leituras sem lock: cada posição guarda a sequência do alerta que
+ *       contém, verificada antes e depois da leitura; uma posição
+ *       sobrescrita durante a leitura é simplesmente ignorada.</li>
+ *   <li>Consulta por período: busca binária na coluna de tempos + O(k).</li>
+ *   <li>Consulta por cômodo: cada posição aponta para o alerta anterior do
+ *       mesmo cômodo, então a leitura percorre apenas os k alertas dele.</li>
+ * </ul>
+ *
+ * A coluna de tempos é mantida não decrescente: um alerta com timestamp
+ * anterior ao último inserido é indexado no tempo do último (ordem de chegada).
+ */
+public class ArmazemAlertas {
+
+    private static final long SEM_TEMPO = Long.MIN_VALUE;
+
+    private final int capacidade;
+    private final int mascara;
+    private final long retencaoMs;
+
+    // Colunas indexadas por (sequência & mascara)
+    private final AtomicLongArray sequencias;
+    private final AtomicReferenceArray<Alerta> alertas;
+    private final AtomicLongArray tempos;
+    private final AtomicLongArray anteriorNoComodo;
+
+    // Sequência do alerta mais recente de cada cômodo
+    private final ConcurrentHashMap<String, AtomicLong> ultimoPorComodo = new ConcurrentHashMap<>();
+
+    // Próxima sequência; publicada só depois que a posição foi escrita
+    private volatile long proxima;
+    // Acessado só sob o lock
+    private long ultimoTempo = SEM_TEMPO;
+    private final Object lockEscrita = new Object();
+
+    /**
+     * @param capacidade Número máximo de alertas (arredondado para potência de 2)
+     * @param retencaoMs Idade máxima dos alertas retornados; 0 desativa a retenção por tempo
+     */
+    public ArmazemAlertas(int capacidade, long retencaoMs) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade deve ser positiva: " + capacidade);
+        }
+        if (retencaoMs < 0) {
+            throw new IllegalArgumentException("Retenção não pode ser negativa: " + retencaoMs);
+        }
+        int potencia = Integer.highestOneBit(capacidade);
+        this.capacidade = potencia == capacidade ? capacidade : potencia << 1;
+        this.mascara = this.capacidade - 1;
+        this.retencaoMs = retencaoMs;
+        this.sequencias = new AtomicLongArray(this.capacidade);
+        this.alertas = new AtomicReferenceArray<>(this.capacidade);
+        this.tempos = new AtomicLongArray(this.capacidade);
+        this.anteriorNoComodo = new AtomicLongArray(this.capacidade);
+        for (int i = 0; i < this.capacidade; i++) {
+            sequencias.set(i, -1);
+        }
+    }
+
+    /**
+     * Insere um alerta, sobrescrevendo o mais antigo se o buffer estiver cheio.
+     * @return Sequência atribuída ao alerta
+     */
+    public long adicionar(Alerta alerta) {
+        if (alerta == null) {
+            throw new IllegalArgumentException("Alerta não pode ser null");
+        }
+        long tempo = alerta.getTimestamp() != null ? alerta.getTimestamp().toEpochMilli() : System.currentTimeMillis();
+        String comodo = alerta.getComodo();
+        synchronized (lockEscrita) {
+            long seq = proxima;
+            int i = (int) (seq & mascara);
+            if (tempo < ultimoTempo) {
+                tempo = ultimoTempo;
+            }
+            ultimoTempo = tempo;
+
+            AtomicLong ultimo = null;
+            long anterior = -1;
+            if (comodo != null) {
+                ultimo = ultimoPorComodo.computeIfAbsent(comodo, c -> new AtomicLong(-1));
+                anterior = ultimo.get();
+            }
+
+            // Invalida a posição, escreve as colunas e só então publica a sequência
+            sequencias.set(i, -1);
+            alertas.set(i, alerta);
+            tempos.set(i, tempo);
+            anteriorNoComodo.set(i, anterior);
+            sequencias.set(i, seq);
+
+            if (ultimo != null) {
+                ultimo.set(seq);
+            }
+            proxima = seq + 1;
+            return seq;
+        }
+    }
+
+    /**
+     * Troca o alerta retido de mesmo id pela nova versão dele (ex.: cópia
+     * com mais uma ocorrência), na mesma posição e sequência. Leitores
+     * concorrentes veem a versão anterior ou a nova, nunca uma mistura.
+     * @return false se o alerta não está mais retido
+     */
+    public boolean substituir(Alerta alerta) {
+        if (alerta == null) {
+            throw new IllegalArgumentException("Alerta não pode ser null");
+        }
+        synchronized (lockEscrita) {
+            long fimSeq = proxima;
+            long seq = primeiraSequencia(fimSeq, System.currentTimeMillis());
+            // O tempo indexado nunca é anterior ao timestamp do alerta
+            if (alerta.getTimestamp() != null) {
+                seq = buscarTempo(alerta.getTimestamp().toEpochMilli(), seq, fimSeq);
+            }
+            for (; seq < fimSeq; seq++) {
+                int i = (int) (seq & mascara);
+                if (sequencias.get(i) == seq && alerta.equals(alertas.get(i))) {
+                    alertas.set(i, alerta);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // Consultas (sem lock)
+    // ---------------------------------------------------------------
+
+    /**
+     * Lista os alertas retidos, do mais antigo para o mais recente.
+     */
+    public List<Alerta> listar() {
+        return listarPorPeriodo(null, null);
+    }
+
+    /**
+     * Lista os alertas retidos com tempo no intervalo [inicio, fim].
+     * @param inicio Limite inferior, ou null para sem limite
+     * @param fim Limite superior, ou null para sem limite
+     */
+    public List<Alerta> listarPorPeriodo(Instant inicio, Instant fim) {
+        long fimSeq = proxima;
+        long inicioSeq = primeiraSequencia(fimSeq, System.currentTimeMillis());
+        if (inicio != null) {
+            inicioSeq = buscarTempo(inicio.toEpochMilli(), inicioSeq, fimSeq);
+        }
+        long limite = fim != null ? fim.toEpochMilli() : Long.MAX_VALUE;
+
+        List<Alerta> resultado = new ArrayList<>((int) Math.min(fimSeq - inicioSeq, capacidade));
+        for (long seq = inicioSeq; seq < fimSeq; seq++) {
+            int i = (int) (seq & mascara);
+            Alerta alerta = alertas.get(i);
+            long tempo = tempos.get(i);
+            if (sequencias.get(i) != seq) {
+                // Sobrescrito durante a leitura
+                continue;
+            }
+            if (tempo > limite) {
+                break;
+            }
+            resultado.add(alerta);
+        }
+        return resultado;
+    }
+
+    /**
+     * Lista os alertas retidos de um cômodo com tempo no intervalo [inicio, fim],
+     * do mais antigo para o mais recente.
+     * @param inicio Limite inferior, ou null para sem limite
+     * @param fim Limite superior, ou null para sem limite
+     */
+    public List<Alerta> listarPorComodo(String comodo, Instant inicio, Instant fim) {
+        AtomicLong ultimo = comodo != null ? ultimoPorComodo.get(comodo) : null;
+        if (ultimo == null) {
+            return new ArrayList<>();
+        }
+        long fimSeq = proxima;
+        long inicioSeq = primeiraSequencia(fimSeq, System.currentTimeMillis());
+        long minimo = inicio != null ? inicio.toEpochMilli() : Long.MIN_VALUE;
+        long limite = fim != null ? fim.toEpochMilli() : Long.MAX_VALUE;
+
+        // Percorre a cadeia do cômodo do mais recente para o mais antigo
+        List<Alerta> resultado = new ArrayList<>();
+        long seq = ultimo.get();
+        while (seq >= inicioSeq) {
+            int i = (int) (seq & mascara);
+            Alerta alerta = alertas.get(i);
+            long tempo = tempos.get(i);
+            long anterior = anteriorNoComodo.get(i);
+            if (sequencias.get(i) != seq || tempo < minimo) {
+                // Sobrescrito (logo, todo o resto da cadeia também) ou antes do período
+                break;
+            }
+            if (tempo <= limite) {
+                resultado.add(alerta);
+            }
+            seq = anterior;
+        }
+        Collections.reverse(resultado);
+        return resultado;
+    }
+
+    /**
+     * Sequência do alerta retido mais antigo. Não decresce, então pode ser
+     * combinada com um contador de inserções para versionar a listagem
+     * (alertas que expiram também alteram o resultado).
+     */
+    public long getPrimeiraSequencia() {
+        return primeiraSequencia(proxima, System.currentTimeMillis());
+    }
+
+    /**
+     * Número de alertas retidos no momento.
+     */
+    public int getTamanho() {
+        long fimSeq = proxima;
+        return (int) (fimSeq - primeiraSequencia(fimSeq, System.currentTimeMillis()));
+    }
+
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    public long getRetencaoMs() {
+        return retencaoMs;
+    }
+
+    // ---------------------------------------------------------------
+    // Auxiliares
+    // ---------------------------------------------------------------
+
+    /**
+     * Primeira sequência ainda no buffer e dentro da janela de retenção.
+     */
+    private long primeiraSequencia(long fimSeq, long agora) {
+        long inicioSeq = Math.max(0, fimSeq - capacidade);
+        if (retencaoMs == 0) {
+            return inicioSeq;
+        }
+        return buscarTempo(agora - retencaoMs, inicioSeq, fimSeq);
+    }
+
+    /**
+     * Busca binária da primeira sequência em [inicioSeq, fimSeq) com tempo
+     * maior ou igual a {@code tempoMinimo}. Posições já sobrescritas são
+     * tratadas como anteriores a qualquer tempo (estão no início da faixa).
+     */
+    private long buscarTempo(long tempoMinimo, long inicioSeq, long fimSeq) {
+        long baixo = inicioSeq;
+        long alto = fimSeq;
+        while (baixo < alto) {
+            long meio = (baixo + alto) >>> 1;
+            if (tempoDe(meio) < tempoMinimo) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private long tempoDe(long seq) {
+        int i = (int) (seq & mascara);
+        long tempo = tempos.get(i);
+        return sequencias.get(i) == seq ? tempo : SEM_TEMPO;
+    }
+}
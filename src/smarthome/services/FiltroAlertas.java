@@ -0,0 +1,335 @@
+package smarthome.services;
+
+import smarthome.pojos.Alerta;
+
+/**
+ * Etapa anterior ao armazenamento de alertas:
+ * <ol>
+ *   <li>Agrupamento: um alerta com mesmo título, cômodo e dispositivo de um
+ *       alerta visto há menos de {@code janelaMs} não é armazenado de novo;
+ *       gera uma cópia do existente com mais uma ocorrência, que o substitui
+ *       (janela deslizante: cada repetição a estende).</li>
+ *   <li>Limite de taxa: alertas distintos consomem uma ficha do balde do
+ *       cômodo e uma do balde do dispositivo; sem fichas, são descartados.</li>
+ * </ol>
+ *
+ * As tabelas são de endereçamento aberto com arrays pré-alocados e a busca
+ * compara as Strings do próprio alerta, sem montar um objeto de chave:
+ * o caminho de um alerta novo ou descartado não aloca memória. Entradas expiradas são
+ * descartadas copiando as vivas para uma tabela reserva, também pré-alocada.
+ */
+public class FiltroAlertas {
+
+    private static final long JANELA_PADRAO_MS = 60_000;
+    private static final int CAPACIDADE_PADRAO = 4096;
+    private static final double FATOR_CARGA = 0.5;
+
+    private final long janelaMs;
+
+    private final TabelaDupla agrupamentos;
+    private final Baldes baldesComodo;
+    private final Baldes baldesDispositivo;
+
+    private long recebidos;
+    private long agrupados;
+    private long descartados;
+
+    /**
+     * Janela de 60s; cômodos com 5 alertas/s (rajada de 20) e
+     * dispositivos com 1 alerta/s (rajada de 5).
+     */
+    public FiltroAlertas() {
+        this(JANELA_PADRAO_MS, CAPACIDADE_PADRAO, 5, 20, 1, 5);
+    }
+
+    /**
+     * @param janelaMs Janela de agrupamento de alertas repetidos
+     * @param capacidade Número máximo de chaves acompanhadas por tabela
+     * @param taxaComodo Alertas distintos por segundo por cômodo
+     * @param rajadaComodo Tamanho do balde de cada cômodo
+     * @param taxaDispositivo Alertas distintos por segundo por dispositivo
+     * @param rajadaDispositivo Tamanho do balde de cada dispositivo
+     */
+    public FiltroAlertas(long janelaMs, int capacidade, double taxaComodo, double rajadaComodo,
+                         double taxaDispositivo, double rajadaDispositivo) {
+        if (janelaMs < 0 || capacidade <= 0 || taxaComodo <= 0 || rajadaComodo < 1
+                || taxaDispositivo <= 0 || rajadaDispositivo < 1) {
+            throw new IllegalArgumentException("Configuração inválida do filtro de alertas");
+        }
+        this.janelaMs = janelaMs;
+
+        int slots = Integer.highestOneBit((int) (capacidade / FATOR_CARGA) - 1) << 1;
+        this.agrupamentos = new TabelaDupla(slots, janelaMs);
+        this.baldesComodo = new Baldes(slots, taxaComodo, rajadaComodo);
+        this.baldesDispositivo = new Baldes(slots, taxaDispositivo, rajadaDispositivo);
+    }
+
+    /**
+     * Processa um alerta recebido.
+     * @param agoraMs Instante atual (System.currentTimeMillis())
+     * @return O próprio alerta se deve ser armazenado; a cópia do alerta já
+     *         armazenado ao qual foi agrupado, que deve substituí-lo no armazém;
+     *         ou null se foi descartado pelo limite de taxa
+     */
+    public synchronized Alerta processar(Alerta alerta, long agoraMs) {
+        recebidos++;
+        String titulo = alerta.getTitulo();
+        String comodo = alerta.getComodo();
+        String dispositivo = alerta.getDispositivoId();
+        int hash = hash(titulo, comodo, dispositivo);
+
+        Tabela tabela = agrupamentos.ativa;
+        int i = tabela.localizar(hash, titulo, comodo, dispositivo);
+        if (i >= 0 && agoraMs - tabela.tempos[i] < janelaMs) {
+            Alerta agrupado = tabela.alertas[i].comNovaOcorrencia(alerta.getTimestamp());
+            tabela.alertas[i] = agrupado;
+            tabela.tempos[i] = agoraMs;
+            agrupados++;
+            return agrupado;
+        }
+
+        if (!consumirFichas(comodo, dispositivo, agoraMs)) {
+            descartados++;
+            return null;
+        }
+
+        if (i < 0) {
+            if (!agrupamentos.garantirEspaco(agoraMs)) {
+                // Tabela cheia de alertas ativos: armazena sem agrupar
+                return alerta;
+            }
+            tabela = agrupamentos.ativa;
+            i = tabela.ocupar(hash, titulo, comodo, dispositivo);
+        }
+        tabela.alertas[i] = alerta;
+        tabela.tempos[i] = agoraMs;
+        return alerta;
+    }
+
+    /**
+     * Consome uma ficha do cômodo e uma do dispositivo, somente se ambos
+     * tiverem fichas. Chaves null ou que não cabem na tabela não são limitadas.
+     */
+    private boolean consumirFichas(String comodo, String dispositivo, long agoraMs) {
+        int ic = comodo != null ? baldesComodo.abastecer(comodo, agoraMs) : -1;
+        if (ic >= 0 && baldesComodo.fichas(ic) < 1) {
+            return false;
+        }
+        int id = dispositivo != null ? baldesDispositivo.abastecer(dispositivo, agoraMs) : -1;
+        if (id >= 0 && baldesDispositivo.fichas(id) < 1) {
+            return false;
+        }
+        if (ic >= 0) {
+            baldesComodo.consumir(ic);
+        }
+        if (id >= 0) {
+            baldesDispositivo.consumir(id);
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------
+    // Métricas
+    // ---------------------------------------------------------------
+
+    public synchronized long getRecebidos() { return recebidos; }
+    public synchronized long getAgrupados() { return agrupados; }
+    public synchronized long getDescartados() { return descartados; }
+
+    @Override
+    public synchronized String toString() {
+        return "FiltroAlertas{" +
+                "recebidos=" + recebidos +
+                ", agrupados=" + agrupados +
+                ", descartados=" + descartados +
+                '}';
+    }
+
+    // ---------------------------------------------------------------
+    // Tabela de endereçamento aberto com chave de até três Strings
+    // ---------------------------------------------------------------
+
+    private static int hash(String a, String b, String c) {
+        int h = a != null ? a.hashCode() : 0;
+        h = 31 * h + (b != null ? b.hashCode() : 0);
+        h = 31 * h + (c != null ? c.hashCode() : 0);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean iguais(String x, String y) {
+        return x == y || (x != null && x.equals(y));
+    }
+
+    /**
+     * Tabela ativa mais uma reserva do mesmo tamanho, trocadas na limpeza.
+     */
+    private static class TabelaDupla {
+        Tabela ativa;
+        Tabela reserva;
+
+        TabelaDupla(int capacidade, long validadeMs) {
+            ativa = new Tabela(capacidade, validadeMs);
+            reserva = new Tabela(capacidade, validadeMs);
+        }
+
+        /**
+         * Garante espaço para uma nova entrada, descartando as expiradas.
+         * Pode trocar a tabela ativa, invalidando posições obtidas antes.
+         * @return false se a tabela continua cheia de entradas válidas
+         */
+        boolean garantirEspaco(long agoraMs) {
+            if (!ativa.cheia()) {
+                return true;
+            }
+            ativa.copiarVivas(reserva, agoraMs);
+            Tabela antiga = ativa;
+            ativa = reserva;
+            reserva = antiga;
+            return !ativa.cheia();
+        }
+    }
+
+    /**
+     * Baldes de fichas por chave (cômodo ou dispositivo).
+     */
+    private static final class Baldes extends TabelaDupla {
+        final double taxaPorMs;
+        final double rajada;
+
+        Baldes(int capacidade, double taxaPorSegundo, double rajada) {
+            // Um balde parado por tempo suficiente para encher é igual a um balde novo
+            super(capacidade, (long) Math.ceil(rajada / taxaPorSegundo * 1000));
+            this.taxaPorMs = taxaPorSegundo / 1000;
+            this.rajada = rajada;
+        }
+
+        /**
+         * Localiza (ou cria cheio) o balde da chave e repõe as fichas
+         * acumuladas desde o último acesso.
+         * @return Posição do balde, ou -1 se não há espaço (chave não limitada)
+         */
+        int abastecer(String chave, long agoraMs) {
+            int hash = hash(chave, null, null);
+            int i = ativa.localizar(hash, chave, null, null);
+            if (i < 0) {
+                if (!garantirEspaco(agoraMs)) {
+                    return -1;
+                }
+                i = ativa.ocupar(hash, chave, null, null);
+                ativa.fichas[i] = rajada;
+                ativa.tempos[i] = agoraMs;
+                return i;
+            }
+            long decorrido = agoraMs - ativa.tempos[i];
+            if (decorrido > 0) {
+                ativa.fichas[i] = Math.min(rajada, ativa.fichas[i] + decorrido * taxaPorMs);
+                ativa.tempos[i] = agoraMs;
+            }
+            return i;
+        }
+
+        double fichas(int i) {
+            return ativa.fichas[i];
+        }
+
+        void consumir(int i) {
+            ativa.fichas[i] -= 1;
+        }
+    }
+
+    private static final class Tabela {
+        final int mascara;
+        final int limite;
+        // Tempo após o último acesso em que a entrada pode ser descartada
+        final long validadeMs;
+        final boolean[] usadas;
+        final int[] hashes;
+        final String[] chavesA;
+        final String[] chavesB;
+        final String[] chavesC;
+        final long[] tempos;
+        final double[] fichas;
+        final Alerta[] alertas;
+        int ocupadas;
+
+        Tabela(int capacidade, long validadeMs) {
+            this.mascara = capacidade - 1;
+            this.limite = (int) (capacidade * FATOR_CARGA);
+            this.validadeMs = validadeMs;
+            this.usadas = new boolean[capacidade];
+            this.hashes = new int[capacidade];
+            this.chavesA = new String[capacidade];
+            this.chavesB = new String[capacidade];
+            this.chavesC = new String[capacidade];
+            this.tempos = new long[capacidade];
+            this.fichas = new double[capacidade];
+            this.alertas = new Alerta[capacidade];
+        }
+
+        boolean cheia() {
+            return ocupadas >= limite;
+        }
+
+        /**
+         * @return Posição da chave, ou -1 se ausente
+         */
+        int localizar(int hash, String a, String b, String c) {
+            int i = hash & mascara;
+            while (usadas[i]) {
+                if (hashes[i] == hash && iguais(chavesA[i], a) && iguais(chavesB[i], b) && iguais(chavesC[i], c)) {
+                    return i;
+                }
+                i = (i + 1) & mascara;
+            }
+            return -1;
+        }
+
+        /**
+         * Ocupa a primeira posição livre da sequência de sondagem da chave.
+         * A chave não deve estar presente e a tabela não deve estar cheia.
+         */
+        int ocupar(int hash, String a, String b, String c) {
+            int i = hash & mascara;
+            while (usadas[i]) {
+                i = (i + 1) & mascara;
+            }
+            usadas[i] = true;
+            hashes[i] = hash;
+            chavesA[i] = a;
+            chavesB[i] = b;
+            chavesC[i] = c;
+            ocupadas++;
+            return i;
+        }
+
+        /**
+         * Copia as entradas ainda válidas para o destino (esvaziado antes)
+         * e esvazia esta tabela.
+         */
+        void copiarVivas(Tabela destino, long agoraMs) {
+            destino.esvaziar();
+            for (int i = 0; i <= mascara; i++) {
+                if (usadas[i] && agoraMs - tempos[i] < validadeMs) {
+                    int j = destino.ocupar(hashes[i], chavesA[i], chavesB[i], chavesC[i]);
+                    destino.tempos[j] = tempos[i];
+                    destino.fichas[j] = fichas[i];
+                    destino.alertas[j] = alertas[i];
+                }
+            }
+            esvaziar();
+        }
+
+        void esvaziar() {
+            for (int i = 0; i <= mascara; i++) {
+                if (usadas[i]) {
+                    usadas[i] = false;
+                    chavesA[i] = null;
+                    chavesB[i] = null;
+                    chavesC[i] = null;
+                    alertas[i] = null;
+                }
+            }
+            ocupadas = 0;
+        }
+    }
+}
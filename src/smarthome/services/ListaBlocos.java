@@ -0,0 +1,105 @@
+package smarthome.services;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Lista imutável guardada em blocos de tamanho fixo. Uma versão alterada
+ * copia só o índice de blocos e os blocos que mudaram; os demais são
+ * compartilhados com a versão anterior (compartilhamento estrutural).
+ * Alterar k posições de uma lista de n elementos custa O(n / 256 + 256k)
+ * em vez de O(n).
+ *
+ * Os métodos de alteração de {@link java.util.List} lançam
+ * UnsupportedOperationException, como em uma lista não modificável.
+ */
+final class ListaBlocos<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int BITS_BLOCO = 8;
+    private static final int TAMANHO_BLOCO = 1 << BITS_BLOCO;
+    private static final int MASCARA_BLOCO = TAMANHO_BLOCO - 1;
+
+    private final Object[][] blocos;
+    private final int tamanho;
+
+    private ListaBlocos(Object[][] blocos, int tamanho) {
+        this.blocos = blocos;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Copia os elementos da lista para blocos novos.
+     */
+    static <T> ListaBlocos<T> de(List<? extends T> itens) {
+        int n = itens.size();
+        Object[][] blocos = new Object[(n + MASCARA_BLOCO) >>> BITS_BLOCO][];
+        for (int b = 0; b < blocos.length; b++) {
+            int inicio = b << BITS_BLOCO;
+            Object[] bloco = new Object[Math.min(TAMANHO_BLOCO, n - inicio)];
+            for (int i = 0; i < bloco.length; i++) {
+                bloco[i] = itens.get(inicio + i);
+            }
+            blocos[b] = bloco;
+        }
+        return new ListaBlocos<>(blocos, n);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int indice) {
+        if (indice < 0 || indice >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + indice + ", tamanho " + tamanho);
+        }
+        return (T) blocos[indice >>> BITS_BLOCO][indice & MASCARA_BLOCO];
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    /**
+     * Nova versão com {@code valores[i]} na posição {@code indices[i]}.
+     * Cada bloco alterado é copiado uma única vez, mesmo com várias
+     * posições nele.
+     */
+    ListaBlocos<T> com(int[] indices, Object[] valores, int quantidade) {
+        if (quantidade == 0) {
+            return this;
+        }
+        Object[][] novos = blocos.clone();
+        boolean[] copiados = new boolean[novos.length];
+        for (int i = 0; i < quantidade; i++) {
+            int indice = indices[i];
+            if (indice < 0 || indice >= tamanho) {
+                throw new IndexOutOfBoundsException("Índice " + indice + ", tamanho " + tamanho);
+            }
+            int b = indice >>> BITS_BLOCO;
+            if (!copiados[b]) {
+                novos[b] = novos[b].clone();
+                copiados[b] = true;
+            }
+            novos[b][indice & MASCARA_BLOCO] = valores[i];
+        }
+        return new ListaBlocos<>(novos, tamanho);
+    }
+
+    /**
+     * Nova versão com o elemento acrescentado no final.
+     */
+    ListaBlocos<T> comAdicionado(T valor) {
+        int b = tamanho >>> BITS_BLOCO;
+        Object[][] novos;
+        if (b == blocos.length) {
+            novos = Arrays.copyOf(blocos, b + 1);
+            novos[b] = new Object[1];
+        } else {
+            novos = blocos.clone();
+            novos[b] = Arrays.copyOf(blocos[b], blocos[b].length + 1);
+        }
+        novos[b][tamanho & MASCARA_BLOCO] = valor;
+        return new ListaBlocos<>(novos, tamanho + 1);
+    }
+}
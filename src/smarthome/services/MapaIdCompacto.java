@@ -0,0 +1,186 @@
+package smarthome.services;
+
+import smarthome.pojos.IdCompacto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mapa de endereçamento aberto (sondagem linear) com chaves de 128 bits
+ * guardadas em dois arrays de long. Não aloca nós nem objetos de chave:
+ * uma busca lê apenas arrays primitivos e o array de valores.
+ *
+ * Não é thread-safe.
+ */
+public class MapaIdCompacto<V> {
+
+    private static final float FATOR_CARGA = 0.6f;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private Object[] valores;
+    private int tamanho;
+    private int limite;
+
+    public MapaIdCompacto() {
+        this(16);
+    }
+
+    public MapaIdCompacto(int capacidadeEsperada) {
+        int capacidade = Integer.highestOneBit(Math.max(4, (int) (capacidadeEsperada / FATOR_CARGA)) - 1) << 1;
+        alocar(capacidade);
+    }
+
+    private void alocar(int capacidade) {
+        msbs = new long[capacidade];
+        lsbs = new long[capacidade];
+        valores = new Object[capacidade];
+        limite = (int) (capacidade * FATOR_CARGA);
+    }
+
+    static int espalhar(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long msb, long lsb) {
+        int mascara = valores.length - 1;
+        int i = espalhar(msb, lsb) & mascara;
+        Object v;
+        while ((v = valores[i]) != null) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                return (V) v;
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    public V get(IdCompacto id) {
+        return get(id.getMsb(), id.getLsb());
+    }
+
+    /**
+     * Busca pela forma textual sem alocar.
+     * @return Valor ou null se ausente ou se o texto não é um id canônico
+     */
+    public V get(String id) {
+        if (!IdCompacto.isCanonico(id)) {
+            return null;
+        }
+        return get(IdCompacto.msbDe(id), IdCompacto.lsbDe(id));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long msb, long lsb, V valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Valor não pode ser null");
+        }
+        int mascara = valores.length - 1;
+        int i = espalhar(msb, lsb) & mascara;
+        Object v;
+        while ((v = valores[i]) != null) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                valores[i] = valor;
+                return (V) v;
+            }
+            i = (i + 1) & mascara;
+        }
+        msbs[i] = msb;
+        lsbs[i] = lsb;
+        valores[i] = valor;
+        if (++tamanho > limite) {
+            redimensionar();
+        }
+        return null;
+    }
+
+    public V put(IdCompacto id, V valor) {
+        return put(id.getMsb(), id.getLsb(), valor);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long msb, long lsb) {
+        int mascara = valores.length - 1;
+        int i = espalhar(msb, lsb) & mascara;
+        Object v;
+        while ((v = valores[i]) != null) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                removerPosicao(i);
+                tamanho--;
+                return (V) v;
+            }
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    /**
+     * Remove a posição e desloca para trás as entradas seguintes do mesmo
+     * agrupamento, mantendo a sondagem linear sem marcadores de remoção.
+     */
+    private void removerPosicao(int livre) {
+        int mascara = valores.length - 1;
+        int i = livre;
+        while (true) {
+            i = (i + 1) & mascara;
+            if (valores[i] == null) {
+                break;
+            }
+            int ideal = espalhar(msbs[i], lsbs[i]) & mascara;
+            // Move a entrada se a posição livre está entre a ideal e a atual (circularmente)
+            if (((i - ideal) & mascara) >= ((i - livre) & mascara)) {
+                msbs[livre] = msbs[i];
+                lsbs[livre] = lsbs[i];
+                valores[livre] = valores[i];
+                livre = i;
+            }
+        }
+        valores[livre] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void redimensionar() {
+        long[] antigosMsbs = msbs;
+        long[] antigosLsbs = lsbs;
+        Object[] antigosValores = valores;
+        alocar(antigosValores.length * 2);
+        tamanho = 0;
+        for (int i = 0; i < antigosValores.length; i++) {
+            if (antigosValores[i] != null) {
+                put(antigosMsbs[i], antigosLsbs[i], (V) antigosValores[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(valores, null);
+        tamanho = 0;
+    }
+
+    /**
+     * Copia os valores para uma nova lista.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> valores() {
+        List<V> lista = new ArrayList<>(tamanho);
+        for (Object v : valores) {
+            if (v != null) {
+                lista.add((V) v);
+            }
+        }
+        return lista;
+    }
+}
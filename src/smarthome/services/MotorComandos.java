@@ -0,0 +1,197 @@
+package smarthome.services;
+
+import smarthome.pojos.DispositivoIoT;
+import smarthome.pojos.Lampada;
+import smarthome.pojos.Sensor;
+import smarthome.pojos.Termostato;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de comandos por classe de dispositivo.
+ *
+ * Cada comando é registrado como uma fábrica que valida os parâmetros uma
+ * única vez e devolve um {@link Comando} já com os valores convertidos para
+ * tipos primitivos. Executar o comando compilado não envolve mais nenhuma
+ * comparação de Strings nem leitura de Map, o que permite às rotinas
+ * compilar suas ações uma vez e executá-las repetidamente.
+ *
+ * A tabela de comandos de cada classe (incluindo os herdados) é montada na
+ * primeira consulta e memorizada: o despacho é uma busca em dois mapas.
+ */
+public class MotorComandos {
+
+    /**
+     * Comando com os parâmetros já validados, aplicado a um dispositivo.
+     */
+    @FunctionalInterface
+    public interface Comando<T extends DispositivoIoT> {
+        void aplicar(T dispositivo);
+    }
+
+    /**
+     * Valida os parâmetros de uma ação e produz o comando correspondente.
+     * @throws IllegalArgumentException se algum parâmetro é inválido
+     */
+    @FunctionalInterface
+    public interface FabricaComando<T extends DispositivoIoT> {
+        Comando<T> compilar(Map<String, Object> parametros);
+    }
+
+    // Comandos declarados diretamente em cada classe
+    private final Map<Class<?>, Map<String, FabricaComando<?>>> declarados = new ConcurrentHashMap<>();
+    // Comandos efetivos por classe concreta (declarados + herdados), memorizados
+    private final Map<Class<?>, Map<String, FabricaComando<?>>> resolvidos = new ConcurrentHashMap<>();
+
+    public MotorComandos() {
+        registrarPadroes();
+    }
+
+    /**
+     * Registra (ou substitui) um comando para uma classe e suas subclasses.
+     */
+    public <T extends DispositivoIoT> void registrar(Class<T> classe, String nome, FabricaComando<T> fabrica) {
+        declarados.computeIfAbsent(classe, c -> new ConcurrentHashMap<>()).put(nome, fabrica);
+        resolvidos.clear();
+    }
+
+    /**
+     * Compila uma ação para a classe do dispositivo.
+     * @throws IllegalArgumentException se o comando não existe para a classe
+     *         ou os parâmetros são inválidos
+     */
+    @SuppressWarnings("unchecked")
+    public Comando<DispositivoIoT> compilar(Class<? extends DispositivoIoT> classe, String comando,
+                                            Map<String, Object> parametros) {
+        FabricaComando<?> fabrica = comandosDe(classe).get(comando);
+        if (fabrica == null) {
+            throw new IllegalArgumentException("Comando '" + comando + "' não suportado por " + classe.getSimpleName());
+        }
+        Map<String, Object> valores = parametros != null ? parametros : Collections.<String, Object>emptyMap();
+        return (Comando<DispositivoIoT>) fabrica.compilar(valores);
+    }
+
+    /**
+     * Nomes dos comandos disponíveis para a classe.
+     */
+    public Set<String> listarComandos(Class<? extends DispositivoIoT> classe) {
+        return comandosDe(classe).keySet();
+    }
+
+    private Map<String, FabricaComando<?>> comandosDe(Class<?> classe) {
+        Map<String, FabricaComando<?>> comandos = resolvidos.get(classe);
+        if (comandos == null) {
+            comandos = new HashMap<>();
+            // Da superclasse para a subclasse: a subclasse sobrescreve
+            Deque<Class<?>> hierarquia = new ArrayDeque<>();
+            for (Class<?> c = classe; c != null && DispositivoIoT.class.isAssignableFrom(c); c = c.getSuperclass()) {
+                hierarquia.push(c);
+            }
+            for (Class<?> c : hierarquia) {
+                Map<String, FabricaComando<?>> proprios = declarados.get(c);
+                if (proprios != null) {
+                    comandos.putAll(proprios);
+                }
+            }
+            comandos = Collections.unmodifiableMap(comandos);
+            resolvidos.put(classe, comandos);
+        }
+        return comandos;
+    }
+
+    // ---------------------------------------------------------------
+    // Comandos padrão
+    // ---------------------------------------------------------------
+
+    private void registrarPadroes() {
+        registrar(DispositivoIoT.class, "ligar", p -> d -> d.setOnline(true));
+        registrar(DispositivoIoT.class, "desligar", p -> d -> d.setOnline(false));
+
+        registrar(Lampada.class, "ligar", p -> l -> {
+            l.setOnline(true);
+            l.setLigada(true);
+        });
+        registrar(Lampada.class, "desligar", p -> l -> {
+            l.setOnline(false);
+            l.setLigada(false);
+        });
+        registrar(Lampada.class, "alternar", p -> l -> {
+            boolean ligar = !l.isLigada();
+            l.setLigada(ligar);
+            if (ligar) {
+                l.setOnline(true);
+            }
+        });
+        registrar(Lampada.class, "definirIntensidade", p -> {
+            int valor = parametroInteiro(p, "valor", 0, 100);
+            return l -> l.setIntensidade(valor);
+        });
+        registrar(Lampada.class, "definirTemperatura", p -> {
+            int valor = parametroInteiro(p, "valor", 1000, 10000);
+            return l -> l.setTemperatura(valor);
+        });
+
+        registrar(Termostato.class, "ligar", p -> t -> {
+            t.setOnline(true);
+            t.setStatus(true);
+        });
+        registrar(Termostato.class, "desligar", p -> t -> {
+            t.setOnline(false);
+            t.setStatus(false);
+        });
+        registrar(Termostato.class, "alternar", p -> t -> {
+            boolean ligar = !t.getStatus();
+            t.setStatus(ligar);
+            if (ligar) {
+                t.setOnline(true);
+            }
+        });
+        registrar(Termostato.class, "definirTemperatura", p -> {
+            double valor = parametroDecimal(p, "valor", 5, 40);
+            return t -> t.setTemperaturaDesejada(valor);
+        });
+
+        registrar(Sensor.class, "definirValor", p -> {
+            double valor = parametroDecimal(p, "valor", -Double.MAX_VALUE, Double.MAX_VALUE);
+            return s -> s.setValor(valor);
+        });
+    }
+
+    // ---------------------------------------------------------------
+    // Validação de parâmetros
+    // ---------------------------------------------------------------
+
+    public static int parametroInteiro(Map<String, Object> parametros, String nome, int minimo, int maximo) {
+        double valor = parametroDecimal(parametros, nome, minimo, maximo);
+        if (valor != Math.rint(valor)) {
+            throw new IllegalArgumentException("Parâmetro '" + nome + "' deve ser inteiro");
+        }
+        return (int) valor;
+    }
+
+    public static double parametroDecimal(Map<String, Object> parametros, String nome, double minimo, double maximo) {
+        Object valor = parametros.get(nome);
+        double numero;
+        if (valor instanceof Number) {
+            numero = ((Number) valor).doubleValue();
+        } else if (valor instanceof String) {
+            try {
+                numero = Double.parseDouble((String) valor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Parâmetro '" + nome + "' deve ser numérico: " + valor);
+            }
+        } else {
+            throw new IllegalArgumentException("Parâmetro '" + nome + "' é obrigatório");
+        }
+        if (numero < minimo || numero > maximo || Double.isNaN(numero)) {
+            throw new IllegalArgumentException("Parâmetro '" + nome + "' fora do intervalo [" + minimo + ", " + maximo + "]: " + valor);
+        }
+        return numero;
+    }
+}
@@ -0,0 +1,287 @@
+package smarthome.services;
+
+import smarthome.pojos.IdCompacto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Mapa concorrente de endereçamento aberto com chaves de 128 bits em arrays
+ * de long (sem nós nem objetos de chave), usado como registro de dispositivos.
+ *
+ * <ul>
+ *   <li>Leituras não usam lock: leem o valor (leitura volátil) e só então as
+ *       chaves da posição, que nunca mudam depois de publicadas.</li>
+ *   <li>Inserções e remoções são serializadas por um único lock (escritor único).</li>
+ *   <li>Substituições de valor ({@link #substituir}) são compare-and-set sem
+ *       lock, permitindo atualizações otimistas concorrentes.</li>
+ * </ul>
+ *
+ * Remoções deixam uma marca na posição (a chave permanece), para que leitores
+ * concorrentes nunca percam uma entrada deslocada. As marcas são descartadas
+ * no redimensionamento, que migra posição a posição: cada posição migrada
+ * recebe a marca MOVIDO e leitores/escritores que a encontram seguem para a
+ * nova tabela.
+ */
+public class RegistroConcorrente<V> {
+
+    private static final float FATOR_CARGA = 0.6f;
+    private static final Object REMOVIDO = new Object();
+    private static final Object MOVIDO = new Object();
+
+    private static final class Tabela {
+        final long[] msbs;
+        final long[] lsbs;
+        final AtomicReferenceArray<Object> valores;
+        final int mascara;
+        // Publicada antes da migração; seguida por quem encontra MOVIDO
+        volatile Tabela proxima;
+
+        Tabela(int capacidade) {
+            msbs = new long[capacidade];
+            lsbs = new long[capacidade];
+            valores = new AtomicReferenceArray<>(capacidade);
+            mascara = capacidade - 1;
+        }
+    }
+
+    private volatile Tabela tabela;
+    private volatile int tamanho;
+    // Posições ocupadas (inclui marcas de remoção); acessado só sob o lock
+    private int ocupadas;
+    private final Object lockEscrita = new Object();
+
+    public RegistroConcorrente() {
+        this(16);
+    }
+
+    public RegistroConcorrente(int capacidadeEsperada) {
+        int capacidade = Integer.highestOneBit(Math.max(4, (int) (capacidadeEsperada / FATOR_CARGA)) - 1) << 1;
+        tabela = new Tabela(capacidade);
+    }
+
+    // ---------------------------------------------------------------
+    // Leitura (sem lock)
+    // ---------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    public V get(long msb, long lsb) {
+        Tabela t = tabela;
+        while (true) {
+            int i = MapaIdCompacto.espalhar(msb, lsb) & t.mascara;
+            Object v;
+            boolean seguir = false;
+            while ((v = t.valores.get(i)) != null) {
+                if (t.msbs[i] == msb && t.lsbs[i] == lsb) {
+                    if (v == MOVIDO) {
+                        seguir = true;
+                        break;
+                    }
+                    return v == REMOVIDO ? null : (V) v;
+                }
+                i = (i + 1) & t.mascara;
+            }
+            if (!seguir) {
+                return null;
+            }
+            t = t.proxima;
+        }
+    }
+
+    public V get(IdCompacto id) {
+        return get(id.getMsb(), id.getLsb());
+    }
+
+    /**
+     * Busca pela forma textual sem alocar.
+     * @return Valor ou null se ausente ou se o texto não é um id canônico
+     */
+    public V get(String id) {
+        if (!IdCompacto.isCanonico(id)) {
+            return null;
+        }
+        return get(IdCompacto.msbDe(id), IdCompacto.lsbDe(id));
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Copia os valores presentes para uma nova lista (visão fracamente
+     * consistente, como a iteração de ConcurrentHashMap).
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> valores() {
+        List<V> lista = new ArrayList<>(tamanho);
+        Tabela t = tabela;
+        for (int i = 0; i <= t.mascara; i++) {
+            Object v = t.valores.get(i);
+            if (v == MOVIDO) {
+                // Redimensionamento em curso: recomeça na tabela nova
+                t = t.proxima;
+                lista.clear();
+                i = -1;
+            } else if (v != null && v != REMOVIDO) {
+                lista.add((V) v);
+            }
+        }
+        return lista;
+    }
+
+    // ---------------------------------------------------------------
+    // Substituição otimista (sem lock)
+    // ---------------------------------------------------------------
+
+    /**
+     * Substitui o valor da chave se o valor atual for {@code esperado}
+     * (comparação por identidade).
+     * @return true se a troca foi feita; false se o valor mudou ou a chave não existe
+     */
+    public boolean substituir(IdCompacto id, V esperado, V novo) {
+        if (esperado == null || novo == null) {
+            throw new IllegalArgumentException("Valores não podem ser null");
+        }
+        long msb = id.getMsb();
+        long lsb = id.getLsb();
+        Tabela t = tabela;
+        while (true) {
+            int i = MapaIdCompacto.espalhar(msb, lsb) & t.mascara;
+            Object v;
+            while ((v = t.valores.get(i)) != null) {
+                if (t.msbs[i] == msb && t.lsbs[i] == lsb) {
+                    break;
+                }
+                i = (i + 1) & t.mascara;
+            }
+            if (v == MOVIDO) {
+                t = t.proxima;
+                continue;
+            }
+            if (v == null || v == REMOVIDO || v != esperado) {
+                return false;
+            }
+            if (t.valores.compareAndSet(i, esperado, novo)) {
+                return true;
+            }
+            // CAS falhou: outro escritor venceu ou a posição foi migrada
+            if (t.valores.get(i) != MOVIDO) {
+                return false;
+            }
+            t = t.proxima;
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // Escrita estrutural (escritor único)
+    // ---------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    public V put(IdCompacto id, V valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Valor não pode ser null");
+        }
+        long msb = id.getMsb();
+        long lsb = id.getLsb();
+        synchronized (lockEscrita) {
+            Tabela t = tabela;
+            int i = MapaIdCompacto.espalhar(msb, lsb) & t.mascara;
+            Object v;
+            while ((v = t.valores.get(i)) != null) {
+                if (t.msbs[i] == msb && t.lsbs[i] == lsb) {
+                    Object anterior = t.valores.getAndSet(i, valor);
+                    if (anterior == REMOVIDO) {
+                        tamanho++;
+                        return null;
+                    }
+                    return (V) anterior;
+                }
+                i = (i + 1) & t.mascara;
+            }
+            // Chaves antes do valor: a escrita volátil do valor as publica
+            t.msbs[i] = msb;
+            t.lsbs[i] = lsb;
+            t.valores.set(i, valor);
+            tamanho++;
+            if (++ocupadas > (int) (t.valores.length() * FATOR_CARGA)) {
+                redimensionar(t);
+            }
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(IdCompacto id) {
+        long msb = id.getMsb();
+        long lsb = id.getLsb();
+        synchronized (lockEscrita) {
+            Tabela t = tabela;
+            int i = MapaIdCompacto.espalhar(msb, lsb) & t.mascara;
+            Object v;
+            while ((v = t.valores.get(i)) != null) {
+                if (t.msbs[i] == msb && t.lsbs[i] == lsb) {
+                    if (v == REMOVIDO) {
+                        return null;
+                    }
+                    Object anterior = t.valores.getAndSet(i, REMOVIDO);
+                    tamanho--;
+                    return (V) anterior;
+                }
+                i = (i + 1) & t.mascara;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Migra as entradas vivas para uma tabela nova (sem marcas de remoção).
+     * Chamado com o lock de escrita.
+     */
+    private void redimensionar(Tabela antiga) {
+        int capacidade = antiga.valores.length();
+        // Só dobra se houver de fato muitas entradas vivas; senão apenas limpa marcas
+        if (tamanho > capacidade * FATOR_CARGA / 2) {
+            capacidade *= 2;
+        }
+        Tabela nova = new Tabela(capacidade);
+        antiga.proxima = nova;
+
+        int vivas = 0;
+        for (int i = 0; i < antiga.valores.length(); i++) {
+            while (true) {
+                Object v = antiga.valores.get(i);
+                if (v == null || v == REMOVIDO) {
+                    break;
+                }
+                inserirNaMigracao(nova, antiga.msbs[i], antiga.lsbs[i], v);
+                if (antiga.valores.compareAndSet(i, v, MOVIDO)) {
+                    vivas++;
+                    break;
+                }
+                // Valor trocado por um substituir() concorrente: recopia
+                // (a mesma chave é encontrada e sobrescrita na tabela nova)
+            }
+        }
+        ocupadas = vivas;
+        tabela = nova;
+    }
+
+    private static void inserirNaMigracao(Tabela t, long msb, long lsb, Object valor) {
+        int i = MapaIdCompacto.espalhar(msb, lsb) & t.mascara;
+        while (true) {
+            Object v = t.valores.get(i);
+            if (v == null || (t.msbs[i] == msb && t.lsbs[i] == lsb)) {
+                break;
+            }
+            i = (i + 1) & t.mascara;
+        }
+        t.msbs[i] = msb;
+        t.lsbs[i] = lsb;
+        t.valores.set(i, valor);
+    }
+}
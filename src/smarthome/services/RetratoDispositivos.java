@@ -0,0 +1,271 @@
+package smarthome.services;
+
+import smarthome.pojos.Comodo;
+import smarthome.pojos.DispositivoIoT;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Estado publicado dos dispositivos e cômodos em uma versão. A versão
+ * pertence ao retrato: quem a lê sempre obtém um retrato igual ou mais
+ * novo. Cada cômodo publicado carrega a versão do retrato em que mudou pela
+ * última vez e o instante dessa mudança. Dispositivos e cômodos publicados
+ * nunca são alterados: escritas publicam cópias.
+ *
+ * Um retrato completo é montado só quando há dispositivos novos. Uma
+ * escrita deriva o retrato seguinte do atual: copia o bloco da listagem de
+ * cada dispositivo alterado e refaz só os cômodos afetados; o resto é
+ * compartilhado entre os dois retratos.
+ */
+final class RetratoDispositivos {
+
+    final long versao;
+    final ListaBlocos<DispositivoIoT> dispositivos;
+    // Cômodos por posição; null em uma posição = cômodo removido
+    private final ListaBlocos<Comodo> comodos;
+    // Posições só mudam com registros ou cômodos novos: compartilhadas entre retratos
+    private final MapaIdCompacto<Integer> posicoes;
+    private final Map<String, Integer> posicoesComodos;
+
+    private RetratoDispositivos(long versao, ListaBlocos<DispositivoIoT> dispositivos, ListaBlocos<Comodo> comodos,
+                                MapaIdCompacto<Integer> posicoes, Map<String, Integer> posicoesComodos) {
+        this.versao = versao;
+        this.dispositivos = dispositivos;
+        this.comodos = comodos;
+        this.posicoes = posicoes;
+        this.posicoesComodos = posicoesComodos;
+    }
+
+    Comodo comodo(String nome) {
+        Integer posicao = nome != null ? posicoesComodos.get(nome) : null;
+        return posicao != null ? comodos.get(posicao) : null;
+    }
+
+    /**
+     * Monta o retrato seguinte ao anterior com todos os dispositivos.
+     * Cômodos com os mesmos dispositivos do anterior são reaproveitados
+     * (mantêm versão e instante); os demais recebem a versão nova.
+     * @param comodosFixos Cômodos publicados mesmo sem dispositivos
+     */
+    static RetratoDispositivos montar(RetratoDispositivos anterior, List<DispositivoIoT> lista,
+                                      Collection<String> comodosFixos, long agora) {
+        long versao = anterior != null ? anterior.versao + 1 : 1;
+
+        Map<String, List<DispositivoIoT>> porComodo = new LinkedHashMap<>();
+        for (String nome : comodosFixos) {
+            porComodo.put(nome, new ArrayList<>());
+        }
+        MapaIdCompacto<Integer> posicoes = new MapaIdCompacto<>(lista.size());
+        for (int i = 0; i < lista.size(); i++) {
+            DispositivoIoT dispositivo = lista.get(i);
+            posicoes.put(dispositivo.getIdCompacto(), i);
+            String nome = dispositivo.getComodo();
+            if (nome != null) {
+                porComodo.computeIfAbsent(nome, k -> new ArrayList<>()).add(dispositivo);
+            }
+        }
+
+        List<Comodo> comodos = new ArrayList<>(porComodo.size());
+        Map<String, Integer> posicoesComodos = new HashMap<>();
+        for (Map.Entry<String, List<DispositivoIoT>> entrada : porComodo.entrySet()) {
+            Comodo comodo = anterior != null ? anterior.comodo(entrada.getKey()) : null;
+            if (comodo == null || !mesmosDispositivos(comodo.getDispositivos(), entrada.getValue())) {
+                comodo = novoComodo(entrada.getKey(), entrada.getValue(), versao, agora);
+            }
+            posicoesComodos.put(entrada.getKey(), comodos.size());
+            comodos.add(comodo);
+        }
+        return new RetratoDispositivos(versao, ListaBlocos.de(lista), ListaBlocos.de(comodos),
+                posicoes, posicoesComodos);
+    }
+
+    /**
+     * Retrato seguinte com os dispositivos informados no lugar das versões
+     * deste retrato.
+     * @param atuais Valores atuais no registro (um por dispositivo), lidos
+     *        depois deste retrato
+     * @param comodosFixos Cômodos mantidos mesmo quando ficam vazios
+     * @return Retrato novo; este retrato se já contém todos os valores; ou
+     *         null se algum dispositivo não está nele (registrado depois: só
+     *         um retrato completo o inclui)
+     */
+    RetratoDispositivos comAlterados(Collection<DispositivoIoT> atuais, Collection<String> comodosFixos, long agora) {
+        int[] indices = new int[atuais.size()];
+        Object[] valores = new Object[atuais.size()];
+        int quantidade = 0;
+        Map<String, ComodoEmEdicao> editados = new LinkedHashMap<>();
+        for (DispositivoIoT atual : atuais) {
+            Integer posicao = posicoes.get(atual.getIdCompacto());
+            if (posicao == null) {
+                return null;
+            }
+            DispositivoIoT anterior = dispositivos.get(posicao);
+            if (anterior == atual) {
+                continue;
+            }
+            indices[quantidade] = posicao;
+            valores[quantidade++] = atual;
+
+            String de = anterior.getComodo();
+            String para = atual.getComodo();
+            if (Objects.equals(de, para)) {
+                if (de != null) {
+                    editar(editados, de).substituir(anterior, atual);
+                }
+            } else {
+                if (de != null) {
+                    editar(editados, de).remover(anterior);
+                }
+                if (para != null) {
+                    editar(editados, para).adicionar(atual);
+                }
+            }
+        }
+        if (quantidade == 0) {
+            return this;
+        }
+
+        long nova = versao + 1;
+        ListaBlocos<Comodo> novosComodos = comodos;
+        Map<String, Integer> novasPosicoesComodos = posicoesComodos;
+        int[] indicesComodos = new int[editados.size()];
+        Object[] valoresComodos = new Object[editados.size()];
+        int alterados = 0;
+        for (Map.Entry<String, ComodoEmEdicao> entrada : editados.entrySet()) {
+            String nome = entrada.getKey();
+            List<DispositivoIoT> lista = entrada.getValue().concluir();
+            Comodo comodo = lista.isEmpty() && !comodosFixos.contains(nome)
+                    ? null : novoComodo(nome, lista, nova, agora);
+            Integer posicao = novasPosicoesComodos.get(nome);
+            if (posicao != null) {
+                indicesComodos[alterados] = posicao;
+                valoresComodos[alterados++] = comodo;
+            } else if (comodo != null) {
+                // Cômodo novo: o índice de nomes é copiado (raro)
+                if (novasPosicoesComodos == posicoesComodos) {
+                    novasPosicoesComodos = new HashMap<>(posicoesComodos);
+                }
+                novasPosicoesComodos.put(nome, novosComodos.size());
+                novosComodos = novosComodos.comAdicionado(comodo);
+            }
+        }
+        novosComodos = novosComodos.com(indicesComodos, valoresComodos, alterados);
+        return new RetratoDispositivos(nova, dispositivos.com(indices, valores, quantidade), novosComodos,
+                posicoes, novasPosicoesComodos);
+    }
+
+    private ComodoEmEdicao editar(Map<String, ComodoEmEdicao> editados, String nome) {
+        ComodoEmEdicao editado = editados.get(nome);
+        if (editado == null) {
+            Comodo comodo = comodo(nome);
+            editado = new ComodoEmEdicao(comodo != null
+                    ? comodo.getDispositivos() : Collections.<DispositivoIoT>emptyList());
+            editados.put(nome, editado);
+        }
+        return editado;
+    }
+
+    private static Comodo novoComodo(String nome, List<DispositivoIoT> dispositivos, long versao, long agora) {
+        Comodo comodo = new Comodo(nome);
+        comodo.setDispositivos(Collections.unmodifiableList(dispositivos));
+        comodo.setVersao(versao);
+        comodo.setAlteradoEm(agora);
+        return comodo;
+    }
+
+    /**
+     * Mesmas instâncias na mesma ordem (dispositivos publicados são imutáveis).
+     */
+    private static boolean mesmosDispositivos(List<DispositivoIoT> a, List<DispositivoIoT> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cópia da lista de um cômodo durante a derivação de um retrato. A
+     * primeira busca percorre a lista; a partir da segunda (lotes), um índice
+     * por identidade evita percorrer o cômodo a cada dispositivo.
+     */
+    private static final class ComodoEmEdicao {
+        private final ArrayList<DispositivoIoT> lista;
+        private IdentityHashMap<DispositivoIoT, Integer> indice;
+        private int buscas;
+        private int removidos;
+
+        ComodoEmEdicao(List<DispositivoIoT> dispositivos) {
+            this.lista = new ArrayList<>(dispositivos);
+        }
+
+        void substituir(DispositivoIoT anterior, DispositivoIoT atual) {
+            int posicao = posicao(anterior);
+            lista.set(posicao, atual);
+            if (indice != null) {
+                indice.remove(anterior);
+                indice.put(atual, posicao);
+            }
+        }
+
+        void remover(DispositivoIoT anterior) {
+            int posicao = posicao(anterior);
+            // Compactado em concluir(), para não deslocar as posições do índice
+            lista.set(posicao, null);
+            removidos++;
+            if (indice != null) {
+                indice.remove(anterior);
+            }
+        }
+
+        void adicionar(DispositivoIoT atual) {
+            if (indice != null) {
+                indice.put(atual, lista.size());
+            }
+            lista.add(atual);
+        }
+
+        private int posicao(DispositivoIoT dispositivo) {
+            if (indice == null && ++buscas > 1) {
+                indice = new IdentityHashMap<>(lista.size() * 2);
+                for (int i = 0; i < lista.size(); i++) {
+                    if (lista.get(i) != null) {
+                        indice.put(lista.get(i), i);
+                    }
+                }
+            }
+            if (indice != null) {
+                Integer posicao = indice.get(dispositivo);
+                if (posicao != null) {
+                    return posicao;
+                }
+            } else {
+                for (int i = 0; i < lista.size(); i++) {
+                    if (lista.get(i) == dispositivo) {
+                        return i;
+                    }
+                }
+            }
+            throw new IllegalStateException("Dispositivo ausente do cômodo publicado: " + dispositivo.getId());
+        }
+
+        List<DispositivoIoT> concluir() {
+            if (removidos > 0) {
+                lista.removeIf(Objects::isNull);
+            }
+            return lista;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package smarthome.services;
 
+import smarthome.interfaces.ConflitoVersaoException;
 import smarthome.interfaces.ISmartHomeService;
+import smarthome.metricas.Contador;
+import smarthome.metricas.Histograma;
+import smarthome.metricas.RegistroMetricas;
 import smarthome.pojos.DispositivoIoT;
 import smarthome.pojos.Lampada;
 import smarthome.pojos.Sensor;
@@ -9,13 +13,25 @@ import smarthome.pojos.Rotina;
 import smarthome.pojos.Alerta;
 import smarthome.pojos.Comodo;
 import smarthome.pojos.Acao;
+import smarthome.pojos.IdCompacto;
+import smarthome.pojos.ResultadoLote;
 
 import java.time.LocalDateTime;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 /**
  * Implementação do serviço Smart Home.
@@ -23,17 +39,110 @@ import java.util.Map;
  */
 public class SmartHomeServiceImpl implements ISmartHomeService {
     
-    private Map<String, DispositivoIoT> dispositivos;
-    private Map<String, Rotina> rotinas;
-    private List<Alerta> alertas;
-    private Map<String, Comodo> comodos;
+    // Registros indexados pelo id de 128 bits (a String só existe na borda da API)
+    // Dispositivos: leituras sem lock, inserções com escritor único
+    private RegistroConcorrente<DispositivoIoT> dispositivos;
+    private MapaIdCompacto<Rotina> rotinas;
+    private ArmazemAlertas alertas;
+    // Agrupa alertas repetidos e limita a taxa antes do armazenamento
+    private final FiltroAlertas filtroAlertas = new FiltroAlertas();
+    // Comandos por classe de dispositivo; rotinas guardam suas ações já compiladas
+    private final MotorComandos motorComandos = new MotorComandos();
+    private final Map<String, RotinaCompilada> rotinasCompiladas = new ConcurrentHashMap<>();
+    // Grupos nomeados de dispositivos (listas imutáveis de ids)
+    private final Map<String, List<String>> grupos = new ConcurrentHashMap<>();
+    
+    // Retratos imutáveis publicados a cada escrita: leitores os obtêm em O(1),
+    // sem cópia e sem ver estados intermediários (ver RetratoDispositivos)
+    private final AtomicReference<RetratoDispositivos> retratoDispositivos = new AtomicReference<>();
+    private volatile RetratoLista<Rotina> retratoRotinas;
+    private volatile RetratoLista<Alerta> retratoAlertas;
+    // Cômodos conhecidos mesmo sem dispositivos (ordem de cadastro)
+    private final Set<String> nomesComodos = new LinkedHashSet<>();
+    // Serializa a criação de rotinas; dispositivos usam compare-and-set
+    private final Object lockEscrita = new Object();
+    // Atualizações de dispositivo refeitas porque outro escritor venceu o CAS
+    private final AtomicLong novasTentativas = new AtomicLong();
+    
+    // Versão esperada que desativa a verificação
+    private static final long QUALQUER_VERSAO = -1;
+    // Abaixo disso um lote é executado na própria thread (o paralelismo não compensa)
+    private static final int LIMIAR_LOTE_PARALELO = 64;
+    
+    // Limites do armazém de alertas (os mais antigos são descartados)
+    private static final int CAPACIDADE_ALERTAS = 4096;
+    private static final long RETENCAO_ALERTAS_MS = 24 * 60 * 60 * 1000L;
+    
+    // Versões por coleção (usadas para ETag / requisições condicionais); a de
+    // dispositivos é a do retrato publicado
+    private final AtomicLong versaoRotinas = new AtomicLong();
+    private final AtomicLong versaoAlertas = new AtomicLong();
+    
+    // Métricas (séries obtidas uma vez; o caminho quente só incrementa)
+    private final Contador acoesExecutadas = RegistroMetricas.contador("smarthome_acoes_total",
+            "Ações executadas em dispositivos", "resultado", "ok");
+    private final Contador acoesNaoEncontradas = RegistroMetricas.contador("smarthome_acoes_total",
+            "Ações executadas em dispositivos", "resultado", "nao_encontrado");
+    private final Contador acoesInvalidas = RegistroMetricas.contador("smarthome_acoes_total",
+            "Ações executadas em dispositivos", "resultado", "invalida");
+    private final Histograma latenciaAcoes = RegistroMetricas.histogramaTempo("smarthome_acao_latencia_segundos",
+            "Tempo de executarAcao (compilação, cópia, CAS e publicação)");
+    private final Contador rotinasExecutadas = RegistroMetricas.contador("smarthome_rotinas_executadas_total",
+            "Rotinas executadas");
+    private final Histograma latenciaRotinas = RegistroMetricas.histogramaTempo("smarthome_rotina_latencia_segundos",
+            "Tempo de execução das rotinas");
+    private final Histograma latenciaLotes = RegistroMetricas.histogramaTempo("smarthome_lote_latencia_segundos",
+            "Tempo dos comandos em lote (cômodos e grupos)");
+    private final Contador dispositivosAlteradosEmLote = RegistroMetricas.contador(
+            "smarthome_lote_dispositivos_alterados_total", "Dispositivos alterados por comandos em lote");
     
     public SmartHomeServiceImpl() {
-        this.dispositivos = new HashMap<>();
-        this.rotinas = new HashMap<>();
-        this.alertas = new ArrayList<>();
-        this.comodos = new HashMap<>();
+        this.dispositivos = new RegistroConcorrente<>();
+        this.rotinas = new MapaIdCompacto<>();
+        this.alertas = new ArmazemAlertas(CAPACIDADE_ALERTAS, RETENCAO_ALERTAS_MS);
         inicializarDados();
+        registrarMedidores();
+    }
+    
+    /**
+     * Medidores lidos na exportação (a última instância do serviço criada é a exportada).
+     */
+    private void registrarMedidores() {
+        RegistroMetricas.medidor("smarthome_dispositivos", "Dispositivos registrados", dispositivos::size);
+        RegistroMetricas.medidor("smarthome_dispositivos_cas_novas_tentativas",
+                "Atualizações de dispositivo refeitas porque outro escritor venceu o CAS", novasTentativas::get);
+        RegistroMetricas.medidor("smarthome_dispositivos_online", "Dispositivos online", this::contarOnline);
+        RegistroMetricas.medidor("smarthome_lampadas_ligadas", "Lâmpadas ligadas", this::contarLampadasLigadas);
+        RegistroMetricas.medidor("smarthome_alertas_retidos", "Alertas no armazém", alertas::getTamanho);
+        RegistroMetricas.medidor("smarthome_alertas_filtro", "Alertas processados pelo filtro",
+                filtroAlertas::getRecebidos, "resultado", "recebido");
+        RegistroMetricas.medidor("smarthome_alertas_filtro", "Alertas processados pelo filtro",
+                filtroAlertas::getAgrupados, "resultado", "agrupado");
+        RegistroMetricas.medidor("smarthome_alertas_filtro", "Alertas processados pelo filtro",
+                filtroAlertas::getDescartados, "resultado", "descartado");
+    }
+    
+    private static final class RetratoLista<T> {
+        final long versao;
+        final List<T> itens;
+        
+        RetratoLista(long versao, List<T> itens) {
+            this.versao = versao;
+            this.itens = itens;
+        }
+    }
+    
+    /**
+     * Ações de uma rotina com comandos e parâmetros já validados.
+     */
+    private static final class RotinaCompilada {
+        final String[] dispositivos;
+        final MotorComandos.Comando<DispositivoIoT>[] comandos;
+        
+        RotinaCompilada(String[] dispositivos, MotorComandos.Comando<DispositivoIoT>[] comandos) {
+            this.dispositivos = dispositivos;
+            this.comandos = comandos;
+        }
     }
     
     private void inicializarDados() {
@@ -42,34 +151,128 @@ public class SmartHomeServiceImpl implements ISmartHomeService {
         Termostato t1 = new Termostato("Ar Condicionado", "Quarto", true, 24.0, 22.0);
         Sensor s1 = new Sensor("Sensor Movimento", "Corredor", true, "Movimento", false, 0.0);
         
-        dispositivos.put(l1.getId(), l1);
-        dispositivos.put(t1.getId(), t1);
-        dispositivos.put(s1.getId(), s1);
-        
-        // Inicializa cômodos
-        Comodo sala = new Comodo("Sala");
-        sala.setDispositivos(new ArrayList<>());
-        sala.adicionarDispositivo(l1);
-        comodos.put("Sala", sala);
-        
-        Comodo quarto = new Comodo("Quarto");
-        quarto.setDispositivos(new ArrayList<>());
-        quarto.adicionarDispositivo(t1);
-        comodos.put("Quarto", quarto);
+        // Inicializa cômodos (a lista de cada um é derivada dos dispositivos)
+        nomesComodos.add("Sala");
+        nomesComodos.add("Quarto");
+        registrarDispositivos(Arrays.asList(l1, t1, s1));
         
         // Inicializa algumas rotinas
         List<Acao> acoesRotina1 = new ArrayList<>();
         acoesRotina1.add(new Acao(l1.getId(), "ligar", new HashMap<>()));
         Rotina rotina1 = new Rotina("Acordar", acoesRotina1, LocalDateTime.now().plusHours(1));
-        rotinas.put(rotina1.getId(), rotina1);
+        rotinasCompiladas.put(rotina1.getId(), compilarRotina(rotina1));
+        rotinas.put(rotina1.getIdCompacto(), rotina1);
+        publicarRotinas();
         
         // Inicializa alguns alertas
-        alertas.add(new Alerta("Temperatura Alta", "Temperatura acima de 30°C", "Quarto"));
+        registrarAlerta(new Alerta("Temperatura Alta", "Temperatura acima de 30°C", "Quarto"));
+    }
+    
+    /**
+     * Registra dispositivos novos (ex.: casas sintéticas de benchmarks) e
+     * publica o retrato uma única vez.
+     */
+    public void registrarDispositivos(Collection<? extends DispositivoIoT> novos) {
+        for (DispositivoIoT dispositivo : novos) {
+            IdCompacto id = dispositivo.getIdCompacto();
+            if (id == null) {
+                throw new IllegalArgumentException("Id de dispositivo não canônico: " + dispositivo.getId());
+            }
+            dispositivos.put(id, dispositivo);
+        }
+        // Cômodos que ganharam dispositivos recebem versão nova no retrato
+        publicarDispositivos();
+    }
+    
+    /**
+     * Monta e publica um retrato completo de dispositivos e cômodos, sem
+     * lock, com a versão seguinte à do retrato atual (ex.: dispositivos
+     * novos). O retrato atual é lido antes do registro e substituído com
+     * compare-and-set: se outro escritor publicou no meio, o retrato é
+     * refeito. Assim o último retrato publicado sempre contém as escritas
+     * feitas no registro antes da sua publicação, e a versão (da listagem e
+     * de cada cômodo) só fica visível junto com o estado que ela identifica.
+     */
+    private void publicarDispositivos() {
+        while (true) {
+            RetratoDispositivos atual = retratoDispositivos.get();
+            RetratoDispositivos novo = RetratoDispositivos.montar(atual, dispositivos.valores(), nomesComodos,
+                    System.currentTimeMillis());
+            if (retratoDispositivos.compareAndSet(atual, novo)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Publica dispositivos alterados derivando o retrato seguinte do atual:
+     * só os blocos da listagem e os cômodos afetados são copiados, então o
+     * custo não cresce com a casa. Mesmas garantias de
+     * {@link #publicarDispositivos}: o valor de cada dispositivo é relido do
+     * registro depois de ler o retrato atual, e o compare-and-set refaz a
+     * derivação se outro escritor publicou no meio.
+     */
+    private void publicarAlterados(List<DispositivoIoT> alterados) {
+        // Um valor por dispositivo: uma rotina pode alterar o mesmo mais de uma vez
+        Collection<IdCompacto> ids;
+        if (alterados.size() == 1) {
+            ids = Collections.singletonList(alterados.get(0).getIdCompacto());
+        } else {
+            ids = new LinkedHashSet<>(alterados.size() * 2);
+            for (DispositivoIoT alterado : alterados) {
+                ids.add(alterado.getIdCompacto());
+            }
+        }
+        List<DispositivoIoT> atuais = new ArrayList<>(ids.size());
+        while (true) {
+            RetratoDispositivos atual = retratoDispositivos.get();
+            atuais.clear();
+            for (IdCompacto id : ids) {
+                DispositivoIoT registrado = dispositivos.get(id);
+                if (registrado != null) {
+                    atuais.add(registrado);
+                }
+            }
+            RetratoDispositivos novo = atual.comAlterados(atuais, nomesComodos, System.currentTimeMillis());
+            if (novo == null) {
+                // Dispositivo registrado depois do retrato atual
+                publicarDispositivos();
+                return;
+            }
+            if (novo == atual || retratoDispositivos.compareAndSet(atual, novo)) {
+                return;
+            }
+        }
+    }
+    
+    private long contarOnline() {
+        long online = 0;
+        for (DispositivoIoT dispositivo : listarDispositivos()) {
+            if (dispositivo.getOnline()) {
+                online++;
+            }
+        }
+        return online;
+    }
+    
+    private long contarLampadasLigadas() {
+        long ligadas = 0;
+        for (DispositivoIoT dispositivo : listarDispositivos()) {
+            if (dispositivo instanceof Lampada && ((Lampada) dispositivo).isLigada()) {
+                ligadas++;
+            }
+        }
+        return ligadas;
+    }
+    
+    private void publicarRotinas() {
+        retratoRotinas = new RetratoLista<>(versaoRotinas.get(),
+                Collections.unmodifiableList(rotinas.valores()));
     }
     
     @Override
     public List<DispositivoIoT> listarDispositivos() {
-        return new ArrayList<>(dispositivos.values());
+        return retratoDispositivos.get().dispositivos;
     }
     
     @Override
@@ -79,52 +282,304 @@ public class SmartHomeServiceImpl implements ISmartHomeService {
     
     @Override
     public DispositivoIoT atualizarDispositivo(String dispositivoId, DispositivoIoT dispositivo) {
+        return atualizarDispositivo(dispositivoId, dispositivo, QUALQUER_VERSAO);
+    }
+    
+    @Override
+    public DispositivoIoT atualizarDispositivo(String dispositivoId, DispositivoIoT dispositivo, long versaoEsperada) {
         if (dispositivoId == null || dispositivo == null) {
             return null;
         }
         
-        DispositivoIoT existente = dispositivos.get(dispositivoId);
-        if (existente == null) {
+        return alterarDispositivo(dispositivoId, versaoEsperada, atualizado -> {
+            atualizado.setNome(dispositivo.getNome());
+            atualizado.setDescricao(dispositivo.getDescricao());
+            atualizado.setComodo(dispositivo.getComodo());
+            atualizado.setOnline(dispositivo.getOnline());
+        });
+    }
+    
+    @Override
+    public DispositivoIoT atualizarCampos(String dispositivoId, Map<String, Object> campos) {
+        return atualizarCampos(dispositivoId, campos, QUALQUER_VERSAO);
+    }
+    
+    @Override
+    public DispositivoIoT atualizarCampos(String dispositivoId, Map<String, Object> campos, long versaoEsperada) {
+        if (dispositivoId == null || campos == null) {
             return null;
         }
         
-        // Atualiza campos (passagem por valor - objeto local)
-        existente.setNome(dispositivo.getNome());
-        existente.setDescricao(dispositivo.getDescricao());
-        existente.setComodo(dispositivo.getComodo());
-        existente.setOnline(dispositivo.getOnline());
+        // Aplicados à cópia: um campo inválido descarta a cópia inteira
+        return alterarDispositivo(dispositivoId, versaoEsperada, dispositivo -> {
+            for (Map.Entry<String, Object> campo : campos.entrySet()) {
+                if (!dispositivo.aplicarCampo(campo.getKey(), campo.getValue())) {
+                    throw new IllegalArgumentException("Campo desconhecido ou não alterável: " + campo.getKey());
+                }
+            }
+        });
+    }
+    
+    @Override
+    public DispositivoIoT aplicarMergePatch(String dispositivoId, Map<String, Object> patch) {
+        return aplicarMergePatch(dispositivoId, patch, QUALQUER_VERSAO);
+    }
+    
+    @Override
+    public DispositivoIoT aplicarMergePatch(String dispositivoId, Map<String, Object> patch, long versaoEsperada) {
+        if (dispositivoId == null || patch == null) {
+            return null;
+        }
         
-        dispositivos.put(dispositivoId, existente);
-        return existente;
+        return alterarDispositivo(dispositivoId, versaoEsperada, dispositivo -> {
+            for (Map.Entry<String, Object> membro : patch.entrySet()) {
+                String campo = membro.getKey();
+                if (membro.getValue() == null) {
+                    if (!dispositivo.removerCampo(campo)) {
+                        throw new IllegalArgumentException("Campo desconhecido ou obrigatório não pode ser removido: " + campo);
+                    }
+                } else if (!dispositivo.aplicarCampo(campo, membro.getValue())) {
+                    throw new IllegalArgumentException("Campo desconhecido ou não alterável: " + campo);
+                }
+            }
+        });
     }
     
     @Override
     public DispositivoIoT executarAcao(String dispositivoId, String comando) {
-        DispositivoIoT dispositivo = dispositivos.get(dispositivoId);
-        if (dispositivo == null) {
+        return executarAcao(dispositivoId, comando, null);
+    }
+    
+    @Override
+    public DispositivoIoT executarAcao(String dispositivoId, String comando, Map<String, Object> parametros) {
+        long inicio = System.nanoTime();
+        try {
+            DispositivoIoT dispositivo = dispositivos.get(dispositivoId);
+            if (dispositivo == null) {
+                acoesNaoEncontradas.incrementar();
+                return null;
+            }
+            // A classe de um dispositivo não muda entre cópias: o comando compilado
+            // continua válido se o CAS precisar ser refeito
+            MotorComandos.Comando<DispositivoIoT> compilado =
+                motorComandos.compilar(dispositivo.getClass(), comando, parametros);
+            DispositivoIoT alterado = alterarDispositivo(dispositivoId, QUALQUER_VERSAO, compilado);
+            if (alterado != null) {
+                acoesExecutadas.incrementar();
+            } else {
+                acoesNaoEncontradas.incrementar();
+            }
+            return alterado;
+        } catch (IllegalArgumentException e) {
+            acoesInvalidas.incrementar();
+            throw e;
+        } finally {
+            latenciaAcoes.registrarDesde(inicio);
+        }
+    }
+    
+    /**
+     * Aplica uma alteração a uma cópia do dispositivo e a publica com
+     * compare-and-set no registro. Se outro escritor publicou antes, refaz a
+     * alteração sobre a versão nova (sem lock); com versão esperada, a
+     * mudança concorrente é um conflito.
+     * @return Dispositivo publicado, ou null se não encontrado
+     */
+    private DispositivoIoT alterarDispositivo(String dispositivoId, long versaoEsperada,
+                                              MotorComandos.Comando<DispositivoIoT> alteracao) {
+        DispositivoIoT alterado = aplicarAlteracao(dispositivoId, versaoEsperada, alteracao);
+        if (alterado != null) {
+            publicarAlterados(Collections.singletonList(alterado));
+        }
+        return alterado;
+    }
+    
+    /**
+     * Laço de compare-and-set de {@link #alterarDispositivo} sem publicar o
+     * retrato; quem altera vários dispositivos publica uma vez no final. As
+     * versões da listagem e dos cômodos só avançam nessa publicação.
+     */
+    private DispositivoIoT aplicarAlteracao(String dispositivoId, long versaoEsperada,
+                                            MotorComandos.Comando<DispositivoIoT> alteracao) {
+        while (true) {
+            DispositivoIoT existente = dispositivos.get(dispositivoId);
+            if (existente == null) {
+                return null;
+            }
+            if (versaoEsperada != QUALQUER_VERSAO && existente.getVersao() != versaoEsperada) {
+                throw new ConflitoVersaoException("dispositivo " + dispositivoId, versaoEsperada, existente.getVersao());
+            }
+            
+            // Altera uma cópia; a versão publicada continua intacta para os leitores
+            DispositivoIoT alterado = existente.copiar();
+            alteracao.aplicar(alterado);
+            // Cada setter avança a versão: a atualização inteira conta uma vez
+            alterado.concluirAlteracao(existente.getVersao());
+            
+            if (dispositivos.substituir(existente.getIdCompacto(), existente, alterado)) {
+                return alterado;
+            }
+            novasTentativas.incrementAndGet();
+        }
+    }
+    
+    // ---------------------------------------------------------------
+    // Operações em lote (cômodos e grupos)
+    // ---------------------------------------------------------------
+    
+    @Override
+    public ResultadoLote executarAcaoComodo(String nomeComodo, String tipo, String comando,
+                                            Map<String, Object> parametros) {
+        Comodo comodo = nomeComodo != null ? obterComodo(nomeComodo) : null;
+        if (comodo == null) {
             return null;
         }
+        List<String> ids = new ArrayList<>(comodo.getDispositivos().size());
+        for (DispositivoIoT dispositivo : comodo.getDispositivos()) {
+            ids.add(dispositivo.getId());
+        }
+        return executarEmLote("comodo:" + nomeComodo, ids, tipo, comando, parametros);
+    }
+    
+    @Override
+    public ResultadoLote executarAcaoGrupo(String nomeGrupo, String tipo, String comando,
+                                           Map<String, Object> parametros) {
+        List<String> ids;
+        if (GRUPO_TODOS.equals(nomeGrupo)) {
+            List<DispositivoIoT> todos = listarDispositivos();
+            ids = new ArrayList<>(todos.size());
+            for (DispositivoIoT dispositivo : todos) {
+                ids.add(dispositivo.getId());
+            }
+        } else {
+            ids = nomeGrupo != null ? grupos.get(nomeGrupo) : null;
+            if (ids == null) {
+                return null;
+            }
+        }
+        return executarEmLote("grupo:" + nomeGrupo, ids, tipo, comando, parametros);
+    }
+    
+    @Override
+    public List<String> definirGrupo(String nomeGrupo, List<String> dispositivoIds) {
+        if (nomeGrupo == null || nomeGrupo.trim().isEmpty() || GRUPO_TODOS.equals(nomeGrupo)) {
+            throw new IllegalArgumentException("Nome de grupo inválido: " + nomeGrupo);
+        }
+        if (dispositivoIds == null || dispositivoIds.isEmpty()) {
+            grupos.remove(nomeGrupo);
+            return Collections.emptyList();
+        }
+        // Ids únicos, na ordem informada; todos devem existir
+        Set<String> ids = new LinkedHashSet<>();
+        for (String id : dispositivoIds) {
+            DispositivoIoT dispositivo = dispositivos.get(id);
+            if (dispositivo == null) {
+                throw new IllegalArgumentException("Dispositivo não encontrado: " + id);
+            }
+            ids.add(dispositivo.getId());
+        }
+        List<String> membros = Collections.unmodifiableList(new ArrayList<>(ids));
+        grupos.put(nomeGrupo, membros);
+        return membros;
+    }
+    
+    @Override
+    public Map<String, List<String>> listarGrupos() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(grupos));
+    }
+    
+    /**
+     * Aplica um comando aos dispositivos em paralelo. O comando é compilado
+     * uma vez por classe; dispositivos cuja classe não suporta o comando (ou
+     * de outro tipo que o filtro) são ignorados. Cada dispositivo é alterado
+     * com o mesmo compare-and-set das ações individuais, e o retrato é
+     * publicado uma única vez no final; as versões da listagem e dos cômodos
+     * só avançam nessa publicação.
+     * @param tipo Filtro pelo tipo do dispositivo (ex.: "Lampada"); null = todos
+     * @throws IllegalArgumentException se os parâmetros são inválidos
+     */
+    private ResultadoLote executarEmLote(String alvo, List<String> ids, String tipo, String comando,
+                                         Map<String, Object> parametros) {
+        long inicio = System.nanoTime();
+        ResultadoLote resultado = new ResultadoLote(alvo, comando);
         
-        // Simula execução de ação baseada no comando
-        if ("ligar".equals(comando)) {
-            dispositivo.setOnline(true);
-            if (dispositivo instanceof Lampada) {
-                ((Lampada) dispositivo).setLigada(true);
+        List<String> selecionados = new ArrayList<>(ids.size());
+        List<MotorComandos.Comando<DispositivoIoT>> comandos = new ArrayList<>(ids.size());
+        Map<Class<?>, MotorComandos.Comando<DispositivoIoT>> porClasse = new HashMap<>();
+        int ignorados = 0;
+        int naoEncontrados = 0;
+        for (String id : ids) {
+            DispositivoIoT dispositivo = dispositivos.get(id);
+            if (dispositivo == null) {
+                resultado.getFalhas().put(id, "Dispositivo não encontrado");
+                naoEncontrados++;
+                continue;
+            }
+            Class<? extends DispositivoIoT> classe = dispositivo.getClass();
+            if (tipo != null && !tipo.equalsIgnoreCase(classe.getSimpleName())) {
+                continue;
             }
-        } else if ("desligar".equals(comando)) {
-            dispositivo.setOnline(false);
-            if (dispositivo instanceof Lampada) {
-                ((Lampada) dispositivo).setLigada(false);
+            if (!porClasse.containsKey(classe)) {
+                // Parâmetros inválidos falham o lote inteiro, antes de alterar qualquer dispositivo
+                porClasse.put(classe, motorComandos.listarComandos(classe).contains(comando)
+                        ? motorComandos.compilar(classe, comando, parametros) : null);
             }
+            MotorComandos.Comando<DispositivoIoT> compilado = porClasse.get(classe);
+            if (compilado == null) {
+                ignorados++;
+                continue;
+            }
+            selecionados.add(id);
+            comandos.add(compilado);
+        }
+        
+        int n = selecionados.size();
+        DispositivoIoT[] alterados = new DispositivoIoT[n];
+        String[] erros = new String[n];
+        IntStream indices = IntStream.range(0, n);
+        if (n >= LIMIAR_LOTE_PARALELO) {
+            indices = indices.parallel();
         }
+        indices.forEach(i -> {
+            try {
+                alterados[i] = aplicarAlteracao(selecionados.get(i), QUALQUER_VERSAO, comandos.get(i));
+                if (alterados[i] == null) {
+                    erros[i] = "Dispositivo não encontrado";
+                }
+            } catch (RuntimeException e) {
+                erros[i] = e.getMessage();
+            }
+        });
         
-        dispositivos.put(dispositivoId, dispositivo);
-        return dispositivo;
+        for (int i = 0; i < n; i++) {
+            if (alterados[i] != null) {
+                resultado.getAlterados().add(alterados[i]);
+            } else {
+                resultado.getFalhas().put(selecionados.get(i), erros[i]);
+            }
+        }
+        if (!resultado.getAlterados().isEmpty()) {
+            publicarAlterados(resultado.getAlterados());
+        }
+        resultado.setTotal(n + ignorados + naoEncontrados);
+        resultado.setIgnorados(ignorados);
+        long duracao = System.nanoTime() - inicio;
+        resultado.setDuracaoMicros(duracao / 1000);
+        latenciaLotes.registrar(duracao);
+        dispositivosAlteradosEmLote.adicionar(resultado.getAlterados().size());
+        return resultado;
+    }
+    
+    /**
+     * Número de atualizações de dispositivo refeitas por concorrência.
+     */
+    public long getNovasTentativas() {
+        return novasTentativas.get();
     }
     
     @Override
     public List<Rotina> listarRotinas() {
-        return new ArrayList<>(rotinas.values());
+        return retratoRotinas.itens;
     }
     
     @Override
@@ -133,18 +588,159 @@ public class SmartHomeServiceImpl implements ISmartHomeService {
             return null;
         }
         
-        rotinas.put(rotina.getId(), rotina);
+        // Valida todas as ações antes de cadastrar (comando ou parâmetro inválido: erro)
+        RotinaCompilada compilada = compilarRotina(rotina);
+        
+        synchronized (lockEscrita) {
+            rotinasCompiladas.put(rotina.getId(), compilada);
+            rotinas.put(rotina.getIdCompacto(), rotina);
+            versaoRotinas.incrementAndGet();
+            publicarRotinas();
+        }
         return rotina;
     }
     
+    @Override
+    public List<DispositivoIoT> executarRotina(String rotinaId) {
+        RotinaCompilada compilada = rotinaId != null ? rotinasCompiladas.get(rotinaId) : null;
+        if (compilada == null) {
+            return null;
+        }
+        long inicio = System.nanoTime();
+        List<DispositivoIoT> alterados = new ArrayList<>(compilada.comandos.length);
+        for (int i = 0; i < compilada.comandos.length; i++) {
+            DispositivoIoT alterado = aplicarAlteracao(compilada.dispositivos[i], QUALQUER_VERSAO, compilada.comandos[i]);
+            if (alterado != null) {
+                alterados.add(alterado);
+            }
+        }
+        // Um único retrato para todas as ações da rotina
+        if (!alterados.isEmpty()) {
+            publicarAlterados(alterados);
+        }
+        rotinasExecutadas.incrementar();
+        latenciaRotinas.registrarDesde(inicio);
+        return alterados;
+    }
+    
+    /**
+     * Compila as ações da rotina para as classes dos dispositivos atuais.
+     * @throws IllegalArgumentException se um dispositivo não existe ou um
+     *         comando não é suportado por ele
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private RotinaCompilada compilarRotina(Rotina rotina) {
+        List<Acao> acoes = rotina.getAcoes() != null ? rotina.getAcoes() : Collections.<Acao>emptyList();
+        String[] ids = new String[acoes.size()];
+        MotorComandos.Comando<DispositivoIoT>[] comandos = new MotorComandos.Comando[acoes.size()];
+        for (int i = 0; i < acoes.size(); i++) {
+            Acao acao = acoes.get(i);
+            DispositivoIoT dispositivo = dispositivos.get(acao.getDispositivoId());
+            if (dispositivo == null) {
+                throw new IllegalArgumentException("Dispositivo da ação não encontrado: " + acao.getDispositivoId());
+            }
+            ids[i] = dispositivo.getId();
+            comandos[i] = motorComandos.compilar(dispositivo.getClass(), acao.getComando(), acao.getParametros());
+        }
+        return new RotinaCompilada(ids, comandos);
+    }
+    
     @Override
     public List<Alerta> listarAlertas() {
-        return new ArrayList<>(alertas);
+        // O armazém muda também por expiração: o retrato é refeito sob demanda
+        // quando a versão (que inclui as expirações) avança
+        long versao = obterVersaoAlertas();
+        RetratoLista<Alerta> retrato = retratoAlertas;
+        if (retrato == null || retrato.versao != versao) {
+            retrato = new RetratoLista<>(versao, Collections.unmodifiableList(alertas.listar()));
+            retratoAlertas = retrato;
+        }
+        return retrato.itens;
+    }
+    
+    @Override
+    public List<Alerta> listarAlertasPorPeriodo(Instant inicio, Instant fim) {
+        return alertas.listarPorPeriodo(inicio, fim);
+    }
+    
+    @Override
+    public List<Alerta> listarAlertasPorComodo(String nomeComodo, Instant inicio, Instant fim) {
+        return alertas.listarPorComodo(nomeComodo, inicio, fim);
+    }
+    
+    @Override
+    public Alerta registrarAlerta(Alerta alerta) {
+        if (alerta == null) {
+            return null;
+        }
+        
+        Alerta resultado = filtrarEArmazenar(alerta, System.currentTimeMillis());
+        if (resultado != null) {
+            // Um alerta agrupado altera as ocorrências do existente: a listagem também muda
+            versaoAlertas.incrementAndGet();
+        }
+        return resultado;
+    }
+    
+    /**
+     * Importa alertas já ocorridos (ex.: casas sintéticas para testes de
+     * carga, rajadas gravadas), em ordem cronológica. Passam pelo mesmo
+     * filtro de {@link #registrarAlerta}, no instante de cada alerta: o
+     * agrupamento e o limite de taxa valem como se tivessem chegado ao vivo.
+     * @return Quantidade de alertas armazenados (os demais foram agrupados
+     *         ou descartados)
+     */
+    public int importarAlertas(Collection<Alerta> novos) {
+        int armazenados = 0;
+        for (Alerta alerta : novos) {
+            long instante = alerta.getTimestamp() != null
+                    ? alerta.getTimestamp().toEpochMilli() : System.currentTimeMillis();
+            if (filtrarEArmazenar(alerta, instante) == alerta) {
+                armazenados++;
+            }
+        }
+        versaoAlertas.incrementAndGet();
+        return armazenados;
+    }
+    
+    /**
+     * Passa o alerta pelo filtro e armazena se ele não foi agrupado nem
+     * descartado; se foi agrupado, troca o existente pela cópia com a nova
+     * ocorrência. Filtro e armazém mudam juntos: um alerta agrupado nunca
+     * chega ao armazém antes do original.
+     * @return Como {@link FiltroAlertas#processar}
+     */
+    private Alerta filtrarEArmazenar(Alerta alerta, long agoraMs) {
+        synchronized (filtroAlertas) {
+            Alerta resultado = filtroAlertas.processar(alerta, agoraMs);
+            if (resultado == alerta) {
+                alertas.adicionar(alerta);
+            } else if (resultado != null) {
+                alertas.substituir(resultado);
+            }
+            return resultado;
+        }
     }
     
     @Override
     public Comodo obterComodo(String nomeComodo) {
-        return comodos.get(nomeComodo);
+        return retratoDispositivos.get().comodo(nomeComodo);
+    }
+    
+    @Override
+    public long obterVersaoDispositivos() {
+        return retratoDispositivos.get().versao;
+    }
+    
+    @Override
+    public long obterVersaoRotinas() {
+        return versaoRotinas.get();
+    }
+    
+    @Override
+    public long obterVersaoAlertas() {
+        // Soma de dois contadores não decrescentes: muda tanto com inserções
+        // quanto com alertas que saem da janela de retenção
+        return versaoAlertas.get() + alertas.getPrimeiraSequencia();
     }
 }
-
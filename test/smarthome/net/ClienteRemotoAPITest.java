@@ -0,0 +1,94 @@
+package smarthome.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import smarthome.pojos.Lampada;
+import smarthome.services.SmartHomeServiceImpl;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Cache local do {@link ClienteRemotoAPI} contra um servidor em processo
+ * (porta livre): leituras depois de uma ação e revalidação com ETag.
+ */
+class ClienteRemotoAPITest {
+
+    // Nome com espaço: o cliente precisa codificar o segmento do caminho
+    private static final String COMODO = "Sala de Estar";
+
+    private ServidorRemotoAPI servidor;
+    private String lampada;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        SmartHomeServiceImpl servico = new SmartHomeServiceImpl();
+        Lampada nova = new Lampada("Lampada de teste", COMODO, true, false, 50, 3000);
+        servico.registrarDispositivos(Collections.singletonList(nova));
+        lampada = nova.getId();
+        servidor = new ServidorRemotoAPI(servico, 0);
+        servidor.iniciar();
+    }
+
+    @AfterEach
+    void parar() {
+        servidor.parar();
+    }
+
+    private ClienteRemotoAPI cliente(CacheCliente cache) {
+        return new ClienteRemotoAPI("localhost", servidor.getPorta(), cache);
+    }
+
+    @Test
+    void leituraAposAcaoNaoVemDoCache() throws Exception {
+        CacheCliente cache = new CacheCliente();
+        // TTL longo: só a invalidação local pode evitar a leitura obsoleta
+        cache.definirTtl("dispositivos", 60_000);
+        ClienteRemotoAPI cliente = cliente(cache);
+
+        boolean ligada = ((Lampada) cliente.obterDispositivo(lampada)).isLigada();
+        for (int i = 0; i < 4; i++) {
+            // Em cache desde a leitura anterior
+            cliente.obterDispositivo(lampada);
+            ligada = !ligada;
+            cliente.executarAcao(lampada, ligada ? "ligar" : "desligar");
+            Lampada lida = (Lampada) cliente.obterDispositivo(lampada);
+            assertEquals(ligada, lida.isLigada(), "leitura após executarAcao veio do cache com o estado anterior");
+        }
+        // Cada volta: um acerto (antes da ação) e uma falha (depois da invalidação)
+        assertEquals(4, cache.getAcertos());
+        assertEquals(5, cache.getFalhas());
+    }
+
+    @Test
+    void dispositivoExpiradoERevalidadoCom304() throws Exception {
+        CacheCliente cache = new CacheCliente();
+        cache.definirTtl("dispositivos", 1);
+        ClienteRemotoAPI cliente = cliente(cache);
+
+        assertNotNull(cliente.obterDispositivo(lampada));
+        Thread.sleep(20);
+        Lampada lida = (Lampada) cliente.obterDispositivo(lampada);
+
+        assertEquals(lampada, lida.getId());
+        assertEquals(2, cache.getFalhas());
+        assertEquals(1, cache.getRevalidacoes());
+    }
+
+    @Test
+    void comodoExpiradoERevalidadoCom304() throws Exception {
+        CacheCliente cache = new CacheCliente();
+        cache.definirTtl("comodos", 1);
+        ClienteRemotoAPI cliente = cliente(cache);
+
+        cliente.obterComodo(COMODO);
+        Thread.sleep(20);
+        cliente.obterComodo(COMODO);
+
+        assertEquals(2, cache.getFalhas());
+        assertEquals(1, cache.getRevalidacoes());
+    }
+}